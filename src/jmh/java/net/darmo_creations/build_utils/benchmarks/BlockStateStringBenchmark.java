@@ -0,0 +1,55 @@
+package net.darmo_creations.build_utils.benchmarks;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.darmo_creations.build_utils.Utils;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.enums.StairShape;
+import net.minecraft.command.argument.BlockArgumentParser;
+import net.minecraft.state.property.Properties;
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks block state/string conversions, cached through {@link Utils} versus the uncached parser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlockStateStringBenchmark {
+  private BlockState blockState;
+  private String string;
+
+  @Setup
+  public void setup() {
+    MinecraftBootstrap.init();
+    this.blockState = Blocks.OAK_STAIRS.getDefaultState()
+        .with(Properties.HORIZONTAL_FACING, Direction.EAST)
+        .with(Properties.STAIR_SHAPE, StairShape.OUTER_LEFT);
+    this.string = Utils.blockStateToString(this.blockState);
+  }
+
+  @Benchmark
+  public String blockStateToString() {
+    return Utils.blockStateToString(this.blockState);
+  }
+
+  @Benchmark
+  public BlockState stringToBlockState() {
+    return Utils.stringToBlockState(this.string);
+  }
+
+  @Benchmark
+  public BlockState stringToBlockStateUncached() throws CommandSyntaxException {
+    return new BlockArgumentParser(new StringReader(this.string), false).parse(true).getBlockState();
+  }
+}
@@ -0,0 +1,85 @@
+package net.darmo_creations.build_utils.benchmarks;
+
+import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
+import net.darmo_creations.build_utils.network.packets.LaserTelemeterPacket;
+import net.minecraft.block.Blocks;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Benchmarks the encoding and decoding of {@link LaserTelemeterPacket}s.
+ * Decoding through a bound function, as done by the packet registry, is compared
+ * with the reflective constructor lookup that was used before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LaserTelemeterPacketBenchmark {
+  private final Function<PacketByteBuf, LaserTelemeterPacket> decoder = LaserTelemeterPacket::new;
+  private LaserTelemeterPacket packet;
+  private PacketByteBuf buffer;
+  private MethodHandle constructorHandle;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    MinecraftBootstrap.init();
+    this.packet = new LaserTelemeterPacket(
+        new BlockPos(1250, 70, -3400),
+        new Vec3i(-3, 0, 5),
+        new Vec3i(64, 32, 48),
+        LaserTelemeterBlockEntity.Mode.FILL,
+        Blocks.STONE_BRICKS.getDefaultState(),
+        Blocks.AIR.getDefaultState(),
+        "my_structure",
+        BlockRotation.CLOCKWISE_90,
+        BlockMirror.NONE,
+        false,
+        true,
+        false
+    );
+    this.buffer = this.packet.getBuffer();
+    this.constructorHandle = MethodHandles.publicLookup()
+        .findConstructor(LaserTelemeterPacket.class, MethodType.methodType(void.class, PacketByteBuf.class));
+  }
+
+  @Benchmark
+  public PacketByteBuf encode() {
+    return this.packet.getBuffer();
+  }
+
+  @Benchmark
+  public LaserTelemeterPacket decodeFunction() {
+    this.buffer.readerIndex(0);
+    return this.decoder.apply(this.buffer);
+  }
+
+  @Benchmark
+  public LaserTelemeterPacket decodeReflection()
+      throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+    this.buffer.readerIndex(0);
+    return LaserTelemeterPacket.class.getConstructor(PacketByteBuf.class).newInstance(this.buffer);
+  }
+
+  @Benchmark
+  public LaserTelemeterPacket decodeMethodHandle() throws Throwable {
+    this.buffer.readerIndex(0);
+    return (LaserTelemeterPacket) this.constructorHandle.invoke(this.buffer);
+  }
+}
@@ -0,0 +1,22 @@
+package net.darmo_creations.build_utils.benchmarks;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+
+/**
+ * Initializes the game’s registries, as required by benchmarks that use blocks or block states.
+ */
+public final class MinecraftBootstrap {
+  private static boolean initialized;
+
+  public static synchronized void init() {
+    if (!initialized) {
+      SharedConstants.createGameVersion();
+      Bootstrap.initialize();
+      initialized = true;
+    }
+  }
+
+  private MinecraftBootstrap() {
+  }
+}
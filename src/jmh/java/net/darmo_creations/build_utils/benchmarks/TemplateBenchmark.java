@@ -0,0 +1,136 @@
+package net.darmo_creations.build_utils.benchmarks;
+
+import net.darmo_creations.build_utils.structures.Template;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtInt;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the loading and transformation of structure {@link Template}s, as done by pastes and previews.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TemplateBenchmark {
+  /**
+   * Length of each side of the cubic structure.
+   */
+  @Param({"16", "64"})
+  public int side;
+
+  private NbtCompound nbt;
+  private Path file;
+  private Template template;
+  private Template transformedTemplate;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    MinecraftBootstrap.init();
+    List<BlockState> states = List.of(Blocks.STONE_BRICKS.getDefaultState(), Blocks.OAK_PLANKS.getDefaultState(),
+        Blocks.GLASS.getDefaultState(), Blocks.AIR.getDefaultState());
+    NbtList palette = new NbtList();
+    states.forEach(state -> palette.add(NbtHelper.fromBlockState(state)));
+    NbtList blocks = new NbtList();
+    for (int x = 0; x < this.side; x++) {
+      for (int y = 0; y < this.side; y++) {
+        for (int z = 0; z < this.side; z++) {
+          NbtCompound block = new NbtCompound();
+          block.put("pos", intList(x, y, z));
+          block.putInt("state", (x + y * 7 + z * 13) % states.size());
+          blocks.add(block);
+        }
+      }
+    }
+    this.nbt = new NbtCompound();
+    this.nbt.putInt("DataVersion", SharedConstants.getGameVersion().getWorldVersion());
+    this.nbt.put("size", intList(this.side, this.side, this.side));
+    this.nbt.put("palette", palette);
+    this.nbt.put("blocks", blocks);
+    this.nbt.put("entities", new NbtList());
+    this.file = Files.createTempFile("build_utils_benchmark", ".nbt");
+    NbtIo.writeCompressed(this.nbt, this.file.toFile());
+    this.template = Template.fromNbt(this.nbt);
+    this.transformedTemplate = this.template.transform(BlockMirror.LEFT_RIGHT, BlockRotation.CLOCKWISE_90);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  @Benchmark
+  public Optional<Template> readFile() throws IOException {
+    return Template.read(this.file);
+  }
+
+  @Benchmark
+  public NbtCompound readFileVanilla() throws IOException {
+    return NbtIo.readCompressed(this.file.toFile());
+  }
+
+  @Benchmark
+  public Template fromNbt() {
+    return Template.fromNbt(this.nbt);
+  }
+
+  @Benchmark
+  public Template transform() {
+    return this.template.transform(BlockMirror.LEFT_RIGHT, BlockRotation.CLOCKWISE_90);
+  }
+
+  /**
+   * Reads all blocks of an untransformed template, as pastes do.
+   */
+  @Benchmark
+  public void readBlocks(Blackhole blackhole) {
+    readBlocks(this.template, blackhole);
+  }
+
+  /**
+   * Reads all blocks of a mirrored and rotated template, as pastes do.
+   */
+  @Benchmark
+  public void readTransformedBlocks(Blackhole blackhole) {
+    readBlocks(this.transformedTemplate, blackhole);
+  }
+
+  private static void readBlocks(final Template template, Blackhole blackhole) {
+    for (int i = 0; i < template.getBlocksNb(); i++) {
+      blackhole.consume(template.getPackedPos(i));
+      blackhole.consume(template.getState(i));
+    }
+  }
+
+  private static NbtList intList(int... values) {
+    NbtList list = new NbtList();
+    for (int value : values) {
+      list.add(NbtInt.of(value));
+    }
+    return list;
+  }
+}
@@ -0,0 +1,40 @@
+package net.darmo_creations.build_utils.benchmarks;
+
+import net.darmo_creations.build_utils.Utils;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the region math functions of {@link Utils}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilsBenchmark {
+  private final BlockPos pos1 = new BlockPos(120, 64, -37);
+  private final BlockPos pos2 = new BlockPos(-12, 5, 240);
+
+  @Benchmark
+  public Pair<BlockPos, BlockPos> normalizePositions() {
+    return Utils.normalizePositions(this.pos1, this.pos2);
+  }
+
+  @Benchmark
+  public Vec3i getLengths() {
+    return Utils.getLengths(this.pos1, this.pos2);
+  }
+
+  @Benchmark
+  public int getVolume() {
+    return Utils.getVolume(this.pos1, this.pos2);
+  }
+}
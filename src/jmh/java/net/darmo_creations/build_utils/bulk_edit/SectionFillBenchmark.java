@@ -0,0 +1,71 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.benchmarks.MinecraftBootstrap;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-section work of the {@link FillEngine}, {@link FillEngine#prepareSection}:
+ * diffing a section’s block state container against the region then writing the changed states into a copy,
+ * for different region shapes and fill modes.
+ * <p>
+ * This benchmark lives in the engine’s package as the method it measures is package-private.
+ * Fills, copies and pastes as a whole need a running server to provide a world and its chunks,
+ * so only their world-independent stages are covered by the benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SectionFillBenchmark {
+  /**
+   * Shape of the filled region within the section, as X×Y×Z lengths.
+   */
+  @Param({"16x16x16", "16x1x16", "1x16x1", "8x8x8"})
+  public String shape;
+  /**
+   * Name of the fill mode, see {@link FillMode#getName()}.
+   */
+  @Param({"solid", "hollow", "outline"})
+  public String mode;
+
+  private PalettedContainer<BlockState> source;
+  private FillEngine.FillRegion region;
+  private int maxX;
+  private int maxZ;
+
+  @Setup
+  public void setup() {
+    MinecraftBootstrap.init();
+    String[] lengths = this.shape.split("x");
+    BlockPos posMax = new BlockPos(Integer.parseInt(lengths[0]) - 1, Integer.parseInt(lengths[1]) - 1, Integer.parseInt(lengths[2]) - 1);
+    this.maxX = posMax.getX();
+    this.maxZ = posMax.getZ();
+    this.source = new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE);
+    // Mixed contents, similar to natural terrain
+    BlockState[] states = {Blocks.STONE.getDefaultState(), Blocks.DIRT.getDefaultState(), Blocks.ANDESITE.getDefaultState(),
+        Blocks.GRAVEL.getDefaultState(), Blocks.COAL_ORE.getDefaultState()};
+    for (int i = 0; i < 4096; i++) {
+      this.source.set(i & 15, (i >> 8) & 15, (i >> 4) & 15, states[(i * 31) % states.length]);
+    }
+    this.region = new FillEngine.FillRegion(BlockPos.ORIGIN, posMax, 0, posMax.getY(),
+        Blocks.SMOOTH_STONE.getDefaultState(), FillMode.fromName(this.mode), null, false);
+  }
+
+  @Benchmark
+  public PreparedSection fillSection() {
+    return FillEngine.prepareSection(this.source, 0, 0, 0, this.maxX, 0, this.maxZ, this.region);
+  }
+}
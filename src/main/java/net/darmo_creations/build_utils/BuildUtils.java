@@ -2,12 +2,25 @@ package net.darmo_creations.build_utils;
 
 import net.darmo_creations.build_utils.block_entities.ModBlockEntities;
 import net.darmo_creations.build_utils.blocks.ModBlocks;
+import net.darmo_creations.build_utils.bulk_edit.ClientSyncQueue;
+import net.darmo_creations.build_utils.bulk_edit.DeferredLighting;
+import net.darmo_creations.build_utils.bulk_edit.EditHistory;
+import net.darmo_creations.build_utils.bulk_edit.EditJobScheduler;
+import net.darmo_creations.build_utils.commands.BuildUtilsCommand;
 import net.darmo_creations.build_utils.items.ModItems;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
 import net.darmo_creations.build_utils.network.C2SPacketFactory;
 import net.darmo_creations.build_utils.network.PacketRegistry;
+import net.darmo_creations.build_utils.network.S2CPacketFactory;
+import net.darmo_creations.build_utils.network.packets.CycleWandModePacket;
 import net.darmo_creations.build_utils.network.packets.LaserTelemeterPacket;
+import net.darmo_creations.build_utils.network.packets.PastePreviewPacket;
 import net.darmo_creations.build_utils.network.packets.ToggleNightVisionPacket;
+import net.darmo_creations.build_utils.network.packets.ToggleWandRawModePacket;
+import net.darmo_creations.build_utils.structures.StructureIO;
+import net.darmo_creations.build_utils.structures.TemplateCache;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v1.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.client.itemgroup.FabricItemGroupBuilder;
 import net.minecraft.item.ItemGroup;
 import net.minecraft.item.ItemStack;
@@ -33,7 +46,16 @@ public class BuildUtils implements ModInitializer {
     ModBlocks.init();
     ModItems.init();
     ModBlockEntities.init();
+    ModGameRules.init();
     this.registerPackets();
+    EditJobScheduler.init();
+    DeferredLighting.init();
+    ClientSyncQueue.init();
+    EditHistory.init();
+    TemplateCache.init();
+    StructureIO.init();
+    BuildMetrics.init();
+    CommandRegistrationCallback.EVENT.register((dispatcher, dedicated) -> BuildUtilsCommand.register(dispatcher));
   }
 
   /**
@@ -43,12 +65,27 @@ public class BuildUtils implements ModInitializer {
     PacketRegistry.registerPacket(
         C2SPacketFactory.LASER_TELEMETER_DATA_PACKET_ID,
         LaserTelemeterPacket.class,
+        LaserTelemeterPacket::new,
         new LaserTelemeterPacket.ServerHandler()
     );
     PacketRegistry.registerPacket(
         C2SPacketFactory.TOGGLE_NIGHT_VISION_PACKET_ID,
         ToggleNightVisionPacket.class,
+        ToggleNightVisionPacket::new,
         new ToggleNightVisionPacket.ServerHandler()
     );
+    PacketRegistry.registerPacket(
+        C2SPacketFactory.CYCLE_WAND_MODE_PACKET_ID,
+        CycleWandModePacket.class,
+        CycleWandModePacket::new,
+        new CycleWandModePacket.ServerHandler()
+    );
+    PacketRegistry.registerPacket(
+        C2SPacketFactory.TOGGLE_WAND_RAW_MODE_PACKET_ID,
+        ToggleWandRawModePacket.class,
+        ToggleWandRawModePacket::new,
+        new ToggleWandRawModePacket.ServerHandler()
+    );
+    PacketRegistry.registerS2CPacket(S2CPacketFactory.PASTE_PREVIEW_PACKET_ID, PastePreviewPacket.class);
   }
 }
@@ -2,6 +2,10 @@ package net.darmo_creations.build_utils;
 
 import net.darmo_creations.build_utils.block_entities.ModBlockEntities;
 import net.darmo_creations.build_utils.gui.KeyBindings;
+import net.darmo_creations.build_utils.items.ModItems;
+import net.darmo_creations.build_utils.network.ClientPacketRegistry;
+import net.darmo_creations.build_utils.network.S2CPacketFactory;
+import net.darmo_creations.build_utils.network.packets.PastePreviewPacket;
 import net.fabricmc.api.ClientModInitializer;
 
 /**
@@ -11,6 +15,19 @@ public class ClientInitializer implements ClientModInitializer {
   @Override
   public void onInitializeClient() {
     ModBlockEntities.registerRenderers();
+    ModItems.registerRenderers();
     KeyBindings.registerKeyBindings();
+    this.registerPacketHandlers();
+  }
+
+  /**
+   * Registers the handlers of all packets sent by the server.
+   */
+  private void registerPacketHandlers() {
+    ClientPacketRegistry.registerHandler(
+        S2CPacketFactory.PASTE_PREVIEW_PACKET_ID,
+        PastePreviewPacket::new,
+        new PastePreviewPacket.ClientHandler()
+    );
   }
 }
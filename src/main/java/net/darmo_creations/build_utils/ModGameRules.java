@@ -0,0 +1,48 @@
+package net.darmo_creations.build_utils;
+
+import net.fabricmc.fabric.api.gamerule.v1.GameRuleFactory;
+import net.fabricmc.fabric.api.gamerule.v1.GameRuleRegistry;
+import net.minecraft.world.GameRules;
+
+/**
+ * This class declares all game rules for this mod.
+ */
+public final class ModGameRules {
+  /**
+   * Maximum number of milliseconds that pending edit jobs may use during each server tick.
+   */
+  public static final GameRules.Key<GameRules.IntRule> FILL_TICK_BUDGET =
+      GameRuleRegistry.register("buildUtilsFillTickBudget", GameRules.Category.UPDATES, GameRuleFactory.createIntRule(20, 1, 1000));
+  /**
+   * Number of mebibytes of undo history that may be kept in memory before spilling to disk.
+   */
+  public static final GameRules.Key<GameRules.IntRule> UNDO_MEMORY_LIMIT =
+      GameRuleRegistry.register("buildUtilsUndoMemoryLimit", GameRules.Category.MISC, GameRuleFactory.createIntRule(256, 0));
+  /**
+   * Whether the light checks of bulk edits should be deferred to the end of the tick and batched per chunk.
+   */
+  public static final GameRules.Key<GameRules.BooleanRule> DEFERRED_LIGHTING =
+      GameRuleRegistry.register("buildUtilsDeferredLighting", GameRules.Category.UPDATES, GameRuleFactory.createBooleanRule(true));
+  /**
+   * Default maximum number of packets that may be sent to each player per tick to sync bulk edits.
+   */
+  public static final GameRules.Key<GameRules.IntRule> SYNC_PACKETS_PER_TICK =
+      GameRuleRegistry.register("buildUtilsSyncPacketsPerTick", GameRules.Category.MISC, GameRuleFactory.createIntRule(128, 1));
+  /**
+   * Minimum permission level required to perform raw bulk edits, that skip neighbor/shape updates.
+   */
+  public static final GameRules.Key<GameRules.IntRule> RAW_MODE_PERMISSION_LEVEL =
+      GameRuleRegistry.register("buildUtilsRawModePermissionLevel", GameRules.Category.MISC, GameRuleFactory.createIntRule(4, 2, 4));
+
+  /**
+   * Dummy method called from {@link BuildUtils#onInitialize()} to register game rules:
+   * it forces the class to be loaded during mod initialization.
+   * <p>
+   * Must be called on both clients and server.
+   */
+  public static void init() {
+  }
+
+  private ModGameRules() {
+  }
+}
@@ -1,7 +1,12 @@
 package net.darmo_creations.build_utils;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.mojang.brigadier.StringReader;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.darmo_creations.build_utils.bulk_edit.FillEngine;
+import net.darmo_creations.build_utils.bulk_edit.FillMode;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.command.argument.BlockArgumentParser;
@@ -25,6 +30,7 @@ import net.minecraft.world.World;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,6 +42,23 @@ import java.util.stream.Collectors;
  */
 public final class Utils {
   private static final int SUBPART_SIZE = 32;
+  /**
+   * Maximum number of entries in each direction of the block state/string cache.
+   */
+  private static final int BLOCK_STATE_CACHE_SIZE = 4096;
+  /**
+   * Strings parsed by {@link #stringToBlockState(String)}, including unparsable ones.
+   * Bounded as strings may come from clients.
+   */
+  private static final LoadingCache<String, Optional<BlockState>> PARSED_BLOCK_STATES = CacheBuilder.newBuilder()
+      .maximumSize(BLOCK_STATE_CACHE_SIZE)
+      .build(CacheLoader.from(Utils::parseBlockState));
+  /**
+   * Canonical strings of block states returned by {@link #blockStateToString(BlockState)}.
+   */
+  private static final LoadingCache<BlockState, String> BLOCK_STATE_STRINGS = CacheBuilder.newBuilder()
+      .maximumSize(BLOCK_STATE_CACHE_SIZE)
+      .build(CacheLoader.from(Utils::serializeBlockState));
 
   /**
    * Returns the block entity of the given class at the given position.
@@ -62,12 +85,16 @@ public final class Utils {
   }
 
   /**
-   * Serializes a block state to a string.
+   * Serializes a block state to a string. Results are cached.
    *
    * @param blockState Block state to serialize.
    * @return Serialized string.
    */
   public static String blockStateToString(final BlockState blockState) {
+    return BLOCK_STATE_STRINGS.getUnchecked(blockState);
+  }
+
+  private static String serializeBlockState(final BlockState blockState) {
     //noinspection OptionalGetWithoutIsPresent
     String message = Registry.BLOCK.getKey(blockState.getBlock()).get().getValue().toString();
     Collection<Property<?>> properties = blockState.getProperties();
@@ -76,20 +103,26 @@ public final class Utils {
           .map(p -> p.getName() + "=" + blockState.get(p).toString())
           .collect(Collectors.joining(",")) + "]";
     }
+    // The canonical string will most likely be parsed back at some point
+    PARSED_BLOCK_STATES.put(message, Optional.of(blockState));
     return message;
   }
 
   /**
-   * Creates a block state object from the given string.
+   * Creates a block state object from the given string. Results, including failures, are cached.
    *
    * @param s The string to deserialize.
    * @return The corresponding block state object or null if the string is unparsable.
    */
   public static BlockState stringToBlockState(final String s) {
+    return PARSED_BLOCK_STATES.getUnchecked(s).orElse(null);
+  }
+
+  private static Optional<BlockState> parseBlockState(final String s) {
     try {
-      return new BlockArgumentParser(new StringReader(s), false).parse(true).getBlockState();
+      return Optional.of(new BlockArgumentParser(new StringReader(s), false).parse(true).getBlockState());
     } catch (CommandSyntaxException e) {
-      return null;
+      return Optional.empty();
     }
   }
 
@@ -107,6 +140,18 @@ public final class Utils {
     }
   }
 
+  /**
+   * Indicates whether the given player may perform raw bulk edits.
+   * The required permission level is set by the {@link ModGameRules#RAW_MODE_PERMISSION_LEVEL} game rule.
+   *
+   * @param player The player to check.
+   * @return True if the player is a creative op with a high enough permission level.
+   */
+  public static boolean canUseRawMode(final PlayerEntity player) {
+    return player.isCreativeLevelTwoOp()
+        && player.hasPermissionLevel(player.getWorld().getGameRules().getInt(ModGameRules.RAW_MODE_PERMISSION_LEVEL));
+  }
+
   /**
    * Returns the blocks length along each axis of the volume defined by the given positions.
    *
@@ -170,6 +215,9 @@ public final class Utils {
 
   /**
    * Fills the area between the specified positions.
+   * <p>
+   * Block states without block entities are written directly into chunk sections by the {@link FillEngine}.
+   * Other block states are delegated to the /fill command.
    *
    * @param pos1  First region position.
    * @param pos2  Second region position.
@@ -177,6 +225,25 @@ public final class Utils {
    * @return The number of blocks that were filled.
    */
   public static int fill(BlockPos pos1, BlockPos pos2, BlockState blockState, ServerWorld world) {
+    return fill(pos1, pos2, blockState, null, world);
+  }
+
+  /**
+   * Fills the area between the specified positions, optionally replacing only the blocks with the given state.
+   * <p>
+   * Block states without block entities are written directly into chunk sections by the {@link FillEngine}.
+   * Other block states are delegated to the /fill command.
+   *
+   * @param pos1          First region position.
+   * @param pos2          Second region position.
+   * @param replacedState If not null, only blocks with this state are replaced.
+   * @param world         The world to edit.
+   * @return The number of blocks that were filled.
+   */
+  public static int fill(BlockPos pos1, BlockPos pos2, BlockState blockState, @Nullable BlockState replacedState, ServerWorld world) {
+    if (!blockState.hasBlockEntity()) {
+      return FillEngine.fill(pos1, pos2, blockState, replacedState != null ? FillMode.REPLACE : FillMode.SOLID, replacedState, world);
+    }
     final Pair<BlockPos, BlockPos> positions = normalizePositions(pos1, pos2);
     pos1 = positions.getLeft();
     pos2 = positions.getRight();
@@ -196,6 +263,7 @@ public final class Utils {
                   Math.min(z + SUBPART_SIZE, size.getZ()) - 1
               ),
               blockState,
+              replacedState,
               world
           );
           z += SUBPART_SIZE;
@@ -211,18 +279,22 @@ public final class Utils {
    * Fills the area between the two positions.
    * Action is delegated to the /fill command.
    *
-   * @param pos1       First position.
-   * @param pos2       Second position.
-   * @param blockState Block state to use as filler.
-   * @param world      The world to edit.
+   * @param pos1          First position.
+   * @param pos2          Second position.
+   * @param blockState    Block state to use as filler.
+   * @param replacedState If not null, only blocks with this state are replaced.
+   * @param world         The world to edit.
    * @return The number of filled blocks.
    */
-  private static int fillSubPart(BlockPos pos1, BlockPos pos2, BlockState blockState, ServerWorld world) {
+  private static int fillSubPart(BlockPos pos1, BlockPos pos2, BlockState blockState, @Nullable BlockState replacedState, ServerWorld world) {
     String command = "fill %s %s %s".formatted(
         Utils.blockPosToString(pos1),
         Utils.blockPosToString(pos2),
         Utils.blockStateToString(blockState)
     );
+    if (replacedState != null) {
+      command += " replace " + Utils.blockStateToString(replacedState);
+    }
     int blocksFilled;
     MinecraftServer server = world.getServer();
     CommandSourceStackWrapper commandSourceStack = new CommandSourceStackWrapper(server, world);
@@ -1,8 +1,29 @@
 package net.darmo_creations.build_utils.block_entities;
 
+import com.mojang.datafixers.util.Either;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.ModGameRules;
 import net.darmo_creations.build_utils.Utils;
 import net.darmo_creations.build_utils.blocks.LaserTelemeterBlock;
 import net.darmo_creations.build_utils.blocks.ModBlocks;
+import net.darmo_creations.build_utils.bulk_edit.CopyJob;
+import net.darmo_creations.build_utils.bulk_edit.EditJob;
+import net.darmo_creations.build_utils.bulk_edit.EditJobScheduler;
+import net.darmo_creations.build_utils.bulk_edit.FillJob;
+import net.darmo_creations.build_utils.bulk_edit.FillMode;
+import net.darmo_creations.build_utils.bulk_edit.PasteJob;
+import net.darmo_creations.build_utils.bulk_edit.SnapshotPasteJob;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.darmo_creations.build_utils.network.S2CPacketFactory;
+import net.darmo_creations.build_utils.network.packets.PastePreviewPacket;
+import net.darmo_creations.build_utils.structures.ColumnStream;
+import net.darmo_creations.build_utils.structures.StructureFiles;
+import net.darmo_creations.build_utils.structures.StructureIO;
+import net.darmo_creations.build_utils.structures.StructureSnapshot;
+import net.darmo_creations.build_utils.structures.StructureStreamWriter;
+import net.darmo_creations.build_utils.structures.Template;
+import net.darmo_creations.build_utils.structures.TemplateCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
@@ -14,23 +35,29 @@ import net.minecraft.network.MessageType;
 import net.minecraft.network.Packet;
 import net.minecraft.network.listener.ClientPlayPacketListener;
 import net.minecraft.network.packet.s2c.play.BlockEntityUpdateS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.structure.Structure;
-import net.minecraft.structure.StructureManager;
-import net.minecraft.structure.StructurePlacementData;
 import net.minecraft.text.Style;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.*;
+import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Vec3i;
 
+import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Block entity for laser telemeter.
  * <p>
  * Negative values for length fields mean that the line should be drawn in the negative direction along its axis.
+ * <p>
+ * Fills and pastes may be performed in raw mode, without neighbor/shape updates nor block callbacks.
+ * Raw mode requires the permission level set by {@link ModGameRules#RAW_MODE_PERMISSION_LEVEL}.
  *
  * @see LaserTelemeterBlock
  * @see ModBlocks#LASER_TELEMETER
@@ -39,24 +66,39 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
   private static final String SIZE_TAG_KEY = "Size";
   private static final String OFFSET_TAG_KEY = "Offset";
   private static final String FILLER_BLOCK_STATE_KEY = "FillerBlockState";
+  private static final String REPLACED_BLOCK_STATE_KEY = "ReplacedBlockState";
   private static final String STRUCTURE_NAME_KEY = "StructureName";
   private static final String MODE_KEY = "Mode";
   private static final String ROTATION_KEY = "Rotation";
   private static final String MIRROR_KEY = "Mirror";
+  private static final String RAW_KEY = "Raw";
 
   private Vec3i size;
   private Vec3i offset;
   private Mode mode;
   private BlockState fillerBlockState;
+  private BlockState replacedBlockState;
   private String structureName;
   private BlockRotation rotation;
   private BlockMirror mirror;
+  private boolean raw;
+  /**
+   * The structure operation in progress, if any: a file operation, or a paste job until it is done. Not saved.
+   */
+  @Nullable
+  private CompletableFuture<?> pendingOperation;
+  /**
+   * The box drawn around the area, computed on first use. Not saved.
+   */
+  @Nullable
+  private Box renderBox;
 
   public LaserTelemeterBlockEntity(final BlockPos pos, final BlockState state) {
     super(ModBlockEntities.LASER_TELEMETER, pos, state);
     this.setSize(Vec3i.ZERO);
     this.setOffset(Vec3i.ZERO);
     this.setFillerBlockState(Blocks.AIR.getDefaultState());
+    this.setReplacedBlockState(Blocks.AIR.getDefaultState());
     this.setMode(Mode.BOX);
     this.setRotation(BlockRotation.NONE);
     this.setMirror(BlockMirror.NONE);
@@ -77,6 +119,7 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
 
   public void setSize(final Vec3i size) {
     this.size = this.clamp(size);
+    this.renderBox = null;
     this.markDirty();
   }
 
@@ -90,6 +133,7 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
 
   public void setOffset(final Vec3i offset) {
     this.offset = Objects.requireNonNull(offset);
+    this.renderBox = null;
     this.markDirty();
   }
 
@@ -102,6 +146,15 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     this.markDirty();
   }
 
+  public BlockState getReplacedBlockState() {
+    return this.replacedBlockState;
+  }
+
+  public void setReplacedBlockState(final BlockState replacedBlockState) {
+    this.replacedBlockState = Objects.requireNonNull(replacedBlockState);
+    this.markDirty();
+  }
+
   public String getStructureName() {
     return this.structureName;
   }
@@ -117,6 +170,7 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
 
   public void setRotation(BlockRotation rotation) {
     this.rotation = Objects.requireNonNull(rotation);
+    this.renderBox = null;
     this.markDirty();
   }
 
@@ -126,16 +180,107 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
 
   public void setMirror(BlockMirror mirror) {
     this.mirror = Objects.requireNonNull(mirror);
+    this.renderBox = null;
+    this.markDirty();
+  }
+
+  public boolean isRaw() {
+    return this.raw;
+  }
+
+  public void setRaw(boolean raw) {
+    this.raw = raw;
     this.markDirty();
   }
 
-  public void performAction(boolean previewPaste) {
+  /**
+   * Returns the box drawn around the area of this telemeter, in world coordinates.
+   * The box takes the rotation and mirror into account, as in paste mode.
+   * <p>
+   * The box is computed on first use then kept until the size, offset, rotation or mirror change:
+   * callers may compare returned instances to detect changes.
+   */
+  public Box getRenderBox() {
+    if (this.renderBox == null) {
+      // Adapted from StructureBlockBlockEntityRenderer#render
+      double sizeX;
+      double sizeZ;
+      switch (this.mirror) {
+        case LEFT_RIGHT -> {
+          sizeX = this.size.getX();
+          sizeZ = -this.size.getZ();
+        }
+        case FRONT_BACK -> {
+          sizeX = -this.size.getX();
+          sizeZ = this.size.getZ();
+        }
+        default -> {
+          sizeX = this.size.getX();
+          sizeZ = this.size.getZ();
+        }
+      }
+      double offsetX = this.offset.getX();
+      double offsetZ = this.offset.getZ();
+      double boxX1;
+      double boxY1 = this.offset.getY();
+      double boxZ1;
+      double boxX2;
+      double boxY2 = boxY1 + (double) this.size.getY();
+      double boxZ2;
+      switch (this.rotation) {
+        case CLOCKWISE_90 -> {
+          boxX1 = sizeZ < 0 ? offsetX : offsetX + 1;
+          boxZ1 = sizeX < 0 ? offsetZ + 1 : offsetZ;
+          boxX2 = boxX1 - sizeZ;
+          boxZ2 = boxZ1 + sizeX;
+        }
+        case CLOCKWISE_180 -> {
+          boxX1 = sizeX < 0 ? offsetX : offsetX + 1;
+          boxZ1 = sizeZ < 0 ? offsetZ : offsetZ + 1;
+          boxX2 = boxX1 - sizeX;
+          boxZ2 = boxZ1 - sizeZ;
+        }
+        case COUNTERCLOCKWISE_90 -> {
+          boxX1 = sizeZ < 0 ? offsetX + 1 : offsetX;
+          boxZ1 = sizeX < 0 ? offsetZ : offsetZ + 1;
+          boxX2 = boxX1 + sizeZ;
+          boxZ2 = boxZ1 - sizeX;
+        }
+        default -> {
+          boxX1 = sizeX < 0 ? offsetX + 1 : offsetX;
+          boxZ1 = sizeZ < 0 ? offsetZ + 1 : offsetZ;
+          boxX2 = boxX1 + sizeX;
+          boxZ2 = boxZ1 + sizeZ;
+        }
+      }
+      this.renderBox = new Box(boxX1, boxY1, boxZ1, boxX2, boxY2, boxZ2).offset(this.getPos());
+    }
+    return this.renderBox;
+  }
+
+  /**
+   * Performs the action corresponding to the current mode.
+   * <p>
+   * Structure files are read and written off the server thread by {@link StructureIO}.
+   * No action may be performed until the pending structure operation of this telemeter, if any, is done.
+   * Pastes are only done once their job has run to completion.
+   *
+   * @param player       The player that requested the action.
+   * @param previewPaste Whether to only update the box when in PASTE mode.
+   */
+  public void performAction(final ServerPlayerEntity player, boolean previewPaste) {
     if (this.world instanceof ServerWorld w) {
+      if (this.pendingOperation != null && !this.pendingOperation.isDone()) {
+        w.getServer().getPlayerManager().broadcast(
+            new TranslatableText("block.build_utils.laser_telemeter.error.operation_in_progress")
+                .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
+        return;
+      }
       if (this.mode == Mode.PASTE || this.size.getX() != 0 && this.size.getY() != 0 && this.size.getZ() != 0) {
         switch (this.mode) {
-          case FILL -> this.fillArea(w);
-          case COPY -> this.copyArea(w);
-          case PASTE -> this.pasteStructure(w, previewPaste);
+          case FILL, FILL_HOLLOW, FILL_OUTLINE, FILL_WALLS, FILL_REPLACE -> this.fillArea(w, player, this.mode.getFillMode());
+          case COPY -> this.copyArea(w, player);
+          case PASTE -> this.pasteStructure(w, player, previewPaste);
         }
       } else {
         w.getServer().getPlayerManager().broadcast(
@@ -145,12 +290,26 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     }
   }
 
-  private void fillArea(ServerWorld world) {
-    if (this.fillerBlockState != null) {
+  private void fillArea(ServerWorld world, final ServerPlayerEntity player, final FillMode fillMode) {
+    if (!this.checkRawMode(world, player)) {
+      return;
+    }
+    if (this.fillerBlockState != null && (fillMode != FillMode.REPLACE || this.replacedBlockState != null)) {
       BlockPos pos = this.getPos().add(this.offset);
-      int blocksNb = Utils.fill(pos, pos.add(this.size).add(-1, -1, -1), this.fillerBlockState, world);
-      world.getServer().getPlayerManager().broadcast(
-          new TranslatableText("block.build_utils.laser_telemeter.feedback.total_filled_volume", blocksNb), MessageType.CHAT, Util.NIL_UUID);
+      FillJob job = new FillJob(
+          world,
+          pos,
+          pos.add(this.size).add(-1, -1, -1),
+          this.fillerBlockState,
+          fillMode,
+          this.replacedBlockState,
+          this.raw,
+          player.getUuid(),
+          "block.build_utils.laser_telemeter.feedback.total_filled_volume",
+          true
+      );
+      EditJobScheduler.submit(world.getServer(), job);
+      recordOnCompletion(job, Operation.TELEMETER_FILL);
     } else {
       world.getServer().getPlayerManager().broadcast(
           new TranslatableText("block.build_utils.laser_telemeter.error.cannot_fill_area")
@@ -158,22 +317,46 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     }
   }
 
-  private void copyArea(final ServerWorld world) {
+  /**
+   * Queues a job that captures the area on the server thread while it is written to the structure file on an I/O thread.
+   * Areas larger than {@link StructureSnapshot#MIN_VOLUME} are written to a snapshot file instead.
+   * The pending operation completes once the file has been written.
+   */
+  private void copyArea(final ServerWorld world, final ServerPlayerEntity player) {
     if (this.structureName != null) {
-      StructureManager structureManager = world.getStructureManager();
-      Structure structure;
+      BlockPos pos = this.getPos().add(this.offset);
+      BlockBox box = BlockBox.create(pos, pos.add(this.size).add(-1, -1, -1));
+      boolean useSnapshot = (long) box.getBlockCountX() * box.getBlockCountY() * box.getBlockCountZ() > StructureSnapshot.MIN_VOLUME;
+      String structureName = this.structureName;
+      Identifier id;
+      Path path;
       try {
-        structure = structureManager.getStructureOrBlank(new Identifier(this.structureName));
-        structure.saveFromWorld(world, this.getPos().add(this.offset), this.size, false, Blocks.STRUCTURE_VOID);
-        structureManager.saveStructure(new Identifier(this.structureName));
+        id = new Identifier(structureName);
+        path = useSnapshot
+            ? StructureFiles.getSnapshotPath(world.getServer(), id)
+            : StructureFiles.getStructurePath(world.getServer(), id);
       } catch (InvalidIdentifierException invalidIdentifierException) {
         world.getServer().getPlayerManager().broadcast(
-            new TranslatableText("block.build_utils.laser_telemeter.error.invalid_structure_name", this.structureName)
+            new TranslatableText("block.build_utils.laser_telemeter.error.invalid_structure_name", structureName)
                 .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
         return;
       }
-      world.getServer().getPlayerManager().broadcast(
-          new TranslatableText("block.build_utils.laser_telemeter.feedback.copy_successfull", this.structureName), MessageType.CHAT, Util.NIL_UUID);
+      ColumnStream<?> stream = useSnapshot
+          ? new StructureSnapshot.Stream(box, Blocks.STRUCTURE_VOID)
+          : new StructureStreamWriter.Stream(box, Blocks.STRUCTURE_VOID);
+      CompletableFuture<Void> write = StructureIO.write(stream, path);
+      CopyJob job = new CopyJob(world, stream, write, structureName, player.getUuid(),
+          "block.build_utils.laser_telemeter.feedback.copy_successfull", true);
+      EditJobScheduler.submit(world.getServer(), job);
+      // The job may be dropped before the writer notices that the stream was aborted
+      this.pendingOperation = job.getCompletion().thenCompose(v -> write).whenCompleteAsync((result, error) -> {
+        if (error != null) {
+          BuildUtils.LOGGER.error("Could not save structure {}", structureName, error);
+        } else {
+          this.onStructureSaved(world, id);
+          BuildMetrics.record(Operation.TELEMETER_COPY, job.getStepsTime(), job.getBlocksNb());
+        }
+      }, world.getServer());
     } else {
       world.getServer().getPlayerManager().broadcast(
           new TranslatableText("block.build_utils.laser_telemeter.error.cannot_copy_area")
@@ -181,34 +364,94 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     }
   }
 
-  private void pasteStructure(ServerWorld world, boolean preview) {
+  /**
+   * Records the given job under the given operation once it is done, with the time spent running its steps
+   * and the number of changed blocks. Jobs that are dropped before being done are not recorded.
+   */
+  private static void recordOnCompletion(final EditJob job, final Operation operation) {
+    job.getCompletion().thenRun(() -> {
+      if (job.isDone()) {
+        BuildMetrics.record(operation, job.getStepsTime(), job.getBlocksNb());
+      }
+    });
+  }
+
+  /**
+   * Drops the cached templates of the given structure, if any, so that they are read again from the new file.
+   */
+  private void onStructureSaved(ServerWorld world, final Identifier id) {
+    world.getStructureManager().unloadStructure(id);
+    TemplateCache.invalidate(id);
+  }
+
+  /**
+   * Loads the structure on an I/O thread then updates the box and queues the paste job on the server thread.
+   * Snapshots that are more recent than the structure file of the same name are pasted instead of the structure.
+   * The paste settings are those at the time of the call. The pending operation only completes once the job is done.
+   */
+  private void pasteStructure(ServerWorld world, final ServerPlayerEntity player, boolean preview) {
     if (this.structureName != null) {
-      Optional<Structure> optional;
-      StructureManager structureManager = world.getStructureManager();
-      try {
-        optional = structureManager.getStructure(new Identifier(this.structureName));
-      } catch (InvalidIdentifierException invalidIdentifierException) {
-        world.getServer().getPlayerManager().broadcast(
-            new TranslatableText("block.build_utils.laser_telemeter.error.invalid_structure_name", this.structureName)
-                .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
+      if (!preview && !this.checkRawMode(world, player)) {
         return;
       }
-      if (optional.isEmpty()) {
+      String structureName = this.structureName;
+      BlockPos origin = this.getPos().add(this.offset);
+      BlockRotation rotation = this.rotation;
+      BlockMirror mirror = this.mirror;
+      boolean raw = this.raw;
+      Identifier id;
+      try {
+        id = new Identifier(structureName);
+        // Validate the path before leaving the server thread
+        StructureFiles.getStructurePath(world.getServer(), id);
+      } catch (InvalidIdentifierException invalidIdentifierException) {
         world.getServer().getPlayerManager().broadcast(
-            new TranslatableText("block.build_utils.laser_telemeter.error.unknown_structure_name", this.structureName)
+            new TranslatableText("block.build_utils.laser_telemeter.error.invalid_structure_name", structureName)
                 .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
         return;
       }
-      Structure structure = optional.get();
-      this.updateSizeFromStructure(world, structure);
-      if (!preview) {
-        this.place(world, structure);
-        world.getServer().getPlayerManager().broadcast(
-            new TranslatableText("block.build_utils.laser_telemeter.feedback.paste_successfull", this.structureName), MessageType.CHAT, Util.NIL_UUID);
-      } else {
+      // Previews are sent untransformed, clients transform them by themselves
+      this.pendingOperation = StructureIO.loadStructure(
+          world.getServer(),
+          id,
+          preview ? BlockMirror.NONE : mirror,
+          preview ? BlockRotation.NONE : rotation
+      ).handleAsync((optional, error) -> {
+        if (error != null) {
+          BuildUtils.LOGGER.error("Could not load structure {}", structureName, error);
+          world.getServer().getPlayerManager().broadcast(
+              new TranslatableText("block.build_utils.laser_telemeter.error.cannot_load_structure", structureName)
+                  .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
+          return CompletableFuture.<Void>completedFuture(null);
+        }
+        if (optional.isEmpty()) {
+          world.getServer().getPlayerManager().broadcast(
+              new TranslatableText("block.build_utils.laser_telemeter.error.unknown_structure_name", structureName)
+                  .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
+          return CompletableFuture.<Void>completedFuture(null);
+        }
+        Either<Template, StructureSnapshot> structure = optional.get();
+        if (!this.isRemoved()) {
+          this.updateSize(world, structure.map(Template::getSize, StructureSnapshot::getSize));
+        }
+        if (!preview) {
+          String feedbackKey = "block.build_utils.laser_telemeter.feedback.paste_successfull";
+          EditJob job = structure.map(
+              template -> new PasteJob(world, template, structureName, origin, rotation, mirror, raw,
+                  player.getUuid(), feedbackKey, true),
+              snapshot -> new SnapshotPasteJob(world, snapshot, structureName, origin, rotation, mirror, raw,
+                  player.getUuid(), feedbackKey, true)
+          );
+          EditJobScheduler.submit(world.getServer(), job);
+          recordOnCompletion(job, Operation.TELEMETER_PASTE);
+          S2CPacketFactory.sendPacket(player, PastePreviewPacket.clear(this.getPos()));
+          return job.getCompletion();
+        }
+        this.sendPreview(world, player, structureName, structure);
         world.getServer().getPlayerManager().broadcast(
-            new TranslatableText("block.build_utils.laser_telemeter.feedback.area_prepared", this.structureName), MessageType.CHAT, Util.NIL_UUID);
-      }
+            new TranslatableText("block.build_utils.laser_telemeter.feedback.area_prepared", structureName), MessageType.CHAT, Util.NIL_UUID);
+        return CompletableFuture.<Void>completedFuture(null);
+      }, world.getServer()).thenCompose(Function.identity());
     } else {
       world.getServer().getPlayerManager().broadcast(
           new TranslatableText("block.build_utils.laser_telemeter.error.cannot_paste_structure")
@@ -216,20 +459,56 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     }
   }
 
-  private void updateSizeFromStructure(ServerWorld world, final Structure structure) {
-    this.size = structure.getSize();
+  /**
+   * Splits the given structure into packets off the server thread, then sends them to the given player
+   * for it to be displayed where it would be pasted.
+   *
+   * @param world         The world this telemeter is in.
+   * @param player        The player that requested the preview.
+   * @param structureName Name of the structure.
+   * @param structure     The untransformed structure.
+   */
+  private void sendPreview(
+      ServerWorld world,
+      final ServerPlayerEntity player,
+      final String structureName,
+      final Either<Template, StructureSnapshot> structure
+  ) {
+    BlockPos pos = this.getPos();
+    CompletableFuture.supplyAsync(() -> PastePreviewPacket.split(pos, structureName, structure), Util.getMainWorkerExecutor())
+        .whenCompleteAsync((packets, error) -> {
+          if (error != null) {
+            BuildUtils.LOGGER.error("Could not prepare preview of structure {}", structureName, error);
+          } else if (packets.isEmpty()) {
+            Utils.sendMessage(world, player, new TranslatableText("block.build_utils.laser_telemeter.error.preview_too_large",
+                structureName, PastePreviewPacket.MAX_BLOCKS).setStyle(Style.EMPTY.withColor(Formatting.RED)), false);
+          } else if (!player.isDisconnected()) {
+            packets.get().forEach(packet -> S2CPacketFactory.sendPacket(player, packet));
+          }
+        }, world.getServer());
+  }
+
+  private void updateSize(ServerWorld world, final Vec3i size) {
+    this.size = size;
     // Update data on client side to draw correct box
     world.updateListeners(this.getPos(), this.getCachedState(), this.getCachedState(), Block.NOTIFY_LISTENERS);
     this.markDirty();
   }
 
-  private void place(ServerWorld world, final Structure structure) {
-    StructurePlacementData structurePlacementData = new StructurePlacementData()
-        .setMirror(this.mirror)
-        .setRotation(this.rotation)
-        .setIgnoreEntities(true);
-    BlockPos pos = this.getPos().add(this.offset);
-    structure.place(world, pos, pos, structurePlacementData, world.getServer().getOverworld().getRandom(), Block.NOTIFY_LISTENERS);
+  /**
+   * Checks whether the given player may perform the current action in raw mode, if enabled.
+   * Sends an error message otherwise.
+   *
+   * @return True if raw mode is disabled or the player has the required permission level.
+   */
+  private boolean checkRawMode(ServerWorld world, final ServerPlayerEntity player) {
+    if (this.raw && !Utils.canUseRawMode(player)) {
+      world.getServer().getPlayerManager().broadcast(
+          new TranslatableText("block.build_utils.laser_telemeter.error.raw_mode_permissions")
+              .setStyle(Style.EMPTY.withColor(Formatting.RED)), MessageType.CHAT, Util.NIL_UUID);
+      return false;
+    }
+    return true;
   }
 
   @Override
@@ -240,11 +519,15 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     if (this.fillerBlockState != null) {
       nbt.put(FILLER_BLOCK_STATE_KEY, NbtHelper.fromBlockState(this.fillerBlockState));
     }
+    if (this.replacedBlockState != null) {
+      nbt.put(REPLACED_BLOCK_STATE_KEY, NbtHelper.fromBlockState(this.replacedBlockState));
+    }
     if (this.structureName != null) {
       nbt.putString(STRUCTURE_NAME_KEY, this.structureName);
     }
     nbt.putInt(ROTATION_KEY, this.rotation.ordinal());
     nbt.putInt(MIRROR_KEY, this.mirror.ordinal());
+    nbt.putBoolean(RAW_KEY, this.raw);
     nbt.putInt(MODE_KEY, this.mode.ordinal());
   }
 
@@ -258,6 +541,11 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     } else {
       this.fillerBlockState = null;
     }
+    if (nbt.contains(REPLACED_BLOCK_STATE_KEY, NbtElement.COMPOUND_TYPE)) {
+      this.replacedBlockState = NbtHelper.toBlockState(nbt.getCompound(REPLACED_BLOCK_STATE_KEY));
+    } else {
+      this.replacedBlockState = null;
+    }
     if (nbt.contains(STRUCTURE_NAME_KEY, NbtElement.STRING_TYPE)) {
       this.structureName = nbt.getString(STRUCTURE_NAME_KEY);
     } else {
@@ -265,7 +553,9 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     }
     this.rotation = BlockRotation.values()[nbt.getInt(ROTATION_KEY)];
     this.mirror = BlockMirror.values()[nbt.getInt(MIRROR_KEY)];
+    this.raw = nbt.getBoolean(RAW_KEY);
     this.mode = Mode.values()[nbt.getInt(MODE_KEY)];
+    this.renderBox = null;
   }
 
   @Override
@@ -278,10 +568,49 @@ public class LaserTelemeterBlockEntity extends BlockEntity {
     return this.createNbt();
   }
 
+  /**
+   * Enumeration of the actions a laser telemeter may perform.
+   * <p>
+   * Constants are saved by ordinal, new ones must be added at the end.
+   */
   public enum Mode {
-    BOX,
-    FILL,
-    COPY,
-    PASTE
+    BOX(null),
+    FILL(FillMode.SOLID),
+    COPY(null),
+    PASTE(null),
+    FILL_HOLLOW(FillMode.HOLLOW),
+    FILL_OUTLINE(FillMode.OUTLINE),
+    FILL_WALLS(FillMode.WALLS),
+    FILL_REPLACE(FillMode.REPLACE);
+
+    /**
+     * Order in which modes are cycled through in the GUI.
+     */
+    private static final Mode[] CYCLE = {BOX, FILL, FILL_HOLLOW, FILL_OUTLINE, FILL_WALLS, FILL_REPLACE, COPY, PASTE};
+
+    private final FillMode fillMode;
+
+    Mode(final FillMode fillMode) {
+      this.fillMode = fillMode;
+    }
+
+    /**
+     * The fill mode used by this mode, or null if this mode does not fill the area.
+     */
+    public FillMode getFillMode() {
+      return this.fillMode;
+    }
+
+    /**
+     * Returns the mode that follows this one in the GUI.
+     */
+    public Mode next() {
+      for (int i = 0; i < CYCLE.length; i++) {
+        if (CYCLE[i] == this) {
+          return CYCLE[(i + 1) % CYCLE.length];
+        }
+      }
+      return BOX;
+    }
   }
 }
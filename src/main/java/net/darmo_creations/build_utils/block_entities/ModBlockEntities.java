@@ -1,9 +1,9 @@
 package net.darmo_creations.build_utils.block_entities;
 
 import net.darmo_creations.build_utils.BuildUtils;
-import net.darmo_creations.build_utils.block_entities.renderers.LaserTelemeterBlockEntityRenderer;
+import net.darmo_creations.build_utils.block_entities.renderers.LaserTelemeterBoxRenderer;
+import net.darmo_creations.build_utils.block_entities.renderers.PastePreviewRenderer;
 import net.darmo_creations.build_utils.blocks.ModBlocks;
-import net.fabricmc.fabric.api.client.rendering.v1.BlockEntityRendererRegistry;
 import net.fabricmc.fabric.api.object.builder.v1.block.entity.FabricBlockEntityTypeBuilder;
 import net.minecraft.block.Block;
 import net.minecraft.block.entity.BlockEntity;
@@ -53,7 +53,8 @@ public final class ModBlockEntities {
    * Must be called on client only.
    */
   public static void registerRenderers() {
-    BlockEntityRendererRegistry.register(LASER_TELEMETER, LaserTelemeterBlockEntityRenderer::new);
+    LaserTelemeterBoxRenderer.init();
+    PastePreviewRenderer.init();
   }
 
   private ModBlockEntities() {
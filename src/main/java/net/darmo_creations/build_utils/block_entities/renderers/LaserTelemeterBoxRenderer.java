@@ -0,0 +1,242 @@
+package net.darmo_creations.build_utils.block_entities.renderers;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
+import net.darmo_creations.build_utils.blocks.LaserTelemeterBlock;
+import net.darmo_creations.build_utils.blocks.ModBlocks;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientBlockEntityEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.render.WorldRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Draws the boxes of laser telemeters.
+ * <p>
+ * Loaded telemeters are kept in a spatial index of cubic cells of {@code 2^CELL_SHIFT} blocks,
+ * keyed by the position of the telemeter block. Each cell holds a {@link VertexBuffer} with the boxes of all
+ * its telemeters, along with the box that encloses them. Every frame, after entities and block entities have been
+ * rendered, each cell is tested against the view frustum and the view distance; only visible cells are drawn,
+ * with a single draw call each. Telemeters of other cells are not even looked at.
+ * <p>
+ * A cell is rebuilt when telemeters are loaded into or unloaded from it, or when it is visible and the box of one
+ * of its telemeters changed. As cell bounds include the telemeter blocks, a telemeter that is being edited
+ * is always in a visible cell.
+ * <p>
+ * Vertices are stored relative to the cell’s origin, to keep enough float precision far from the world’s origin.
+ * Boxes are only drawn for players in creative mode with a permission level of at least 2, or in spectator mode.
+ *
+ * @see LaserTelemeterBlockEntity#getRenderBox()
+ * @see LaserTelemeterBlock
+ * @see ModBlocks#LASER_TELEMETER
+ */
+public final class LaserTelemeterBoxRenderer {
+  private static final int CELL_SHIFT = 6;
+
+  private static final Long2ObjectMap<Cell> CELLS = new Long2ObjectOpenHashMap<>();
+  /**
+   * Builder shared by all cells, they are only rebuilt on the render thread.
+   * A single one is reused as the native memory of builders is never freed.
+   */
+  private static final BufferBuilder BUILDER = new BufferBuilder(256 * 24 * VertexFormats.LINES.getVertexSizeByte());
+
+  /**
+   * Registers the block entity and render handlers. Must be called on client only.
+   */
+  public static void init() {
+    ClientBlockEntityEvents.BLOCK_ENTITY_LOAD.register((blockEntity, world) -> {
+      if (blockEntity instanceof LaserTelemeterBlockEntity telemeter) {
+        CELLS.computeIfAbsent(getCellKey(telemeter.getPos()), key -> new Cell(BlockPos.fromLong(key))).add(telemeter);
+      }
+    });
+    ClientBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register((blockEntity, world) -> {
+      if (blockEntity instanceof LaserTelemeterBlockEntity telemeter) {
+        long key = getCellKey(telemeter.getPos());
+        Cell cell = CELLS.get(key);
+        if (cell != null && cell.remove(telemeter)) {
+          CELLS.remove(key);
+        }
+      }
+    });
+    ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(LaserTelemeterBoxRenderer::clear));
+    WorldRenderEvents.AFTER_ENTITIES.register(LaserTelemeterBoxRenderer::render);
+  }
+
+  private static long getCellKey(final BlockPos pos) {
+    return BlockPos.asLong(
+        pos.getX() >> CELL_SHIFT << CELL_SHIFT,
+        pos.getY() >> CELL_SHIFT << CELL_SHIFT,
+        pos.getZ() >> CELL_SHIFT << CELL_SHIFT
+    );
+  }
+
+  private static void clear() {
+    CELLS.values().forEach(Cell::close);
+    CELLS.clear();
+  }
+
+  private static void render(final WorldRenderContext context) {
+    if (CELLS.isEmpty()) {
+      return;
+    }
+    PlayerEntity player = MinecraftClient.getInstance().player;
+    if (player == null || !player.isCreativeLevelTwoOp() && !player.isSpectator()) {
+      return;
+    }
+    Frustum frustum = context.frustum();
+    Vec3d cameraPos = context.camera().getPos();
+    double maxDistance = context.gameRenderer().getViewDistance();
+    MatrixStack matrices = context.matrixStack();
+    RenderLayer renderLayer = RenderLayer.getLines();
+    boolean started = false;
+
+    for (Cell cell : CELLS.values()) {
+      if (!cell.isVisible(frustum, cameraPos, maxDistance)) {
+        continue;
+      }
+      if (cell.needsRebuild()) {
+        cell.rebuild();
+        if (!cell.isVisible(frustum, cameraPos, maxDistance)) {
+          continue;
+        }
+      }
+      if (!started) {
+        renderLayer.startDrawing();
+        started = true;
+      }
+      matrices.push();
+      matrices.translate(cell.origin.getX() - cameraPos.x, cell.origin.getY() - cameraPos.y, cell.origin.getZ() - cameraPos.z);
+      cell.vertexBuffer.setShader(matrices.peek().getPositionMatrix(), context.projectionMatrix(), RenderSystem.getShader());
+      matrices.pop();
+    }
+    if (started) {
+      renderLayer.endDrawing();
+    }
+  }
+
+  /**
+   * A cell of the spatial index.
+   */
+  private static class Cell {
+    final BlockPos origin;
+    /**
+     * Telemeters of this cell, along with the box that was last built for each of them.
+     * Boxes are null for telemeters that were added since the last rebuild.
+     */
+    final Reference2ObjectMap<LaserTelemeterBlockEntity, Box> telemeters = new Reference2ObjectOpenHashMap<>();
+    boolean dirty;
+    /**
+     * The box that encloses all telemeter blocks and boxes of this cell, as of the last rebuild.
+     * Null until the cell is built.
+     */
+    Box bounds;
+    VertexBuffer vertexBuffer;
+
+    Cell(final BlockPos origin) {
+      this.origin = origin;
+    }
+
+    /**
+     * Adds the given telemeter to this cell. The cell is then considered visible until it is rebuilt,
+     * as the new box may lie outside of its current bounds.
+     */
+    void add(final LaserTelemeterBlockEntity telemeter) {
+      this.telemeters.put(telemeter, null);
+      this.dirty = true;
+      this.bounds = null;
+    }
+
+    /**
+     * Removes the given telemeter from this cell.
+     *
+     * @return True if the cell is empty and was closed.
+     */
+    boolean remove(final LaserTelemeterBlockEntity telemeter) {
+      this.telemeters.remove(telemeter);
+      this.dirty = true;
+      if (this.telemeters.isEmpty()) {
+        this.close();
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Indicates whether this cell may be visible. Cells whose bounds are unknown are always visible.
+     */
+    boolean isVisible(final Frustum frustum, final Vec3d cameraPos, double maxDistance) {
+      if (this.bounds == null) {
+        return true;
+      }
+      double dx = Math.max(0, Math.max(this.bounds.minX - cameraPos.x, cameraPos.x - this.bounds.maxX));
+      double dy = Math.max(0, Math.max(this.bounds.minY - cameraPos.y, cameraPos.y - this.bounds.maxY));
+      double dz = Math.max(0, Math.max(this.bounds.minZ - cameraPos.z, cameraPos.z - this.bounds.maxZ));
+      return dx * dx + dy * dy + dz * dz <= maxDistance * maxDistance && (frustum == null || frustum.isVisible(this.bounds));
+    }
+
+    boolean needsRebuild() {
+      if (this.dirty) {
+        return true;
+      }
+      for (Reference2ObjectMap.Entry<LaserTelemeterBlockEntity, Box> entry : this.telemeters.reference2ObjectEntrySet()) {
+        if (entry.getKey().getRenderBox() != entry.getValue()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void rebuild() {
+      BUILDER.begin(VertexFormat.DrawMode.LINES, VertexFormats.LINES);
+      MatrixStack matrices = new MatrixStack();
+      Box bounds = null;
+      for (Reference2ObjectMap.Entry<LaserTelemeterBlockEntity, Box> entry : this.telemeters.reference2ObjectEntrySet()) {
+        LaserTelemeterBlockEntity telemeter = entry.getKey();
+        Box box = telemeter.getRenderBox();
+        entry.setValue(box);
+        Box enclosing = box.union(new Box(telemeter.getPos()));
+        bounds = bounds == null ? enclosing : bounds.union(enclosing);
+        WorldRenderer.drawBox(
+            matrices, BUILDER,
+            box.minX - this.origin.getX(), box.minY - this.origin.getY(), box.minZ - this.origin.getZ(),
+            box.maxX - this.origin.getX(), box.maxY - this.origin.getY(), box.maxZ - this.origin.getZ(),
+            1, 1, 1, 1,
+            0, 0, 0
+        );
+      }
+      BUILDER.end();
+      if (this.vertexBuffer == null) {
+        this.vertexBuffer = new VertexBuffer();
+      }
+      this.vertexBuffer.upload(BUILDER);
+      this.bounds = bounds;
+      this.dirty = false;
+    }
+
+    void close() {
+      if (this.vertexBuffer != null) {
+        this.vertexBuffer.close();
+        this.vertexBuffer = null;
+      }
+    }
+  }
+
+  private LaserTelemeterBoxRenderer() {
+  }
+}
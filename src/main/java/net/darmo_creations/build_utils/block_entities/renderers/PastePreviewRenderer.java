@@ -0,0 +1,361 @@
+package net.darmo_creations.build_utils.block_entities.renderers;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
+import net.darmo_creations.build_utils.network.packets.PastePreviewPacket;
+import net.darmo_creations.build_utils.structures.BlockTransform;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientBlockEntityEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.color.block.BlockColors;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.BakedQuad;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.EmptyBlockView;
+import org.lwjgl.opengl.GL11;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Draws translucent previews of the structures that laser telemeters in PASTE mode would paste.
+ * <p>
+ * Previews are streamed by the server through {@link PastePreviewPacket}s, untransformed. Once all cells
+ * of a preview have been received, they are meshed once on a worker thread, then uploaded into a {@link VertexBuffer}
+ * on the render thread. The telemeter’s offset, mirror and rotation are applied to the whole mesh through
+ * the model-view matrix, hence changing them, e.g. from the {@link net.darmo_creations.build_utils.gui.LaserTelemeterScreen},
+ * never requires meshing the preview again.
+ * <p>
+ * Blocks are drawn with their models, at full brightness. Faces hidden by an opaque neighbor are culled.
+ * A preview is only drawn while its telemeter is in PASTE mode with the same structure name.
+ * Previews are discarded when their telemeter is unloaded, when the server clears them or on disconnection.
+ */
+public final class PastePreviewRenderer {
+  private static final float ALPHA = 0.5f;
+
+  private static final Long2ObjectMap<Preview> PREVIEWS = new Long2ObjectOpenHashMap<>();
+  /**
+   * Buffer builders that are not used by any meshing task.
+   * They are reused as their memory is never released.
+   */
+  private static final Queue<BufferBuilder> BUILDERS = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Registers the block entity and render handlers. Must be called on client only.
+   */
+  public static void init() {
+    ClientBlockEntityEvents.BLOCK_ENTITY_UNLOAD.register((blockEntity, world) -> {
+      if (blockEntity instanceof LaserTelemeterBlockEntity telemeter) {
+        remove(telemeter.getPos().asLong());
+      }
+    });
+    ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(PastePreviewRenderer::clear));
+    WorldRenderEvents.AFTER_TRANSLUCENT.register(PastePreviewRenderer::render);
+  }
+
+  /**
+   * Adds the cells of the given packet to the preview they belong to. Cells of a new preview replace the previous
+   * one of the same telemeter. Meshing starts once all cells of a preview have been received.
+   * Must be called from the render thread.
+   */
+  public static void onPacket(final PastePreviewPacket packet) {
+    long key = packet.getPos().asLong();
+    if (packet.getCellsNb() == 0) {
+      remove(key);
+      return;
+    }
+    Preview preview = PREVIEWS.get(key);
+    if (preview == null || preview.id != packet.getPreviewId()) {
+      remove(key);
+      preview = new Preview(packet);
+      PREVIEWS.put(key, preview);
+    }
+    if (preview.mesh == null) {
+      preview.cells.addAll(packet.getCells());
+      if (preview.cells.size() >= preview.cellsNb) {
+        preview.startMeshing();
+      }
+    }
+  }
+
+  /**
+   * Sets the mirror and rotation the preview of the given telemeter is drawn with, in place of the telemeter’s.
+   * Used to update previews while the telemeter is being edited. Must be called from the render thread.
+   *
+   * @param pos      Telemeter’s position.
+   * @param mirror   The mirror to apply, or null to use the telemeter’s.
+   * @param rotation The rotation to apply, or null to use the telemeter’s.
+   */
+  public static void setTransform(final BlockPos pos, @Nullable BlockMirror mirror, @Nullable BlockRotation rotation) {
+    Preview preview = PREVIEWS.get(pos.asLong());
+    if (preview != null) {
+      preview.mirror = mirror;
+      preview.rotation = rotation;
+    }
+  }
+
+  private static void remove(long key) {
+    Preview preview = PREVIEWS.remove(key);
+    if (preview != null) {
+      preview.close();
+    }
+  }
+
+  private static void clear() {
+    PREVIEWS.values().forEach(Preview::close);
+    PREVIEWS.clear();
+  }
+
+  private static void render(final WorldRenderContext context) {
+    if (PREVIEWS.isEmpty()) {
+      return;
+    }
+    ClientWorld world = context.world();
+    Frustum frustum = context.frustum();
+    Vec3d cameraPos = context.camera().getPos();
+    MatrixStack matrices = context.matrixStack();
+    RenderLayer renderLayer = RenderLayer.getTranslucent();
+    boolean started = false;
+
+    for (Preview preview : PREVIEWS.values()) {
+      if (preview.vertexBuffer == null
+          || !(world.getBlockEntity(preview.pos) instanceof LaserTelemeterBlockEntity telemeter)
+          || telemeter.getMode() != LaserTelemeterBlockEntity.Mode.PASTE
+          || !preview.structureName.equals(telemeter.getStructureName())) {
+        continue;
+      }
+      BlockMirror mirror = preview.mirror != null ? preview.mirror : telemeter.getMirror();
+      BlockRotation rotation = preview.rotation != null ? preview.rotation : telemeter.getRotation();
+      BlockPos origin = preview.pos.add(telemeter.getOffset());
+      if (frustum != null && !frustum.isVisible(getBounds(origin, preview.size, mirror, rotation))) {
+        continue;
+      }
+      if (!started) {
+        renderLayer.startDrawing();
+        RenderSystem.setShaderColor(1, 1, 1, ALPHA);
+        started = true;
+      }
+      matrices.push();
+      matrices.translate(origin.getX() - cameraPos.x, origin.getY() - cameraPos.y, origin.getZ() - cameraPos.z);
+      // Transform around the center of the origin block, as vanilla does with block positions
+      matrices.translate(0.5, 0, 0.5);
+      matrices.multiply(Vec3f.NEGATIVE_Y.getDegreesQuaternion(getClockwiseAngle(rotation)));
+      switch (mirror) {
+        case LEFT_RIGHT -> matrices.scale(1, 1, -1);
+        case FRONT_BACK -> matrices.scale(-1, 1, 1);
+      }
+      matrices.translate(-0.5, 0, -0.5);
+      if (mirror != BlockMirror.NONE) {
+        // Mirroring reverses the winding order of faces
+        GL11.glFrontFace(GL11.GL_CW);
+      }
+      preview.vertexBuffer.setShader(matrices.peek().getPositionMatrix(), context.projectionMatrix(), RenderSystem.getShader());
+      if (mirror != BlockMirror.NONE) {
+        GL11.glFrontFace(GL11.GL_CCW);
+      }
+      matrices.pop();
+    }
+    if (started) {
+      RenderSystem.setShaderColor(1, 1, 1, 1);
+      renderLayer.endDrawing();
+    }
+  }
+
+  private static Box getBounds(final BlockPos origin, final Vec3i size, BlockMirror mirror, BlockRotation rotation) {
+    BlockTransform transform = BlockTransform.of(mirror, rotation);
+    int maxX = size.getX() - 1;
+    int maxZ = size.getZ() - 1;
+    return Box.from(BlockBox.create(
+        origin,
+        origin.add(transform.applyX(maxX, maxZ), size.getY() - 1, transform.applyZ(maxX, maxZ))
+    ));
+  }
+
+  private static float getClockwiseAngle(BlockRotation rotation) {
+    return switch (rotation) {
+      case NONE -> 0;
+      case CLOCKWISE_90 -> 90;
+      case CLOCKWISE_180 -> 180;
+      case COUNTERCLOCKWISE_90 -> 270;
+    };
+  }
+
+  /**
+   * The structure preview of a telemeter.
+   */
+  private static class Preview {
+    final BlockPos pos;
+    final int id;
+    final String structureName;
+    final Vec3i size;
+    final int cellsNb;
+    final List<PastePreviewPacket.Cell> cells;
+    /**
+     * Mirror and rotation set through {@link #setTransform(BlockPos, BlockMirror, BlockRotation)}.
+     */
+    BlockMirror mirror;
+    BlockRotation rotation;
+    CompletableFuture<BufferBuilder> mesh;
+    VertexBuffer vertexBuffer;
+    boolean closed;
+
+    Preview(final PastePreviewPacket packet) {
+      this.pos = packet.getPos();
+      this.id = packet.getPreviewId();
+      this.structureName = packet.getStructureName();
+      this.size = packet.getSize();
+      this.cellsNb = packet.getCellsNb();
+      this.cells = new ArrayList<>(this.cellsNb);
+    }
+
+    /**
+     * Meshes the cells of this preview on a worker thread,
+     * then uploads the mesh on the render thread unless this preview has been closed in the meantime.
+     */
+    void startMeshing() {
+      MinecraftClient client = MinecraftClient.getInstance();
+      this.mesh = CompletableFuture.supplyAsync(() -> buildMesh(this.cells), Util.getMainWorkerExecutor());
+      this.mesh.whenCompleteAsync((builder, error) -> {
+        if (error != null) {
+          BuildUtils.LOGGER.error("Could not mesh preview of structure {}", this.structureName, error);
+          return;
+        }
+        if (this.closed) {
+          builder.popData();
+        } else {
+          this.vertexBuffer = new VertexBuffer();
+          this.vertexBuffer.upload(builder);
+        }
+        BUILDERS.add(builder);
+      }, client);
+    }
+
+    void close() {
+      this.closed = true;
+      if (this.vertexBuffer != null) {
+        this.vertexBuffer.close();
+        this.vertexBuffer = null;
+      }
+    }
+  }
+
+  /**
+   * Builds the mesh of the given cells. Vertices are relative to the structure’s origin.
+   * May be called from any thread.
+   */
+  private static BufferBuilder buildMesh(final List<PastePreviewPacket.Cell> cells) {
+    Long2ObjectMap<PastePreviewPacket.Cell> cellsIndex = new Long2ObjectOpenHashMap<>(cells.size());
+    for (PastePreviewPacket.Cell cell : cells) {
+      cellsIndex.put(BlockPos.asLong(cell.x(), cell.y(), cell.z()), cell);
+    }
+    RenderLayer renderLayer = RenderLayer.getTranslucent();
+    BufferBuilder builder = BUILDERS.poll();
+    if (builder == null) {
+      builder = new BufferBuilder(renderLayer.getExpectedBufferSize());
+    }
+    builder.begin(renderLayer.getDrawMode(), renderLayer.getVertexFormat());
+    BlockRenderManager blockRenderManager = MinecraftClient.getInstance().getBlockRenderManager();
+    BlockColors blockColors = MinecraftClient.getInstance().getBlockColors();
+    MatrixStack matrices = new MatrixStack();
+    Random random = new Random();
+
+    for (PastePreviewPacket.Cell cell : cells) {
+      for (int i = 0; i < 4096; i++) {
+        BlockState state = cell.getState(i);
+        if (state.getRenderType() != BlockRenderType.MODEL) {
+          continue;
+        }
+        int x = cell.x() << 4 | i & 15;
+        int y = cell.y() << 4 | i >> 8;
+        int z = cell.z() << 4 | i >> 4 & 15;
+        BakedModel model = blockRenderManager.getModel(state);
+        matrices.push();
+        matrices.translate(x, y, z);
+        for (Direction direction : Direction.values()) {
+          BlockState neighbor = getState(cellsIndex, x + direction.getOffsetX(), y + direction.getOffsetY(), z + direction.getOffsetZ());
+          if (neighbor == null || !neighbor.isOpaqueFullCube(EmptyBlockView.INSTANCE, BlockPos.ORIGIN)) {
+            random.setSeed(42);
+            emitQuads(builder, matrices, blockColors, state, model.getQuads(state, direction, random));
+          }
+        }
+        random.setSeed(42);
+        emitQuads(builder, matrices, blockColors, state, model.getQuads(state, null, random));
+        matrices.pop();
+      }
+    }
+    builder.end();
+    return builder;
+  }
+
+  @Nullable
+  private static BlockState getState(final Long2ObjectMap<PastePreviewPacket.Cell> cellsIndex, int x, int y, int z) {
+    if (x < 0 || y < 0 || z < 0) {
+      return null;
+    }
+    PastePreviewPacket.Cell cell = cellsIndex.get(BlockPos.asLong(x >> 4, y >> 4, z >> 4));
+    return cell != null ? cell.getState((y & 15) << 8 | (z & 15) << 4 | x & 15) : null;
+  }
+
+  private static void emitQuads(
+      BufferBuilder builder,
+      final MatrixStack matrices,
+      final BlockColors blockColors,
+      final BlockState state,
+      final List<BakedQuad> quads
+  ) {
+    for (BakedQuad quad : quads) {
+      // Vanilla color providers fall back to default colors without a world
+      int color = quad.hasColor() ? blockColors.getColor(state, null, null, quad.getColorIndex()) : -1;
+      float shade = quad.hasShade() ? getShade(quad.getFace()) : 1;
+      float r = (color >> 16 & 0xff) / 255f * shade;
+      float g = (color >> 8 & 0xff) / 255f * shade;
+      float b = (color & 0xff) / 255f * shade;
+      builder.quad(matrices.peek(), quad, r, g, b, LightmapTextureManager.MAX_LIGHT_COORDINATE, OverlayTexture.DEFAULT_UV);
+    }
+  }
+
+  /**
+   * Returns the same directional shading as the overworld’s.
+   */
+  private static float getShade(Direction direction) {
+    return switch (direction) {
+      case DOWN -> 0.5f;
+      case UP -> 1;
+      case NORTH, SOUTH -> 0.8f;
+      case WEST, EAST -> 0.6f;
+    };
+  }
+
+  private PastePreviewRenderer() {
+  }
+}
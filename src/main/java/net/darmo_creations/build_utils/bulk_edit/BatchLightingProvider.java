@@ -0,0 +1,18 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * Implemented by the server’s lighting provider to queue light checks by batches.
+ *
+ * @see net.darmo_creations.build_utils.mixin.ServerLightingProviderMixin
+ */
+public interface BatchLightingProvider {
+  /**
+   * Queues light checks for all the given positions as a single lighting task.
+   * Positions should all lie in the same chunk, as the task is scheduled for the chunk of the first one.
+   *
+   * @param positions Packed block positions. The list must not be modified afterwards.
+   */
+  void buildUtils$checkBlocks(LongList positions);
+}
@@ -0,0 +1,39 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+
+/**
+ * Computes the counters cached by {@link ChunkSection}s, as done by {@link ChunkSection#calculateCounts()}.
+ */
+class BlockCounter implements PalettedContainer.Counter<BlockState> {
+  int nonEmptyBlockCount;
+  int randomTickableBlockCount;
+  int nonEmptyFluidCount;
+
+  /**
+   * Counts the blocks of the given container.
+   */
+  BlockCounter(final PalettedContainer<BlockState> container) {
+    container.count(this);
+  }
+
+  @Override
+  public void accept(BlockState blockState, int count) {
+    FluidState fluidState = blockState.getFluidState();
+    if (!blockState.isAir()) {
+      this.nonEmptyBlockCount += count;
+      if (blockState.hasRandomTicks()) {
+        this.randomTickableBlockCount += count;
+      }
+    }
+    if (!fluidState.isEmpty()) {
+      this.nonEmptyBlockCount += count;
+      if (fluidState.hasRandomTicks()) {
+        this.nonEmptyFluidCount += count;
+      }
+    }
+  }
+}
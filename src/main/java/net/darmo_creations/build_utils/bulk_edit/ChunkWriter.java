@@ -0,0 +1,118 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.mixin.ChunkSectionAccessor;
+import net.minecraft.block.Block;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Commits {@link PreparedSection}s into loaded chunks. This is the write path shared by all bulk edits.
+ * <p>
+ * Sections are expected to be prepared in parallel through {@link #prepare(List, Function)}.
+ * <p>
+ * Prepared block state containers are swapped into the chunk’s sections, then lighting checks of blocks whose
+ * opacity or luminance changed are handed to {@link DeferredLighting}, heightmaps are recomputed once per chunk
+ * and changes are queued for watching clients in the {@link ClientSyncQueue}. Block entities are removed/created
+ * as requested and neighbors of the requested blocks are notified last.
+ */
+final class ChunkWriter {
+  private static final ForkJoinPool PREPARATION_POOL = new ForkJoinPool();
+  private static final Set<Heightmap.Type> HEIGHTMAP_TYPES = EnumSet.of(
+      Heightmap.Type.MOTION_BLOCKING,
+      Heightmap.Type.MOTION_BLOCKING_NO_LEAVES,
+      Heightmap.Type.OCEAN_FLOOR,
+      Heightmap.Type.WORLD_SURFACE
+  );
+
+  /**
+   * Runs the preparation stage of a bulk edit in parallel, one task per chunk, then waits for all tasks to finish.
+   * Preparers must not modify the chunks, as the server thread is blocked while they run.
+   *
+   * @param chunks   The chunks to prepare.
+   * @param preparer The function that prepares a single chunk.
+   * @param <T>      Type of prepared data.
+   * @return The prepared data, in the same order as the chunks.
+   */
+  static <T> List<T> prepare(final List<WorldChunk> chunks, final Function<WorldChunk, T> preparer) {
+    return PREPARATION_POOL.submit(() -> chunks.parallelStream().map(preparer).toList()).join();
+  }
+
+  /**
+   * Swaps the prepared sections into the given chunk. Must be called from the server thread.
+   *
+   * @param chunk            The chunk to edit.
+   * @param preparedSections The prepared sections of the chunk.
+   * @param world            The world the chunk belongs to.
+   * @return The number of blocks that were changed.
+   */
+  static int commit(WorldChunk chunk, final List<PreparedSection> preparedSections, ServerWorld world) {
+    if (preparedSections.isEmpty()) {
+      return 0;
+    }
+    ChunkPos chunkPos = chunk.getPos();
+    LightingProvider lightingProvider = world.getChunkManager().getLightingProvider();
+    ChunkSection[] sections = chunk.getSectionArray();
+    int blocksNb = 0;
+
+    for (PreparedSection preparedSection : preparedSections) {
+      ChunkSection section = sections[preparedSection.index()];
+      boolean wasEmpty = section.isEmpty();
+      ChunkSectionAccessor accessor = (ChunkSectionAccessor) section;
+      accessor.setBlockStateContainer(preparedSection.container());
+      accessor.setNonEmptyBlockCount((short) preparedSection.counter().nonEmptyBlockCount);
+      accessor.setRandomTickableBlockCount((short) preparedSection.counter().randomTickableBlockCount);
+      accessor.setNonEmptyFluidCount((short) preparedSection.counter().nonEmptyFluidCount);
+
+      preparedSection.removedBlockEntities().forEach(chunk::removeBlockEntity);
+      for (Pair<BlockPos, NbtCompound> entry : preparedSection.addedBlockEntities()) {
+        BlockEntity blockEntity = chunk.getBlockEntity(entry.getLeft(), WorldChunk.CreationType.IMMEDIATE);
+        if (blockEntity != null && entry.getRight() != null) {
+          blockEntity.readNbt(entry.getRight());
+          blockEntity.markDirty();
+        }
+      }
+
+      ChunkSectionPos sectionPos = ChunkSectionPos.from(chunkPos, preparedSection.y());
+      ClientSyncQueue.enqueue(world, sectionPos, preparedSection.changed(),
+          preparedSection.addedBlockEntities().stream().map(Pair::getLeft).toList());
+      if (preparedSection.changed().isEmpty()) {
+        continue;
+      }
+      boolean isEmpty = section.isEmpty();
+      if (wasEmpty != isEmpty) {
+        lightingProvider.setSectionStatus(sectionPos, isEmpty);
+      }
+      DeferredLighting.enqueue(world, sectionPos, preparedSection.lightChecks());
+      blocksNb += preparedSection.changed().size();
+    }
+
+    Heightmap.populateHeightmaps(chunk, HEIGHTMAP_TYPES);
+    chunk.setNeedsSaving(true);
+    for (PreparedSection preparedSection : preparedSections) {
+      for (PreparedSection.BlockUpdate update : preparedSection.blockUpdates()) {
+        update.newState().onBlockAdded(world, update.pos(), update.oldState(), false);
+        update.newState().updateNeighbors(world, update.pos(), Block.NOTIFY_LISTENERS);
+        world.updateNeighbors(update.pos(), update.newState().getBlock());
+      }
+    }
+    return blocksNb;
+  }
+
+  private ChunkWriter() {
+  }
+}
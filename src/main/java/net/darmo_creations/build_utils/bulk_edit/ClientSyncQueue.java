@@ -0,0 +1,276 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.ModGameRules;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.network.Packet;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.*;
+
+/**
+ * Sends the changes made by bulk edits to watching clients.
+ * <p>
+ * Instead of being sent as soon as they are committed, changed positions are collected per player and per
+ * chunk section, then flushed at the end of each server tick. Each time a chunk is flushed:
+ * <li>If it contains enough densely edited sections, the whole chunk is resent in a single packet.
+ * <li>Otherwise, a single delta packet is sent per edited section, followed by the data of new block entities.
+ * <p>
+ * The number of packets sent to each player per tick is limited by the {@link ModGameRules#SYNC_PACKETS_PER_TICK}
+ * game rule. Chunks that do not fit are sent during the next ticks. Players may override this limit and choose
+ * the order in which their pending chunks are sent through {@link #setPacketsPerTick(UUID, int)}
+ * and {@link #setPriority(UUID, Priority)}.
+ */
+public final class ClientSyncQueue {
+  /**
+   * Number of changed blocks above which a section is considered densely edited.
+   */
+  private static final int DENSE_SECTION_THRESHOLD = 1024;
+  /**
+   * Number of densely edited sections above which a whole chunk is resent.
+   */
+  private static final int FULL_RESEND_THRESHOLD = 2;
+
+  private static final Map<UUID, PlayerQueue> QUEUES = new HashMap<>();
+  private static final Map<UUID, Settings> SETTINGS = new HashMap<>();
+
+  /**
+   * Registers the tick and connection handlers. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(ClientSyncQueue::tick);
+    // Clients receive whole chunks when they join, nothing pending is relevant anymore
+    ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> QUEUES.remove(handler.player.getUuid()));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+      QUEUES.clear();
+      SETTINGS.clear();
+    });
+  }
+
+  /**
+   * Queues the changes made to a chunk section for all players watching its chunk.
+   * Must be called from the server thread.
+   *
+   * @param world         The world the section belongs to.
+   * @param sectionPos    Position of the section.
+   * @param changed       Packed local positions of the changed blocks.
+   * @param blockEntities Positions of the block entities that were created in the section.
+   */
+  static void enqueue(final ServerWorld world, final ChunkSectionPos sectionPos, final ShortSet changed, final List<BlockPos> blockEntities) {
+    if (changed.isEmpty() && blockEntities.isEmpty()) {
+      return;
+    }
+    ChunkPos chunkPos = sectionPos.toChunkPos();
+    for (ServerPlayerEntity player : world.getChunkManager().threadedAnvilChunkStorage.getPlayersWatchingChunk(chunkPos, false)) {
+      QUEUES.computeIfAbsent(player.getUuid(), uuid -> new PlayerQueue())
+          .add(world.getRegistryKey(), chunkPos.toLong(), sectionPos.getSectionY(), changed, blockEntities);
+    }
+  }
+
+  /**
+   * Sets the maximum number of packets sent to the given player per tick.
+   *
+   * @param playerId       UUID of the player.
+   * @param packetsPerTick Number of packets. Values lower than 1 restore the game rule’s value.
+   */
+  public static void setPacketsPerTick(final UUID playerId, int packetsPerTick) {
+    Settings settings = SETTINGS.getOrDefault(playerId, Settings.DEFAULT);
+    SETTINGS.put(playerId, new Settings(Math.max(0, packetsPerTick), settings.priority()));
+  }
+
+  /**
+   * Sets the order in which pending chunks are sent to the given player.
+   *
+   * @param playerId UUID of the player.
+   * @param priority The order.
+   */
+  public static void setPriority(final UUID playerId, final Priority priority) {
+    Settings settings = SETTINGS.getOrDefault(playerId, Settings.DEFAULT);
+    SETTINGS.put(playerId, new Settings(settings.packetsPerTick(), Objects.requireNonNull(priority)));
+  }
+
+  /**
+   * Restores the default settings of the given player.
+   *
+   * @param playerId UUID of the player.
+   */
+  public static void resetSettings(final UUID playerId) {
+    SETTINGS.remove(playerId);
+  }
+
+  private static void tick(MinecraftServer server) {
+    if (QUEUES.isEmpty()) {
+      return;
+    }
+    int defaultPacketsPerTick = server.getGameRules().getInt(ModGameRules.SYNC_PACKETS_PER_TICK);
+    for (Iterator<Map.Entry<UUID, PlayerQueue>> iterator = QUEUES.entrySet().iterator(); iterator.hasNext(); ) {
+      Map.Entry<UUID, PlayerQueue> entry = iterator.next();
+      ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+      PlayerQueue queue = entry.getValue();
+      // Players that changed dimension received whole chunks already
+      if (player == null || player.getWorld().getRegistryKey() != queue.dimension) {
+        iterator.remove();
+        continue;
+      }
+      Settings settings = SETTINGS.getOrDefault(entry.getKey(), Settings.DEFAULT);
+      int packetsPerTick = settings.packetsPerTick() > 0 ? settings.packetsPerTick() : defaultPacketsPerTick;
+      flush(player, queue, packetsPerTick, settings.priority());
+      if (queue.chunks.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Sends the pending chunks of the given player, in the given order, until the given number of packets is reached.
+   * At least one chunk is always sent.
+   */
+  private static void flush(ServerPlayerEntity player, PlayerQueue queue, int packetsPerTick, final Priority priority) {
+    ServerWorld world = player.getWorld();
+    long[] keys = queue.chunks.keySet().toLongArray();
+    if (priority == Priority.NEAREST) {
+      ChunkPos playerPos = player.getChunkPos();
+      LongArrays.quickSort(keys, (k1, k2) -> Integer.compare(
+          getSquaredDistance(playerPos, k1),
+          getSquaredDistance(playerPos, k2)
+      ));
+    }
+
+    int packetsNb = 0;
+    for (long key : keys) {
+      if (packetsNb >= packetsPerTick) {
+        break;
+      }
+      ChunkChanges changes = queue.chunks.remove(key);
+      ChunkPos chunkPos = new ChunkPos(key);
+      WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkPos.x, chunkPos.z);
+      // Chunks that were unloaded or left the player’s view will be sent whole when watched again
+      if (chunk == null || !world.getChunkManager().threadedAnvilChunkStorage
+          .getPlayersWatchingChunk(chunkPos, false).contains(player)) {
+        continue;
+      }
+      if (changes.getDenseSectionsNb() >= FULL_RESEND_THRESHOLD) {
+        player.networkHandler.sendPacket(new ChunkDataS2CPacket(chunk, world.getLightingProvider(), null, null, true));
+        packetsNb++;
+        continue;
+      }
+      for (Int2ObjectMap.Entry<ShortSet> section : changes.sections.int2ObjectEntrySet()) {
+        if (!section.getValue().isEmpty()) {
+          int sectionY = section.getIntKey();
+          player.networkHandler.sendPacket(new ChunkDeltaUpdateS2CPacket(ChunkSectionPos.from(chunkPos, sectionY),
+              section.getValue(), chunk.getSection(world.sectionCoordToIndex(sectionY)), false));
+          packetsNb++;
+        }
+      }
+      for (BlockPos pos : changes.blockEntities) {
+        BlockEntity blockEntity = chunk.getBlockEntity(pos);
+        if (blockEntity != null) {
+          Packet<?> packet = blockEntity.toUpdatePacket();
+          if (packet != null) {
+            player.networkHandler.sendPacket(packet);
+            packetsNb++;
+          }
+        }
+      }
+    }
+  }
+
+  private static int getSquaredDistance(final ChunkPos pos, long key) {
+    int dx = ChunkPos.getPackedX(key) - pos.x;
+    int dz = ChunkPos.getPackedZ(key) - pos.z;
+    return dx * dx + dz * dz;
+  }
+
+  /**
+   * Enumeration of the orders in which pending chunks may be sent to a player.
+   */
+  public enum Priority {
+    /**
+     * Chunks closest to the player are sent first.
+     */
+    NEAREST,
+    /**
+     * Chunks are sent in the order they were first edited.
+     */
+    OLDEST;
+
+    /**
+     * Name of this priority as used in commands.
+     */
+    public String getName() {
+      return this.name().toLowerCase();
+    }
+  }
+
+  /**
+   * Sync settings of a player.
+   *
+   * @param packetsPerTick Maximum number of packets per tick. 0 to use the game rule’s value.
+   * @param priority       Order in which pending chunks are sent.
+   */
+  private record Settings(int packetsPerTick, Priority priority) {
+    static final Settings DEFAULT = new Settings(0, Priority.NEAREST);
+  }
+
+  /**
+   * The pending changes of a single player, in edition order.
+   */
+  private static class PlayerQueue {
+    RegistryKey<World> dimension;
+    final Long2ObjectMap<ChunkChanges> chunks = new Long2ObjectLinkedOpenHashMap<>();
+
+    void add(final RegistryKey<World> dimension, long chunkKey, int sectionY, final ShortSet changed, final List<BlockPos> blockEntities) {
+      if (dimension != this.dimension) {
+        this.chunks.clear();
+        this.dimension = dimension;
+      }
+      ChunkChanges changes = this.chunks.get(chunkKey);
+      if (changes == null) {
+        changes = new ChunkChanges();
+        this.chunks.put(chunkKey, changes);
+      }
+      ShortSet positions = changes.sections.get(sectionY);
+      if (positions == null) {
+        positions = new ShortOpenHashSet();
+        changes.sections.put(sectionY, positions);
+      }
+      positions.addAll(changed);
+      changes.blockEntities.addAll(blockEntities);
+    }
+  }
+
+  /**
+   * The pending changes of a single chunk, merged across edits.
+   */
+  private static class ChunkChanges {
+    final Int2ObjectMap<ShortSet> sections = new Int2ObjectOpenHashMap<>();
+    final Set<BlockPos> blockEntities = new HashSet<>();
+
+    int getDenseSectionsNb() {
+      return (int) this.sections.values().stream().filter(positions -> positions.size() >= DENSE_SECTION_THRESHOLD).count();
+    }
+  }
+
+  private ClientSyncQueue() {
+  }
+}
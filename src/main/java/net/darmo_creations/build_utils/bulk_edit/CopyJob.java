@@ -0,0 +1,125 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.darmo_creations.build_utils.structures.ColumnStream;
+import net.darmo_creations.build_utils.structures.StructureIO;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.Formatting;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A copy of a region into a file that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * Each step captures one column of the region into a {@link ColumnStream}, that an I/O thread writes into the file
+ * as it goes, see {@link StructureIO#write(ColumnStream, java.nio.file.Path)}. The job is not ready while the stream
+ * is full, so that the writer drains it at its own pace without the server thread waiting for it.
+ * The job is done once the file has been written or the writer failed.
+ * <p>
+ * Copies do not edit the world, they are thus not recorded in the history. They are not persisted either:
+ * the stream is aborted if the server stops, and the target file is left untouched.
+ */
+public class CopyJob extends EditJob {
+  private final ColumnStream<?> stream;
+  private final CompletableFuture<Void> writer;
+  private final String structureName;
+  private final String feedbackKey;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world         The world to copy blocks from.
+   * @param stream        The stream to capture columns into.
+   * @param writer        The future returned by {@link StructureIO#write(ColumnStream, java.nio.file.Path)} for the stream.
+   * @param structureName Name of the structure being written.
+   * @param owner         UUID of the player that started the job. May be null.
+   * @param feedbackKey   Translation key of the message to send once the file has been written.
+   *                      It receives the structure’s name as its only argument.
+   * @param broadcast     Whether to send the final message to all players instead of only the owner.
+   */
+  public CopyJob(
+      final ServerWorld world,
+      final ColumnStream<?> stream,
+      final CompletableFuture<Void> writer,
+      final String structureName,
+      @Nullable final UUID owner,
+      final String feedbackKey,
+      final boolean broadcast
+  ) {
+    super(world.getRegistryKey().getValue(), owner, broadcast);
+    this.stream = Objects.requireNonNull(stream);
+    this.writer = Objects.requireNonNull(writer);
+    this.structureName = Objects.requireNonNull(structureName);
+    this.feedbackKey = Objects.requireNonNull(feedbackKey);
+  }
+
+  /**
+   * The total number of columns to capture.
+   */
+  @Override
+  public int getStepsNb() {
+    return this.stream.getColumnsNb();
+  }
+
+  /**
+   * Indicates whether the file has been written or the writer failed.
+   */
+  @Override
+  public boolean isDone() {
+    return this.writer.isDone();
+  }
+
+  /**
+   * False while the stream is full and once all columns have been captured.
+   */
+  @Override
+  public boolean isReady() {
+    return this.cursor < this.getStepsNb() && !this.stream.isFull();
+  }
+
+  /**
+   * Captures the next column then moves the cursor forward.
+   *
+   * @param world The world to copy blocks from. Must be the one designated by {@link #getDimension()}.
+   */
+  @Override
+  public void runNextStep(ServerWorld world) {
+    this.stream.captureNext(world);
+    this.blocksNb = this.stream.getBlocksNb();
+    this.cursor++;
+  }
+
+  /**
+   * Aborts the stream so that the writer stops.
+   */
+  @Override
+  void discard() {
+    super.discard();
+    this.stream.abort();
+  }
+
+  @Override
+  public Operation getStepOperation() {
+    return Operation.COPY_JOB_STEP;
+  }
+
+  @Override
+  protected String getProgressKey() {
+    return "message.build_utils.copy_job.progress";
+  }
+
+  @Override
+  public Text getFeedbackMessage() {
+    if (this.writer.isCompletedExceptionally()) {
+      return new TranslatableText("message.build_utils.copy_job.error.cannot_save_structure", this.structureName)
+          .setStyle(Style.EMPTY.withColor(Formatting.RED));
+    }
+    return new TranslatableText(this.feedbackKey, this.structureName);
+  }
+}
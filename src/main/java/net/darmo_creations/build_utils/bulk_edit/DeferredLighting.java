@@ -0,0 +1,117 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.shorts.ShortIterator;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.ModGameRules;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.light.LightingProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defers the light checks of bulk edits until the end of the server tick.
+ * <p>
+ * Instead of queueing one lighting task per changed block, the positions that need a light check are collected
+ * per chunk while edits are committed. At the end of the tick, the lighting of all edited chunks is updated
+ * in a single pass, ordered by chunk X then Z coordinate, with one lighting task per chunk.
+ * <p>
+ * This behavior can be disabled through the {@link ModGameRules#DEFERRED_LIGHTING} game rule,
+ * in which case light checks are queued as soon as blocks are changed.
+ */
+public final class DeferredLighting {
+  private static final Map<RegistryKey<World>, Long2ObjectMap<LongList>> PENDING = new HashMap<>();
+
+  /**
+   * Registers the tick handler. Called from {@link BuildUtils#onInitialize()}.
+   * Must be called after {@link EditJobScheduler#init()} so that the lighting of a tick’s job steps is updated
+   * during the same tick.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(DeferredLighting::flush);
+    ServerLifecycleEvents.SERVER_STOPPING.register(DeferredLighting::flush);
+  }
+
+  /**
+   * Queues light checks for the given positions of a chunk section. Must be called from the server thread.
+   *
+   * @param world      The world the section belongs to.
+   * @param sectionPos Position of the section.
+   * @param positions  Packed local positions of the blocks to check.
+   */
+  static void enqueue(ServerWorld world, final ChunkSectionPos sectionPos, final ShortSet positions) {
+    if (positions.isEmpty()) {
+      return;
+    }
+    if (!world.getGameRules().getBoolean(ModGameRules.DEFERRED_LIGHTING)) {
+      LightingProvider lightingProvider = world.getChunkManager().getLightingProvider();
+      BlockPos.Mutable pos = new BlockPos.Mutable();
+      for (ShortIterator it = positions.iterator(); it.hasNext(); ) {
+        short packedPos = it.nextShort();
+        lightingProvider.checkBlock(pos.set(
+            sectionPos.unpackBlockX(packedPos),
+            sectionPos.unpackBlockY(packedPos),
+            sectionPos.unpackBlockZ(packedPos)
+        ));
+      }
+      return;
+    }
+    Long2ObjectMap<LongList> chunks = PENDING.computeIfAbsent(world.getRegistryKey(), key -> new Long2ObjectOpenHashMap<>());
+    long chunkKey = sectionPos.toChunkPos().toLong();
+    LongList chunkPositions = chunks.get(chunkKey);
+    if (chunkPositions == null) {
+      chunkPositions = new LongArrayList();
+      chunks.put(chunkKey, chunkPositions);
+    }
+    for (ShortIterator it = positions.iterator(); it.hasNext(); ) {
+      short packedPos = it.nextShort();
+      chunkPositions.add(BlockPos.asLong(
+          sectionPos.unpackBlockX(packedPos),
+          sectionPos.unpackBlockY(packedPos),
+          sectionPos.unpackBlockZ(packedPos)
+      ));
+    }
+  }
+
+  /**
+   * Queues the pending light checks of all worlds, one lighting task per chunk.
+   */
+  private static void flush(MinecraftServer server) {
+    if (PENDING.isEmpty()) {
+      return;
+    }
+    PENDING.forEach((dimension, chunks) -> {
+      ServerWorld world = server.getWorld(dimension);
+      if (world == null) {
+        return;
+      }
+      BatchLightingProvider lightingProvider = (BatchLightingProvider) world.getChunkManager().getLightingProvider();
+      long[] keys = chunks.keySet().toLongArray();
+      LongArrays.quickSort(keys, (k1, k2) -> {
+        int c = Integer.compare(ChunkPos.getPackedX(k1), ChunkPos.getPackedX(k2));
+        return c != 0 ? c : Integer.compare(ChunkPos.getPackedZ(k1), ChunkPos.getPackedZ(k2));
+      });
+      for (long key : keys) {
+        lightingProvider.buildUtils$checkBlocks(chunks.get(key));
+      }
+    });
+    PENDING.clear();
+  }
+
+  private DeferredLighting() {
+  }
+}
@@ -0,0 +1,153 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.WorldSavePath;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player undo/redo history of bulk edits.
+ * <p>
+ * Each entry is a {@link RegionSnapshot} of the edited region, taken just before the edit.
+ * Entries are undone and redone by {@link RestoreJob}s, under the same tick budget as fills.
+ * Each job snapshots the current state of the region before restoring it, so that it can be redone or undone again.
+ * Histories are kept in memory only and are cleared when the server stops.
+ */
+public final class EditHistory {
+  /**
+   * Maximum number of entries in each player’s undo stack.
+   */
+  public static final int MAX_ENTRIES = 16;
+
+  private static final Map<UUID, EditHistory> HISTORIES = new HashMap<>();
+
+  /**
+   * Registers the server lifecycle handlers. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerLifecycleEvents.SERVER_STARTED.register(server ->
+        SnapshotStorage.open(server.getSavePath(WorldSavePath.ROOT).resolve(BuildUtils.MOD_ID + "_history.tmp")));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+      HISTORIES.values().forEach(EditHistory::clear);
+      HISTORIES.clear();
+      SnapshotStorage.close();
+    });
+  }
+
+  /**
+   * Adds a snapshot to the undo stack of the given player and clears their redo stack.
+   * The oldest entry is dropped if the stack is full.
+   * Snapshots that lost some data because it could not be spilled to disk are dropped.
+   *
+   * @param player   UUID of the player that performed the edit.
+   * @param snapshot Snapshot of the region before the edit.
+   */
+  public static void record(final UUID player, final RegionSnapshot snapshot) {
+    EditHistory history = HISTORIES.computeIfAbsent(player, uuid -> new EditHistory());
+    history.redoStack.forEach(RegionSnapshot::release);
+    history.redoStack.clear();
+    if (dropIfBroken(snapshot)) {
+      return;
+    }
+    history.undoStack.push(snapshot);
+    if (history.undoStack.size() > MAX_ENTRIES) {
+      history.undoStack.removeLast().release();
+    }
+  }
+
+  /**
+   * Pushes a snapshot taken by a {@link RestoreJob} onto the redo or undo stack of the given player,
+   * without clearing the other stack. The oldest entry is dropped if the stack is full.
+   * Snapshots that lost some data because it could not be spilled to disk are dropped.
+   *
+   * @param player    UUID of the player that started the job.
+   * @param snapshot  Snapshot of the region before it was restored.
+   * @param redoStack Whether to push the snapshot onto the redo stack instead of the undo stack.
+   */
+  static void push(final UUID player, final RegionSnapshot snapshot, boolean redoStack) {
+    if (dropIfBroken(snapshot)) {
+      return;
+    }
+    EditHistory history = HISTORIES.computeIfAbsent(player, uuid -> new EditHistory());
+    Deque<RegionSnapshot> stack = redoStack ? history.redoStack : history.undoStack;
+    stack.push(snapshot);
+    if (stack.size() > MAX_ENTRIES) {
+      stack.removeLast().release();
+    }
+  }
+
+  /**
+   * Releases the given snapshot if it is broken.
+   *
+   * @return True if the snapshot was dropped.
+   */
+  private static boolean dropIfBroken(RegionSnapshot snapshot) {
+    if (!snapshot.isBroken()) {
+      return false;
+    }
+    BuildUtils.LOGGER.warn("Dropping history entry for region {} as some of its data could not be saved", snapshot.getBox());
+    snapshot.release();
+    return true;
+  }
+
+  /**
+   * Submits a job that reverts the last edit of the given player.
+   *
+   * @param server The server.
+   * @param player UUID of the player.
+   * @return False if there is nothing to undo.
+   */
+  public static boolean undo(MinecraftServer server, final UUID player) {
+    EditHistory history = HISTORIES.get(player);
+    return history != null && submit(server, player, history.undoStack, true);
+  }
+
+  /**
+   * Submits a job that re-applies the last undone edit of the given player.
+   *
+   * @param server The server.
+   * @param player UUID of the player.
+   * @return False if there is nothing to redo.
+   */
+  public static boolean redo(MinecraftServer server, final UUID player) {
+    EditHistory history = HISTORIES.get(player);
+    return history != null && submit(server, player, history.redoStack, false);
+  }
+
+  /**
+   * Submits a job that restores the top snapshot of the given stack.
+   */
+  private static boolean submit(MinecraftServer server, final UUID player, Deque<RegionSnapshot> stack, boolean undo) {
+    RegionSnapshot snapshot = stack.poll();
+    if (snapshot == null) {
+      return false;
+    }
+    ServerWorld world = server.getWorld(snapshot.getDimension());
+    if (world == null) {
+      snapshot.release();
+      return false;
+    }
+    EditJobScheduler.submit(server, new RestoreJob(world, snapshot, player, undo));
+    return true;
+  }
+
+  private final Deque<RegionSnapshot> undoStack = new ArrayDeque<>();
+  private final Deque<RegionSnapshot> redoStack = new ArrayDeque<>();
+
+  private void clear() {
+    this.undoStack.forEach(RegionSnapshot::release);
+    this.redoStack.forEach(RegionSnapshot::release);
+    this.undoStack.clear();
+    this.redoStack.clear();
+  }
+
+  private EditHistory() {
+  }
+}
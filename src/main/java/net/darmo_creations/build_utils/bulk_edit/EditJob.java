@@ -0,0 +1,195 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A bulk edit that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * Jobs are split into steps that are run one after the other. The index of the next step is kept as a cursor.
+ * Jobs are only kept in memory, unless they extend {@link PersistentEditJob}.
+ * <p>
+ * If the job has an owner, the parts of the region edited by each step should be captured into the job’s
+ * {@link RegionSnapshot} before being edited, so that the whole job can be undone.
+ */
+public abstract class EditJob {
+  private final Identifier dimension;
+  private final UUID owner;
+  private final boolean broadcast;
+  protected int cursor;
+  protected int blocksNb;
+  protected final RegionSnapshot snapshot;
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
+  private long stepsTime;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world     The world to edit.
+   * @param box       The region that will be edited.
+   * @param owner     UUID of the player that started the job. May be null.
+   * @param broadcast Whether to send the final message to all players instead of only the owner.
+   */
+  protected EditJob(final ServerWorld world, final BlockBox box, @Nullable final UUID owner, final boolean broadcast) {
+    this.dimension = world.getRegistryKey().getValue();
+    this.owner = owner;
+    this.broadcast = broadcast;
+    this.cursor = 0;
+    this.blocksNb = 0;
+    this.snapshot = owner != null ? new RegionSnapshot(world, box) : null;
+  }
+
+  /**
+   * Creates a job that has no snapshot, e.g. one that is resumed after a server restart.
+   *
+   * @param dimension ID of the dimension to edit.
+   * @param owner     UUID of the player that started the job. May be null.
+   * @param broadcast Whether to send the final message to all players instead of only the owner.
+   */
+  protected EditJob(final Identifier dimension, @Nullable final UUID owner, final boolean broadcast) {
+    this.dimension = dimension;
+    this.owner = owner;
+    this.broadcast = broadcast;
+    this.snapshot = null;
+  }
+
+  /**
+   * The ID of the dimension this job edits.
+   */
+  public Identifier getDimension() {
+    return this.dimension;
+  }
+
+  /**
+   * The UUID of the player that started this job, may be null.
+   */
+  public UUID getOwner() {
+    return this.owner;
+  }
+
+  public boolean shouldBroadcast() {
+    return this.broadcast;
+  }
+
+  /**
+   * The snapshot of the region before it was edited.
+   * May be null if the job has no owner or was resumed after a server restart.
+   */
+  public RegionSnapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * A future that completes on the server thread once this job is done or has been dropped.
+   * Jobs resumed after a server restart have a new future.
+   */
+  public CompletableFuture<Void> getCompletion() {
+    return this.completion;
+  }
+
+  /**
+   * The number of steps that have been run so far.
+   */
+  public int getCursor() {
+    return this.cursor;
+  }
+
+  /**
+   * The number of blocks that have been changed so far.
+   */
+  public int getBlocksNb() {
+    return this.blocksNb;
+  }
+
+  /**
+   * The number of nanoseconds spent running the steps of this job so far.
+   * Jobs resumed after a server restart start from 0.
+   */
+  public long getStepsTime() {
+    return this.stepsTime;
+  }
+
+  /**
+   * Adds the duration of a step. Called by the {@link EditJobScheduler}.
+   */
+  void addStepTime(long nanos) {
+    this.stepsTime += nanos;
+  }
+
+  /**
+   * The total number of steps of this job.
+   */
+  public abstract int getStepsNb();
+
+  /**
+   * Indicates whether all steps have been run.
+   */
+  public boolean isDone() {
+    return this.cursor >= this.getStepsNb();
+  }
+
+  /**
+   * Indicates whether the next step can be run right away.
+   * Jobs that wait for an asynchronous operation, e.g. loading a structure, should return false until it is done.
+   * The scheduler then stops running jobs until the next tick.
+   */
+  public boolean isReady() {
+    return true;
+  }
+
+  /**
+   * Adds the snapshot of this job to its owner’s {@link EditHistory}.
+   * Called once the job is done, if it has a snapshot.
+   */
+  void recordHistory() {
+    EditHistory.record(this.owner, this.snapshot);
+  }
+
+  /**
+   * Releases the resources held by this job. Called instead of {@link #recordHistory()} when the job is dropped
+   * before being done, because its dimension does not exist anymore or the server stops.
+   */
+  void discard() {
+    if (this.snapshot != null) {
+      this.snapshot.release();
+    }
+  }
+
+  /**
+   * Runs the next step(s) of this job then moves the cursor forward.
+   *
+   * @param world The world to edit. Must be the one designated by {@link #getDimension()}.
+   */
+  public abstract void runNextStep(ServerWorld world);
+
+  /**
+   * The operation under which the steps of this job are reported to {@link BuildMetrics}.
+   */
+  public abstract Operation getStepOperation();
+
+  /**
+   * Returns the message to show to the owner while this job is running.
+   */
+  public Text getProgressMessage() {
+    return new TranslatableText(this.getProgressKey(), 100 * this.cursor / this.getStepsNb(), this.cursor, this.getStepsNb());
+  }
+
+  /**
+   * Translation key of the progress message. It receives the percentage, the cursor and the number of steps.
+   */
+  protected abstract String getProgressKey();
+
+  /**
+   * Returns the message to send once this job is done.
+   */
+  public abstract Text getFeedbackMessage();
+}
@@ -0,0 +1,134 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.ModGameRules;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.network.MessageType;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.Util;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+
+import java.util.Iterator;
+
+/**
+ * Runs pending {@link EditJob}s at the end of each server tick,
+ * without exceeding the number of milliseconds set by the {@link ModGameRules#FILL_TICK_BUDGET} game rule.
+ * <p>
+ * Jobs are run in submission order. A job that is not ready holds back the following ones until the next tick.
+ * The owner of a job is shown its progress in their action bar.
+ * Once a job is done, its snapshot is added to the owner’s {@link EditHistory}.
+ */
+public final class EditJobScheduler {
+  /**
+   * Registers the tick and server stop handlers. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(EditJobScheduler::tick);
+    ServerLifecycleEvents.SERVER_STOPPING.register(EditJobScheduler::dropJobs);
+  }
+
+  /**
+   * Queues a job. It will start at the end of the current tick.
+   *
+   * @param server The server to run the job on.
+   * @param job    The job to queue.
+   */
+  public static void submit(MinecraftServer server, final EditJob job) {
+    EditJobsState state = EditJobsState.get(server);
+    state.getJobs().add(job);
+    state.markDirty();
+    BuildMetrics.setQueueDepth(state.getJobs().size());
+  }
+
+  private static void tick(MinecraftServer server) {
+    EditJobsState state = EditJobsState.get(server);
+    BuildMetrics.setQueueDepth(state.getJobs().size());
+    if (state.getJobs().isEmpty()) {
+      return;
+    }
+    long start = Util.getMeasuringTimeNano();
+    long deadline = start + server.getGameRules().getInt(ModGameRules.FILL_TICK_BUDGET) * 1_000_000L;
+
+    for (Iterator<EditJob> iterator = state.getJobs().iterator(); iterator.hasNext(); ) {
+      EditJob job = iterator.next();
+      ServerWorld world = server.getWorld(RegistryKey.of(Registry.WORLD_KEY, job.getDimension()));
+      if (world == null) {
+        BuildUtils.LOGGER.warn("Dropping edit job for unknown dimension {}", job.getDimension());
+        iterator.remove();
+        job.discard();
+        job.getCompletion().complete(null);
+        continue;
+      }
+      long now;
+      while (!job.isDone() && job.isReady() && (now = Util.getMeasuringTimeNano()) < deadline) {
+        int blocksNb = job.getBlocksNb();
+        job.runNextStep(world);
+        long duration = Util.getMeasuringTimeNano() - now;
+        job.addStepTime(duration);
+        BuildMetrics.record(job.getStepOperation(), duration, job.getBlocksNb() - blocksNb);
+      }
+      if (job.isDone()) {
+        iterator.remove();
+        if (job.getSnapshot() != null) {
+          job.recordHistory();
+        }
+        sendFeedback(server, job);
+        job.getCompletion().complete(null);
+      } else {
+        sendProgress(server, job);
+        break;
+      }
+    }
+    state.markDirty();
+    BuildMetrics.setQueueDepth(state.getJobs().size());
+    BuildMetrics.record(Operation.JOBS_TICK, Util.getMeasuringTimeNano() - start);
+  }
+
+  /**
+   * Releases the resources of all pending jobs before the server stops.
+   * Jobs that are not persistent are removed, the others will be resumed without a snapshot.
+   */
+  private static void dropJobs(MinecraftServer server) {
+    EditJobsState state = EditJobsState.get(server);
+    for (Iterator<EditJob> iterator = state.getJobs().iterator(); iterator.hasNext(); ) {
+      EditJob job = iterator.next();
+      job.discard();
+      if (!(job instanceof PersistentEditJob)) {
+        iterator.remove();
+      }
+      job.getCompletion().complete(null);
+    }
+    state.markDirty();
+  }
+
+  private static void sendProgress(MinecraftServer server, final EditJob job) {
+    if (job.getOwner() != null) {
+      ServerPlayerEntity player = server.getPlayerManager().getPlayer(job.getOwner());
+      if (player != null) {
+        player.sendMessage(job.getProgressMessage(), true);
+      }
+    }
+  }
+
+  private static void sendFeedback(MinecraftServer server, final EditJob job) {
+    Text text = job.getFeedbackMessage();
+    if (job.shouldBroadcast()) {
+      server.getPlayerManager().broadcast(text, MessageType.CHAT, Util.NIL_UUID);
+    } else if (job.getOwner() != null) {
+      ServerPlayerEntity player = server.getPlayerManager().getPlayer(job.getOwner());
+      if (player != null) {
+        player.sendMessage(text, false);
+      }
+    }
+  }
+
+  private EditJobScheduler() {
+  }
+}
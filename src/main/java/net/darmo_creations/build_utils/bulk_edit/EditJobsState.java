@@ -0,0 +1,59 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.PersistentState;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Persistent state that holds all pending edit jobs, so that {@link PersistentEditJob}s survive server restarts.
+ * It is attached to the overworld.
+ */
+public class EditJobsState extends PersistentState {
+  private static final String ID = BuildUtils.MOD_ID + "_edit_jobs";
+  private static final String JOBS_KEY = "Jobs";
+
+  /**
+   * Returns the state for the given server, creating it if needed.
+   */
+  public static EditJobsState get(final MinecraftServer server) {
+    return server.getOverworld().getPersistentStateManager()
+        .getOrCreate(EditJobsState::fromNbt, EditJobsState::new, ID);
+  }
+
+  private static EditJobsState fromNbt(final NbtCompound nbt) {
+    EditJobsState state = new EditJobsState();
+    NbtList list = nbt.getList(JOBS_KEY, NbtElement.COMPOUND_TYPE);
+    for (int i = 0; i < list.size(); i++) {
+      PersistentEditJob.fromNbt(list.getCompound(i)).ifPresent(state.jobs::add);
+    }
+    return state;
+  }
+
+  private final List<EditJob> jobs = new LinkedList<>();
+
+  /**
+   * Returns the list of pending jobs, in submission order.
+   * {@link #markDirty()} should be called after any change to the list or its elements.
+   */
+  public List<EditJob> getJobs() {
+    return this.jobs;
+  }
+
+  @Override
+  public NbtCompound writeNbt(NbtCompound nbt) {
+    NbtList list = new NbtList();
+    for (EditJob job : this.jobs) {
+      if (job instanceof PersistentEditJob persistentJob) {
+        list.add(persistentJob.toNbt());
+      }
+    }
+    nbt.put(JOBS_KEY, list);
+    return nbt;
+  }
+}
@@ -0,0 +1,365 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.darmo_creations.build_utils.Utils;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fills cuboid regions by writing block states directly into chunk sections, bypassing the /fill command.
+ * <p>
+ * Regions are processed by batches of chunk columns, in two stages:
+ * <li>The new contents of each section are built in parallel, off the server thread, into detached copies
+ * of the sections’ block state containers. Batches are partitioned by chunk column.
+ * <li>The prepared containers are then swapped into the loaded chunks on the server thread by the {@link ChunkWriter}.
+ * <p>
+ * Regions may be filled in any of the {@link FillMode}s.
+ * Neighbor updates are only triggered for blocks on the outer shell of the region,
+ * as inner blocks are only surrounded by blocks that were rewritten too, except in replace mode.
+ * <p>
+ * In raw mode, no neighbor or shape updates are triggered at all and no block callbacks are invoked,
+ * changes are only sent to clients. Block states that have an associated block entity are only supported
+ * in raw mode, their block entities are created with default data. Otherwise, they should be placed through
+ * {@link Utils#fill(BlockPos, BlockPos, BlockState, ServerWorld)} instead.
+ */
+public final class FillEngine {
+  /**
+   * Number of chunk columns that are prepared at the same time by {@link #fill(BlockPos, BlockPos, BlockState, ServerWorld)}.
+   */
+  public static final int BATCH_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  /**
+   * Fills the area between the specified positions with the given block state.
+   * Parts of the area that are outside the world’s height limits are ignored.
+   *
+   * @param pos1       First region position.
+   * @param pos2       Second region position.
+   * @param blockState Block state to use as filler. Must not have a block entity.
+   * @param world      The world to edit.
+   * @return The number of blocks that were changed.
+   * @throws IllegalArgumentException If the block state has a block entity.
+   */
+  public static int fill(final BlockPos pos1, final BlockPos pos2, final BlockState blockState, ServerWorld world) {
+    return fill(pos1, pos2, blockState, FillMode.SOLID, null, world);
+  }
+
+  /**
+   * Fills the area between the specified positions with the given block state, using the given mode.
+   * Parts of the area that are outside the world’s height limits are ignored.
+   *
+   * @param pos1          First region position.
+   * @param pos2          Second region position.
+   * @param blockState    Block state to use as filler. Must not have a block entity.
+   * @param mode          How to fill the region.
+   * @param replacedState Block state to replace. Required by {@link FillMode#REPLACE}, ignored by other modes.
+   * @param world         The world to edit.
+   * @return The number of blocks that were changed.
+   * @throws IllegalArgumentException If the block state has a block entity
+   *                                  or the mode is {@link FillMode#REPLACE} and no block state to replace is given.
+   */
+  public static int fill(
+      final BlockPos pos1,
+      final BlockPos pos2,
+      final BlockState blockState,
+      final FillMode mode,
+      @Nullable final BlockState replacedState,
+      ServerWorld world
+  ) {
+    Pair<BlockPos, BlockPos> positions = Utils.normalizePositions(pos1, pos2);
+    BlockPos posMin = positions.getLeft();
+    BlockPos posMax = positions.getRight();
+    List<ChunkPos> batch = new ArrayList<>(BATCH_SIZE);
+    int blocksNb = 0;
+    for (int chunkX = posMin.getX() >> 4; chunkX <= posMax.getX() >> 4; chunkX++) {
+      for (int chunkZ = posMin.getZ() >> 4; chunkZ <= posMax.getZ() >> 4; chunkZ++) {
+        batch.add(new ChunkPos(chunkX, chunkZ));
+        if (batch.size() == BATCH_SIZE) {
+          blocksNb += fillChunks(posMin, posMax, blockState, mode, replacedState, false, batch, world);
+          batch.clear();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      blocksNb += fillChunks(posMin, posMax, blockState, mode, replacedState, false, batch, world);
+    }
+    return blocksNb;
+  }
+
+  /**
+   * Fills the parts of the given region that lie within the given chunk columns.
+   * Chunks are loaded on the calling thread then prepared in parallel.
+   *
+   * @param posMin        Lowest corner of the region.
+   * @param posMax        Highest corner of the region.
+   * @param blockState    Block state to use as filler. May only have a block entity in raw mode.
+   * @param mode          How to fill the region.
+   * @param replacedState Block state to replace. Required by {@link FillMode#REPLACE}, ignored by other modes.
+   * @param raw           Whether to skip neighbor/shape updates and block callbacks.
+   * @param chunks        Positions of the chunk columns to edit.
+   * @param world         The world to edit.
+   * @return The number of blocks that were changed.
+   * @throws IllegalArgumentException If the block state has a block entity and raw mode is disabled
+   *                                  or the mode is {@link FillMode#REPLACE} and no block state to replace is given.
+   */
+  public static int fillChunks(
+      final BlockPos posMin,
+      final BlockPos posMax,
+      final BlockState blockState,
+      final FillMode mode,
+      @Nullable final BlockState replacedState,
+      boolean raw,
+      final List<ChunkPos> chunks,
+      ServerWorld world
+  ) {
+    if (blockState.hasBlockEntity() && !raw) {
+      throw new IllegalArgumentException("block states with block entities are only supported in raw mode");
+    }
+    if (mode == FillMode.REPLACE && replacedState == null) {
+      throw new IllegalArgumentException("missing block state to replace");
+    }
+    int minY = Math.max(posMin.getY(), world.getBottomY());
+    int maxY = Math.min(posMax.getY(), world.getTopY() - 1);
+    if (minY > maxY) {
+      return 0;
+    }
+    FillRegion region = new FillRegion(posMin, posMax, minY, maxY, blockState, mode, replacedState, raw);
+    List<WorldChunk> loadedChunks = chunks.stream().map(p -> world.getChunk(p.x, p.z)).toList();
+    List<List<PreparedSection>> prepared = ChunkWriter.prepare(loadedChunks, chunk -> prepareChunk(chunk, region, world));
+    int blocksNb = 0;
+    for (int i = 0; i < loadedChunks.size(); i++) {
+      blocksNb += ChunkWriter.commit(loadedChunks.get(i), prepared.get(i), world);
+    }
+    return blocksNb;
+  }
+
+  /**
+   * Builds the new contents of all sections of the given chunk that intersect the region.
+   * This method does not modify the chunk.
+   *
+   * @param chunk  The chunk to prepare.
+   * @param region The region to fill.
+   * @param world  The world the chunk belongs to.
+   * @return The prepared sections that contain at least one changed block.
+   */
+  private static List<PreparedSection> prepareChunk(final WorldChunk chunk, final FillRegion region, final ServerWorld world) {
+    ChunkPos chunkPos = chunk.getPos();
+    int minX = Math.max(region.posMin().getX(), chunkPos.getStartX());
+    int maxX = Math.min(region.posMax().getX(), chunkPos.getEndX());
+    int minZ = Math.max(region.posMin().getZ(), chunkPos.getStartZ());
+    int maxZ = Math.min(region.posMax().getZ(), chunkPos.getEndZ());
+    ChunkSection[] sections = chunk.getSectionArray();
+    List<PreparedSection> preparedSections = new ArrayList<>();
+    for (int sectionY = region.minY() >> 4; sectionY <= region.maxY() >> 4; sectionY++) {
+      int sectionIndex = world.sectionCoordToIndex(sectionY);
+      PreparedSection preparedSection = prepareSection(sections[sectionIndex].getBlockStateContainer(), sectionY, sectionIndex,
+          minX, maxX, minZ, maxZ, region);
+      if (preparedSection != null) {
+        preparedSections.add(preparedSection);
+      }
+    }
+    return preparedSections;
+  }
+
+  /**
+   * Builds the new contents of a single section, within the given horizontal bounds.
+   * This method does not modify the section’s container.
+   * <p>
+   * Only the positions affected by the region’s fill mode are visited:
+   * <li>Outline and walls modes skip the inner columns of the region, except for the floor and ceiling in outline mode.
+   * <li>Replace mode skips the sections whose palette does not contain the block state to replace.
+   * <li>Sections whose palette only contains the state they would be filled with are skipped.
+   * <p>
+   * Otherwise, the section is diffed against its current contents: its container is only copied
+   * once a block that actually differs is found, and only such blocks are written.
+   *
+   * @param original     The section’s current block state container.
+   * @param sectionY     Y coordinate of the section.
+   * @param sectionIndex Index of the section in its chunk.
+   * @param minX         Lowest X coordinate to fill, within the section’s chunk.
+   * @param maxX         Highest X coordinate to fill, within the section’s chunk.
+   * @param minZ         Lowest Z coordinate to fill, within the section’s chunk.
+   * @param maxZ         Highest Z coordinate to fill, within the section’s chunk.
+   * @param region       The region to fill.
+   * @return The prepared section or null if no block would change.
+   */
+  @Nullable
+  static PreparedSection prepareSection(
+      final PalettedContainer<BlockState> original,
+      int sectionY,
+      int sectionIndex,
+      int minX,
+      int maxX,
+      int minZ,
+      int maxZ,
+      final FillRegion region
+  ) {
+    FillMode mode = region.mode();
+    BlockState replacedState = region.replacedState();
+    int fromY = Math.max(region.minY(), sectionY << 4);
+    int toY = Math.min(region.maxY(), (sectionY << 4) + 15);
+    if (mode == FillMode.REPLACE && (replacedState == region.blockState() || !original.hasAny(state -> state == replacedState))) {
+      return null;
+    }
+    boolean hasFloorOrCeiling = fromY == region.posMin().getY() || toY == region.posMax().getY();
+    boolean hasWalls = minX == region.posMin().getX() || maxX == region.posMax().getX()
+        || minZ == region.posMin().getZ() || maxZ == region.posMax().getZ();
+    if (mode == FillMode.WALLS && !hasWalls || mode == FillMode.OUTLINE && !hasWalls && !hasFloorOrCeiling) {
+      return null;
+    }
+    BlockState target = switch (mode) {
+      case SOLID, OUTLINE, WALLS -> region.blockState();
+      // Sections that do not intersect the shell are only filled with air
+      case HOLLOW -> hasWalls || hasFloorOrCeiling ? null : Blocks.AIR.getDefaultState();
+      case REPLACE -> null;
+    };
+    if (target != null && !original.hasAny(state -> state != target)) {
+      return null;
+    }
+
+    SectionEdit edit = new SectionEdit(region, original);
+    for (int x = minX; x <= maxX; x++) {
+      for (int z = minZ; z <= maxZ; z++) {
+        boolean onWall = region.isOnWall(x, z);
+        if (mode == FillMode.WALLS && !onWall) {
+          continue;
+        }
+        if (mode == FillMode.OUTLINE && !onWall) {
+          if (fromY == region.posMin().getY()) {
+            edit.set(x, fromY, z, region.blockState());
+          }
+          if (toY == region.posMax().getY() && toY != fromY) {
+            edit.set(x, toY, z, region.blockState());
+          }
+          continue;
+        }
+        for (int y = fromY; y <= toY; y++) {
+          edit.visit(x, y, z);
+        }
+      }
+    }
+
+    if (edit.container == null) {
+      return null;
+    }
+    return new PreparedSection(sectionY, sectionIndex, edit.container, new BlockCounter(edit.container),
+        edit.changed, edit.lightChecks, edit.removedBlockEntities, edit.addedBlockEntities, edit.blockUpdates);
+  }
+
+  /**
+   * The pending changes of a single section.
+   * The section’s container is copied on the first write that actually changes a block.
+   */
+  private static class SectionEdit {
+    final FillRegion region;
+    final PalettedContainer<BlockState> original;
+    PalettedContainer<BlockState> container;
+    final ShortSet changed = new ShortOpenHashSet();
+    final ShortSet lightChecks = new ShortOpenHashSet();
+    final List<BlockPos> removedBlockEntities = new ArrayList<>();
+    final List<Pair<BlockPos, NbtCompound>> addedBlockEntities = new ArrayList<>();
+    final List<PreparedSection.BlockUpdate> blockUpdates = new ArrayList<>();
+    final BlockPos.Mutable pos = new BlockPos.Mutable();
+
+    SectionEdit(final FillRegion region, final PalettedContainer<BlockState> original) {
+      this.region = region;
+      this.original = original;
+    }
+
+    /**
+     * Returns the current state at the given position, taking pending changes into account.
+     */
+    BlockState get(int x, int y, int z) {
+      return (this.container != null ? this.container : this.original).get(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Writes the state the region’s mode requires at the given position, if any.
+     */
+    void visit(int x, int y, int z) {
+      switch (this.region.mode()) {
+        case SOLID, OUTLINE, WALLS -> this.set(x, y, z, this.region.blockState());
+        case HOLLOW -> this.set(x, y, z, this.region.isOnShell(this.pos.set(x, y, z))
+            ? this.region.blockState() : Blocks.AIR.getDefaultState());
+        case REPLACE -> {
+          if (this.get(x, y, z) == this.region.replacedState()) {
+            this.set(x, y, z, this.region.blockState());
+          }
+        }
+      }
+    }
+
+    /**
+     * Writes the given state at the given position and records the change.
+     * Does nothing if the position already holds that state.
+     */
+    void set(int x, int y, int z, BlockState blockState) {
+      BlockState oldState = this.get(x, y, z);
+      if (oldState != blockState) {
+        if (this.container == null) {
+          this.container = this.original.copy();
+        }
+        this.container.swapUnsafe(x & 15, y & 15, z & 15, blockState);
+        this.pos.set(x, y, z);
+        this.changed.add(ChunkSectionPos.packLocal(this.pos));
+        if (PreparedSection.affectsLight(oldState, blockState)) {
+          this.lightChecks.add(ChunkSectionPos.packLocal(this.pos));
+        }
+        if (oldState.hasBlockEntity()) {
+          this.removedBlockEntities.add(this.pos.toImmutable());
+        }
+        if (blockState.hasBlockEntity()) {
+          this.addedBlockEntities.add(Pair.of(this.pos.toImmutable(), null));
+        }
+        // Replaced blocks may be surrounded by untouched blocks anywhere in the region
+        if (!this.region.raw() && (this.region.mode() == FillMode.REPLACE || this.region.isOnShell(this.pos))) {
+          this.blockUpdates.add(new PreparedSection.BlockUpdate(this.pos.toImmutable(), oldState, blockState));
+        }
+      }
+    }
+  }
+
+  /**
+   * A region to fill, clamped to the world’s height limits.
+   */
+  record FillRegion(
+      BlockPos posMin,
+      BlockPos posMax,
+      int minY,
+      int maxY,
+      BlockState blockState,
+      FillMode mode,
+      @Nullable BlockState replacedState,
+      boolean raw
+  ) {
+    /**
+     * Indicates whether the given position lies on one of the faces of this region.
+     */
+    boolean isOnShell(final BlockPos pos) {
+      return this.isOnWall(pos.getX(), pos.getZ()) || pos.getY() == this.posMin.getY() || pos.getY() == this.posMax.getY();
+    }
+
+    /**
+     * Indicates whether the given column lies on one of the vertical faces of this region.
+     */
+    boolean isOnWall(int x, int z) {
+      return x == this.posMin.getX() || x == this.posMax.getX() || z == this.posMin.getZ() || z == this.posMax.getZ();
+    }
+  }
+
+  private FillEngine() {
+  }
+}
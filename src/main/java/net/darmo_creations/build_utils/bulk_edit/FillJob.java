@@ -0,0 +1,218 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.Utils;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A fill operation that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * Each step fills one chunk column, in X then Z order. Columns are filled by batches.
+ * The region may be filled in any {@link FillMode}.
+ * <p>
+ * Raw jobs skip all neighbor/shape updates and block callbacks, see {@link FillEngine}.
+ */
+public class FillJob extends PersistentEditJob {
+  static final String TYPE = "fill";
+
+  private static final String POS_MIN_KEY = "PosMin";
+  private static final String POS_MAX_KEY = "PosMax";
+  private static final String BLOCK_STATE_KEY = "BlockState";
+  private static final String MODE_KEY = "Mode";
+  private static final String REPLACED_STATE_KEY = "ReplacedState";
+  private static final String RAW_KEY = "Raw";
+  private static final String FEEDBACK_KEY = "Feedback";
+
+  private final BlockPos posMin;
+  private final BlockPos posMax;
+  private final BlockState blockState;
+  private final FillMode mode;
+  @Nullable
+  private final BlockState replacedState;
+  private final boolean raw;
+  private final String feedbackKey;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world         The world to edit.
+   * @param pos1          First region position.
+   * @param pos2          Second region position.
+   * @param blockState    Block state to use as filler.
+   * @param mode          How to fill the region.
+   * @param replacedState Block state to replace. Required by {@link FillMode#REPLACE}, ignored by other modes.
+   * @param raw           Whether to skip neighbor/shape updates and block callbacks.
+   * @param owner         UUID of the player that started the job. May be null.
+   * @param feedbackKey   Translation key of the message to send once the job is done.
+   *                      It receives the number of filled blocks as its only argument.
+   * @param broadcast     Whether to send the final message to all players instead of only the owner.
+   * @throws IllegalArgumentException If the mode is {@link FillMode#REPLACE} and no block state to replace is given.
+   */
+  public FillJob(
+      final ServerWorld world,
+      final BlockPos pos1,
+      final BlockPos pos2,
+      final BlockState blockState,
+      final FillMode mode,
+      @Nullable final BlockState replacedState,
+      boolean raw,
+      @Nullable final UUID owner,
+      final String feedbackKey,
+      final boolean broadcast
+  ) {
+    super(world, BlockBox.create(pos1, pos2), owner, broadcast);
+    Pair<BlockPos, BlockPos> positions = Utils.normalizePositions(pos1, pos2);
+    this.posMin = positions.getLeft();
+    this.posMax = positions.getRight();
+    this.blockState = Objects.requireNonNull(blockState);
+    this.mode = Objects.requireNonNull(mode);
+    if (mode == FillMode.REPLACE && replacedState == null) {
+      throw new IllegalArgumentException("missing block state to replace");
+    }
+    this.replacedState = mode == FillMode.REPLACE ? replacedState : null;
+    this.raw = raw;
+    this.feedbackKey = Objects.requireNonNull(feedbackKey);
+  }
+
+  /**
+   * Creates a job from NBT data.
+   */
+  FillJob(final NbtCompound nbt) {
+    super(nbt);
+    this.posMin = NbtHelper.toBlockPos(nbt.getCompound(POS_MIN_KEY));
+    this.posMax = NbtHelper.toBlockPos(nbt.getCompound(POS_MAX_KEY));
+    this.blockState = NbtHelper.toBlockState(nbt.getCompound(BLOCK_STATE_KEY));
+    this.mode = FillMode.fromName(nbt.getString(MODE_KEY));
+    this.replacedState = this.mode == FillMode.REPLACE ? NbtHelper.toBlockState(nbt.getCompound(REPLACED_STATE_KEY)) : null;
+    this.raw = nbt.getBoolean(RAW_KEY);
+    this.feedbackKey = nbt.getString(FEEDBACK_KEY);
+  }
+
+  /**
+   * The total number of chunk columns covered by this job.
+   */
+  @Override
+  public int getStepsNb() {
+    return this.getChunksNbX() * this.getChunksNbZ();
+  }
+
+  private int getChunksNbX() {
+    return (this.posMax.getX() >> 4) - (this.posMin.getX() >> 4) + 1;
+  }
+
+  private int getChunksNbZ() {
+    return (this.posMax.getZ() >> 4) - (this.posMin.getZ() >> 4) + 1;
+  }
+
+  /**
+   * Fills the next batch of chunk columns then moves the cursor forward.
+   * Batches contain up to {@link FillEngine#BATCH_SIZE} columns that are prepared in parallel.
+   * Unless the job is raw, block states with block entities are placed through the /fill command, one column at a time:
+   * the parts of the region that receive the filler are split into solid boxes that are clipped to the column.
+   *
+   * @param world The world to edit. Must be the one designated by {@link #getDimension()}.
+   */
+  @Override
+  public void runNextStep(ServerWorld world) {
+    if (this.blockState.hasBlockEntity() && !this.raw) {
+      ChunkPos chunkPos = this.getChunkPos(this.cursor);
+      if (this.snapshot != null) {
+        this.snapshot.capture(world, List.of(chunkPos));
+      }
+      BlockBox region = new BlockBox(this.posMin.getX(), this.posMin.getY(), this.posMin.getZ(),
+          this.posMax.getX(), this.posMax.getY(), this.posMax.getZ());
+      for (BlockBox box : this.mode.getFilledBoxes(region)) {
+        BlockPos from = new BlockPos(
+            Math.max(box.getMinX(), chunkPos.getStartX()),
+            box.getMinY(),
+            Math.max(box.getMinZ(), chunkPos.getStartZ())
+        );
+        BlockPos to = new BlockPos(
+            Math.min(box.getMaxX(), chunkPos.getEndX()),
+            box.getMaxY(),
+            Math.min(box.getMaxZ(), chunkPos.getEndZ())
+        );
+        if (from.getX() <= to.getX() && from.getZ() <= to.getZ()) {
+          this.blocksNb += Utils.fill(from, to, this.blockState, this.replacedState, world);
+        }
+      }
+      if (this.mode == FillMode.HOLLOW && region.getBlockCountX() > 2 && region.getBlockCountY() > 2 && region.getBlockCountZ() > 2) {
+        this.blocksNb += FillEngine.fillChunks(this.posMin.add(1, 1, 1), this.posMax.add(-1, -1, -1),
+            Blocks.AIR.getDefaultState(), FillMode.SOLID, null, false, List.of(chunkPos), world);
+      }
+      this.cursor++;
+    } else {
+      int end = Math.min(this.cursor + FillEngine.BATCH_SIZE, this.getStepsNb());
+      List<ChunkPos> batch = new ArrayList<>(end - this.cursor);
+      for (int i = this.cursor; i < end; i++) {
+        batch.add(this.getChunkPos(i));
+      }
+      if (this.snapshot != null) {
+        this.snapshot.capture(world, batch);
+      }
+      this.blocksNb += FillEngine.fillChunks(this.posMin, this.posMax, this.blockState,
+          this.mode, this.replacedState, this.raw, batch, world);
+      this.cursor = end;
+    }
+  }
+
+  /**
+   * Returns the position of the chunk column at the given index.
+   */
+  private ChunkPos getChunkPos(int index) {
+    int lengthZ = this.getChunksNbZ();
+    return new ChunkPos(
+        (this.posMin.getX() >> 4) + index / lengthZ,
+        (this.posMin.getZ() >> 4) + index % lengthZ
+    );
+  }
+
+  @Override
+  public Operation getStepOperation() {
+    return Operation.FILL_JOB_STEP;
+  }
+
+  @Override
+  protected String getProgressKey() {
+    return "message.build_utils.fill_job.progress";
+  }
+
+  @Override
+  public Text getFeedbackMessage() {
+    return new TranslatableText(this.feedbackKey, this.blocksNb);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
+  }
+
+  @Override
+  protected void writeNbt(NbtCompound nbt) {
+    nbt.put(POS_MIN_KEY, NbtHelper.fromBlockPos(this.posMin));
+    nbt.put(POS_MAX_KEY, NbtHelper.fromBlockPos(this.posMax));
+    nbt.put(BLOCK_STATE_KEY, NbtHelper.fromBlockState(this.blockState));
+    nbt.putString(MODE_KEY, this.mode.getName());
+    if (this.replacedState != null) {
+      nbt.put(REPLACED_STATE_KEY, NbtHelper.fromBlockState(this.replacedState));
+    }
+    nbt.putBoolean(RAW_KEY, this.raw);
+    nbt.putString(FEEDBACK_KEY, this.feedbackKey);
+  }
+}
@@ -0,0 +1,107 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.minecraft.util.math.BlockBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enumeration of the ways a cuboid region may be filled.
+ * <p>
+ * The shell of a region is the set of blocks that lie on one of its six faces,
+ * its walls the blocks that lie on one of its four vertical faces.
+ */
+public enum FillMode {
+  /**
+   * Every block of the region is replaced.
+   */
+  SOLID,
+  /**
+   * The shell is filled, the blocks inside are replaced by air.
+   */
+  HOLLOW,
+  /**
+   * Only the shell is filled, the blocks inside are left untouched.
+   */
+  OUTLINE,
+  /**
+   * Only the walls are filled, the floor, ceiling and blocks inside are left untouched.
+   */
+  WALLS,
+  /**
+   * Only the blocks that match a given block state are replaced.
+   */
+  REPLACE;
+
+  /**
+   * Name of this mode as used in NBT tags and translation keys.
+   */
+  public String getName() {
+    return this.name().toLowerCase();
+  }
+
+  /**
+   * Returns the next mode in declaration order, wrapping around after the last one.
+   */
+  public FillMode next() {
+    FillMode[] values = values();
+    return values[(this.ordinal() + 1) % values.length];
+  }
+
+  /**
+   * Splits the part of the given region that receives the filler block state into disjoint solid boxes.
+   * In {@link #REPLACE} mode, the whole region is returned as only matching blocks are filled.
+   * In {@link #HOLLOW} mode, the blocks inside the shell, that are replaced by air, are not included.
+   *
+   * @param region The region to fill.
+   * @return The list of boxes.
+   */
+  public List<BlockBox> getFilledBoxes(final BlockBox region) {
+    return switch (this) {
+      case SOLID, REPLACE -> List.of(region);
+      case HOLLOW, OUTLINE -> {
+        if (region.getBlockCountY() <= 2) {
+          yield List.of(region);
+        }
+        List<BlockBox> boxes = new ArrayList<>();
+        boxes.add(new BlockBox(region.getMinX(), region.getMinY(), region.getMinZ(), region.getMaxX(), region.getMinY(), region.getMaxZ()));
+        boxes.add(new BlockBox(region.getMinX(), region.getMaxY(), region.getMinZ(), region.getMaxX(), region.getMaxY(), region.getMaxZ()));
+        boxes.addAll(getWalls(region, region.getMinY() + 1, region.getMaxY() - 1));
+        yield boxes;
+      }
+      case WALLS -> getWalls(region, region.getMinY(), region.getMaxY());
+    };
+  }
+
+  /**
+   * Splits the vertical faces of the given region between the given heights into disjoint boxes.
+   */
+  private static List<BlockBox> getWalls(final BlockBox region, int minY, int maxY) {
+    int minX = region.getMinX(), maxX = region.getMaxX();
+    int minZ = region.getMinZ(), maxZ = region.getMaxZ();
+    if (region.getBlockCountX() <= 2 || region.getBlockCountZ() <= 2) {
+      return List.of(new BlockBox(minX, minY, minZ, maxX, maxY, maxZ));
+    }
+    return List.of(
+        new BlockBox(minX, minY, minZ, minX, maxY, maxZ),
+        new BlockBox(maxX, minY, minZ, maxX, maxY, maxZ),
+        new BlockBox(minX + 1, minY, minZ, maxX - 1, maxY, minZ),
+        new BlockBox(minX + 1, minY, maxZ, maxX - 1, maxY, maxZ)
+    );
+  }
+
+  /**
+   * Returns the mode with the given name.
+   *
+   * @param name Mode’s name, as returned by {@link #getName()}.
+   * @return The mode or {@link #SOLID} if the name does not match any.
+   */
+  public static FillMode fromName(final String name) {
+    for (FillMode mode : values()) {
+      if (mode.getName().equals(name)) {
+        return mode;
+      }
+    }
+    return SOLID;
+  }
+}
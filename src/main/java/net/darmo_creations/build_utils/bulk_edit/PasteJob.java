@@ -0,0 +1,406 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import com.mojang.datafixers.util.Either;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.darmo_creations.build_utils.structures.StructureIO;
+import net.darmo_creations.build_utils.structures.StructureSnapshot;
+import net.darmo_creations.build_utils.structures.Template;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A structure paste that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * The blocks of the transformed template are bucketed by destination chunk column.
+ * Each step pastes one column, in X then Z order. Columns are pasted by batches,
+ * through the same two-stage write path as fills.
+ * <p>
+ * As with fills, neighbor updates are only triggered for blocks on the outer shell of the pasted region,
+ * after each chunk has been written, unless the job is raw. Entities are not pasted.
+ * <p>
+ * Templates are not persisted: jobs resumed after a server restart load the structure again
+ * through the {@link StructureIO}, without blocking the server thread.
+ */
+public class PasteJob extends PersistentEditJob {
+  static final String TYPE = "paste";
+
+  private static final String STRUCTURE_NAME_KEY = "StructureName";
+  private static final String ORIGIN_KEY = "Origin";
+  private static final String ROTATION_KEY = "Rotation";
+  private static final String MIRROR_KEY = "Mirror";
+  private static final String RAW_KEY = "Raw";
+  private static final String FEEDBACK_KEY = "Feedback";
+  private static final String CHUNKS_NB_KEY = "ChunksNb";
+
+  private final String structureName;
+  private final BlockPos origin;
+  private final BlockRotation rotation;
+  private final BlockMirror mirror;
+  private final boolean raw;
+  private final String feedbackKey;
+  private int chunksNb;
+  private boolean failed;
+  private CompletableFuture<Optional<Either<Template, StructureSnapshot>>> loading;
+  private Template template;
+  private BlockBox box;
+  private long[] chunks;
+  private Long2ObjectMap<int[]> blocksPerChunk;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world         The world to edit.
+   * @param template      The template to paste, already transformed with the given mirror and rotation.
+   * @param structureName Name of the structure the template was loaded from.
+   * @param origin        Position to paste the template at.
+   * @param rotation      The rotation that was applied to the template.
+   * @param mirror        The mirror that was applied to the template.
+   * @param raw           Whether to skip neighbor/shape updates and block callbacks.
+   * @param owner         UUID of the player that started the job. May be null.
+   * @param feedbackKey   Translation key of the message to send once the job is done.
+   *                      It receives the structure’s name as its only argument.
+   * @param broadcast     Whether to send the final message to all players instead of only the owner.
+   */
+  public PasteJob(
+      final ServerWorld world,
+      final Template template,
+      final String structureName,
+      final BlockPos origin,
+      final BlockRotation rotation,
+      final BlockMirror mirror,
+      boolean raw,
+      @Nullable final UUID owner,
+      final String feedbackKey,
+      final boolean broadcast
+  ) {
+    super(world, template.getBoundingBox(origin), owner, broadcast);
+    this.structureName = Objects.requireNonNull(structureName);
+    this.origin = origin.toImmutable();
+    this.rotation = Objects.requireNonNull(rotation);
+    this.mirror = Objects.requireNonNull(mirror);
+    this.raw = raw;
+    this.feedbackKey = Objects.requireNonNull(feedbackKey);
+    this.setTemplate(template, world);
+  }
+
+  /**
+   * Creates a job from NBT data.
+   */
+  PasteJob(final NbtCompound nbt) {
+    super(nbt);
+    this.structureName = nbt.getString(STRUCTURE_NAME_KEY);
+    this.origin = NbtHelper.toBlockPos(nbt.getCompound(ORIGIN_KEY));
+    this.rotation = BlockRotation.values()[nbt.getInt(ROTATION_KEY)];
+    this.mirror = BlockMirror.values()[nbt.getInt(MIRROR_KEY)];
+    this.raw = nbt.getBoolean(RAW_KEY);
+    this.feedbackKey = nbt.getString(FEEDBACK_KEY);
+    this.chunksNb = nbt.getInt(CHUNKS_NB_KEY);
+  }
+
+  /**
+   * Sets the template to paste and buckets its blocks by destination chunk column.
+   * Blocks outside the world’s height limits are ignored.
+   */
+  private void setTemplate(final Template template, final ServerWorld world) {
+    Long2ObjectMap<IntArrayList> buckets = new Long2ObjectOpenHashMap<>();
+    for (int i = 0; i < template.getBlocksNb(); i++) {
+      long pos = template.getPackedPos(i);
+      int y = BlockPos.unpackLongY(pos) + this.origin.getY();
+      if (world.isOutOfHeightLimit(y)) {
+        continue;
+      }
+      long key = ChunkPos.toLong(
+          (BlockPos.unpackLongX(pos) + this.origin.getX()) >> 4,
+          (BlockPos.unpackLongZ(pos) + this.origin.getZ()) >> 4
+      );
+      IntArrayList bucket = buckets.get(key);
+      if (bucket == null) {
+        bucket = new IntArrayList();
+        buckets.put(key, bucket);
+      }
+      bucket.add(i);
+    }
+    this.template = template;
+    this.box = template.getBoundingBox(this.origin);
+    this.chunks = buckets.keySet().toLongArray();
+    LongArrays.quickSort(this.chunks, (k1, k2) -> {
+      int c = Integer.compare(ChunkPos.getPackedX(k1), ChunkPos.getPackedX(k2));
+      return c != 0 ? c : Integer.compare(ChunkPos.getPackedZ(k1), ChunkPos.getPackedZ(k2));
+    });
+    this.blocksPerChunk = new Long2ObjectOpenHashMap<>();
+    buckets.forEach((key, bucket) -> this.blocksPerChunk.put(key.longValue(), bucket.toIntArray()));
+    this.chunksNb = this.chunks.length;
+  }
+
+  /**
+   * The total number of destination chunk columns.
+   */
+  @Override
+  public int getStepsNb() {
+    return this.chunksNb;
+  }
+
+  @Override
+  public boolean isDone() {
+    return this.failed || super.isDone();
+  }
+
+  /**
+   * False while the structure of a resumed job is being loaded.
+   */
+  @Override
+  public boolean isReady() {
+    return this.loading == null || this.loading.isDone();
+  }
+
+  /**
+   * Pastes the next batch of chunk columns then moves the cursor forward.
+   * Batches contain up to {@link FillEngine#BATCH_SIZE} columns that are prepared in parallel.
+   * If the job was resumed after a restart, the first step starts loading the structure
+   * and pasting resumes once it is loaded.
+   *
+   * @param world The world to edit. Must be the one designated by {@link #getDimension()}.
+   */
+  @Override
+  public void runNextStep(ServerWorld world) {
+    if (this.template == null) {
+      if (!this.loadTemplate(world)) {
+        this.failed = true;
+      }
+      if (this.template == null) {
+        return;
+      }
+    }
+    int end = Math.min(this.cursor + FillEngine.BATCH_SIZE, this.chunks.length);
+    List<ChunkPos> batch = new ArrayList<>(end - this.cursor);
+    for (int i = this.cursor; i < end; i++) {
+      batch.add(new ChunkPos(this.chunks[i]));
+    }
+    if (this.snapshot != null) {
+      this.snapshot.capture(world, batch);
+    }
+    List<WorldChunk> loadedChunks = batch.stream().map(p -> world.getChunk(p.x, p.z)).toList();
+    List<List<PreparedSection>> prepared = ChunkWriter.prepare(loadedChunks, chunk -> this.prepareChunk(chunk, world));
+    for (int i = 0; i < loadedChunks.size(); i++) {
+      this.blocksNb += ChunkWriter.commit(loadedChunks.get(i), prepared.get(i), world);
+    }
+    this.cursor = end;
+    if (this.isDone()) {
+      this.template = null;
+      this.blocksPerChunk = null;
+    }
+  }
+
+  /**
+   * Starts loading the structure through the {@link StructureIO}, or takes the loaded one if it is available.
+   *
+   * @return False if the structure could not be loaded.
+   */
+  private boolean loadTemplate(ServerWorld world) {
+    if (this.loading == null) {
+      try {
+        this.loading = StructureIO.loadStructure(world.getServer(), new Identifier(this.structureName), this.mirror, this.rotation);
+      } catch (InvalidIdentifierException e) {
+        this.loading = CompletableFuture.completedFuture(Optional.empty());
+      }
+    }
+    if (!this.loading.isDone()) {
+      return true;
+    }
+    Optional<Template> template;
+    try {
+      template = this.loading.join().flatMap(Either::left);
+    } catch (CompletionException | CancellationException e) {
+      BuildUtils.LOGGER.error("Error while loading structure {}", this.structureName, e);
+      template = Optional.empty();
+    }
+    this.loading = null;
+    if (template.isEmpty()) {
+      BuildUtils.LOGGER.warn("Could not load structure {}, aborting paste", this.structureName);
+      return false;
+    }
+    this.setTemplate(template.get(), world);
+    return true;
+  }
+
+  /**
+   * Builds the new contents of all sections of the given chunk that receive blocks from the template.
+   * This method does not modify the chunk.
+   */
+  private List<PreparedSection> prepareChunk(final WorldChunk chunk, final ServerWorld world) {
+    ChunkSection[] sections = chunk.getSectionArray();
+    Int2ObjectMap<SectionBuilder> builders = new Int2ObjectOpenHashMap<>();
+    BlockPos.Mutable pos = new BlockPos.Mutable();
+
+    for (int index : this.blocksPerChunk.get(chunk.getPos().toLong())) {
+      long packedPos = this.template.getPackedPos(index);
+      pos.set(
+          BlockPos.unpackLongX(packedPos) + this.origin.getX(),
+          BlockPos.unpackLongY(packedPos) + this.origin.getY(),
+          BlockPos.unpackLongZ(packedPos) + this.origin.getZ()
+      );
+      int sectionIndex = world.getSectionIndex(pos.getY());
+      SectionBuilder builder = builders.get(sectionIndex);
+      if (builder == null) {
+        builder = new SectionBuilder(ChunkSectionPos.getSectionCoord(pos.getY()), sectionIndex,
+            sections[sectionIndex].getBlockStateContainer().copy());
+        builders.put(sectionIndex, builder);
+      }
+
+      builder.set(pos, this.template.getState(index), this.template.getBlockEntityNbt(index), !this.raw && this.isOnShell(pos));
+    }
+
+    List<PreparedSection> preparedSections = new ArrayList<>(builders.size());
+    for (SectionBuilder builder : builders.values()) {
+      PreparedSection preparedSection = builder.build();
+      if (preparedSection != null) {
+        preparedSections.add(preparedSection);
+      }
+    }
+    return preparedSections;
+  }
+
+  /**
+   * Indicates whether the given position lies on one of the faces of the pasted region.
+   */
+  private boolean isOnShell(final BlockPos pos) {
+    return pos.getX() == this.box.getMinX() || pos.getX() == this.box.getMaxX()
+        || pos.getY() == this.box.getMinY() || pos.getY() == this.box.getMaxY()
+        || pos.getZ() == this.box.getMinZ() || pos.getZ() == this.box.getMaxZ();
+  }
+
+  @Override
+  public Operation getStepOperation() {
+    return Operation.PASTE_JOB_STEP;
+  }
+
+  @Override
+  protected String getProgressKey() {
+    return "message.build_utils.paste_job.progress";
+  }
+
+  @Override
+  public Text getFeedbackMessage() {
+    if (this.failed) {
+      return new TranslatableText("message.build_utils.paste_job.error.cannot_load_structure", this.structureName)
+          .setStyle(Style.EMPTY.withColor(Formatting.RED));
+    }
+    return new TranslatableText(this.feedbackKey, this.structureName);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
+  }
+
+  @Override
+  protected void writeNbt(NbtCompound nbt) {
+    nbt.putString(STRUCTURE_NAME_KEY, this.structureName);
+    nbt.put(ORIGIN_KEY, NbtHelper.fromBlockPos(this.origin));
+    nbt.putInt(ROTATION_KEY, this.rotation.ordinal());
+    nbt.putInt(MIRROR_KEY, this.mirror.ordinal());
+    nbt.putBoolean(RAW_KEY, this.raw);
+    nbt.putString(FEEDBACK_KEY, this.feedbackKey);
+    nbt.putInt(CHUNKS_NB_KEY, this.chunksNb);
+  }
+
+  /**
+   * Accumulates the new contents of a single section. Also used by {@link SnapshotPasteJob}.
+   */
+  static class SectionBuilder {
+    final int y;
+    final int index;
+    final PalettedContainer<BlockState> container;
+    final ShortSet changed = new ShortOpenHashSet();
+    final ShortSet lightChecks = new ShortOpenHashSet();
+    final List<BlockPos> removedBlockEntities = new ArrayList<>();
+    final List<Pair<BlockPos, NbtCompound>> addedBlockEntities = new ArrayList<>();
+    final List<PreparedSection.BlockUpdate> blockUpdates = new ArrayList<>();
+
+    SectionBuilder(int y, int index, PalettedContainer<BlockState> container) {
+      this.y = y;
+      this.index = index;
+      this.container = container;
+    }
+
+    /**
+     * Sets the block at the given position of this section.
+     *
+     * @param pos    Position of the block.
+     * @param state  The new block state.
+     * @param nbt    Data of the new block entity. May be null. It is copied.
+     * @param update Whether to trigger neighbor updates once the section has been committed.
+     */
+    void set(final BlockPos pos, final BlockState state, @Nullable final NbtCompound nbt, boolean update) {
+      BlockState oldState = this.container.swapUnsafe(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, state);
+      if (oldState != state) {
+        this.changed.add(ChunkSectionPos.packLocal(pos));
+        if (PreparedSection.affectsLight(oldState, state)) {
+          this.lightChecks.add(ChunkSectionPos.packLocal(pos));
+        }
+        if (oldState.hasBlockEntity()) {
+          this.removedBlockEntities.add(pos.toImmutable());
+        }
+        if (update) {
+          this.blockUpdates.add(new PreparedSection.BlockUpdate(pos.toImmutable(), oldState, state));
+        }
+      }
+      if (nbt != null && state.hasBlockEntity()) {
+        NbtCompound data = nbt.copy();
+        data.putInt("x", pos.getX());
+        data.putInt("y", pos.getY());
+        data.putInt("z", pos.getZ());
+        this.addedBlockEntities.add(Pair.of(pos.toImmutable(), data));
+      }
+    }
+
+    /**
+     * Returns the prepared section, or null if nothing was changed.
+     */
+    @Nullable
+    PreparedSection build() {
+      if (this.changed.isEmpty() && this.addedBlockEntities.isEmpty()) {
+        return null;
+      }
+      return new PreparedSection(this.y, this.index, this.container, new BlockCounter(this.container),
+          this.changed, this.lightChecks, this.removedBlockEntities, this.addedBlockEntities, this.blockUpdates);
+    }
+  }
+}
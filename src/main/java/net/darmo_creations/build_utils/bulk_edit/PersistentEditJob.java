@@ -0,0 +1,96 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An {@link EditJob} that is saved along with the world by the {@link EditJobsState},
+ * so that it is resumed from its cursor after a server restart.
+ * <p>
+ * Snapshots are not persisted: jobs resumed after a restart cannot be undone.
+ */
+public abstract class PersistentEditJob extends EditJob {
+  private static final String TYPE_KEY = "Type";
+  private static final String DIMENSION_KEY = "Dimension";
+  private static final String OWNER_KEY = "Owner";
+  private static final String BROADCAST_KEY = "Broadcast";
+  private static final String CURSOR_KEY = "Cursor";
+  private static final String BLOCKS_NB_KEY = "BlocksNb";
+
+  /**
+   * Creates a new job.
+   *
+   * @param world     The world to edit.
+   * @param box       The region that will be edited.
+   * @param owner     UUID of the player that started the job. May be null.
+   * @param broadcast Whether to send the final message to all players instead of only the owner.
+   */
+  protected PersistentEditJob(final ServerWorld world, final BlockBox box, @Nullable final UUID owner, final boolean broadcast) {
+    super(world, box, owner, broadcast);
+  }
+
+  /**
+   * Creates a job from NBT data.
+   */
+  protected PersistentEditJob(final NbtCompound nbt) {
+    super(
+        new Identifier(nbt.getString(DIMENSION_KEY)),
+        nbt.containsUuid(OWNER_KEY) ? nbt.getUuid(OWNER_KEY) : null,
+        nbt.getBoolean(BROADCAST_KEY)
+    );
+    this.cursor = nbt.getInt(CURSOR_KEY);
+    this.blocksNb = nbt.getInt(BLOCKS_NB_KEY);
+  }
+
+  /**
+   * Creates a job of the appropriate type from NBT data.
+   *
+   * @return The job or an empty value if the data’s type is unknown.
+   */
+  static Optional<PersistentEditJob> fromNbt(final NbtCompound nbt) {
+    String type = nbt.getString(TYPE_KEY);
+    return switch (type) {
+      case FillJob.TYPE -> Optional.of(new FillJob(nbt));
+      case PasteJob.TYPE -> Optional.of(new PasteJob(nbt));
+      case SnapshotPasteJob.TYPE -> Optional.of(new SnapshotPasteJob(nbt));
+      default -> {
+        BuildUtils.LOGGER.warn("Dropping edit job of unknown type {}", type);
+        yield Optional.empty();
+      }
+    };
+  }
+
+  /**
+   * The type of this job, stored in its NBT data.
+   */
+  protected abstract String getType();
+
+  /**
+   * Serializes this job into NBT tags.
+   */
+  NbtCompound toNbt() {
+    NbtCompound nbt = new NbtCompound();
+    nbt.putString(TYPE_KEY, this.getType());
+    nbt.putString(DIMENSION_KEY, this.getDimension().toString());
+    if (this.getOwner() != null) {
+      nbt.putUuid(OWNER_KEY, this.getOwner());
+    }
+    nbt.putBoolean(BROADCAST_KEY, this.shouldBroadcast());
+    nbt.putInt(CURSOR_KEY, this.cursor);
+    nbt.putInt(BLOCKS_NB_KEY, this.blocksNb);
+    this.writeNbt(nbt);
+    return nbt;
+  }
+
+  /**
+   * Writes the data specific to this type of job into the given tag.
+   */
+  protected abstract void writeNbt(NbtCompound nbt);
+}
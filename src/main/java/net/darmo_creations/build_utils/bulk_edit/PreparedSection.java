@@ -0,0 +1,64 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockView;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.List;
+
+/**
+ * The new contents of a chunk section, built off the server thread and committed by the {@link ChunkWriter}.
+ *
+ * @param y                    Section’s Y coordinate.
+ * @param index                Section’s index in its chunk.
+ * @param container            The new block states container.
+ * @param counter              Block counts of the new container.
+ * @param changed              Packed local positions of all changed blocks.
+ * @param lightChecks          Packed local positions of the changed blocks that may affect lighting.
+ * @param removedBlockEntities Positions of the block entities to remove.
+ * @param addedBlockEntities   Positions and data of the block entities to create after removals.
+ *                             Data may be null for block entities that keep their default data.
+ * @param blockUpdates         Changed blocks whose neighbors should be notified.
+ */
+record PreparedSection(
+    int y,
+    int index,
+    PalettedContainer<BlockState> container,
+    BlockCounter counter,
+    ShortSet changed,
+    ShortSet lightChecks,
+    List<BlockPos> removedBlockEntities,
+    List<Pair<BlockPos, NbtCompound>> addedBlockEntities,
+    List<BlockUpdate> blockUpdates
+) {
+  /**
+   * Indicates whether replacing a block state by another may change the lighting around it.
+   * This is the same test as the one performed by {@link net.minecraft.world.World#setBlockState(BlockPos, BlockState, int, int)}.
+   *
+   * @param oldState The previous state.
+   * @param newState The new state.
+   * @return True if a light check should be performed.
+   */
+  static boolean affectsLight(final BlockState oldState, final BlockState newState) {
+    return oldState != newState && (
+        oldState.getOpacity(EmptyBlockView.INSTANCE, BlockPos.ORIGIN) != newState.getOpacity(EmptyBlockView.INSTANCE, BlockPos.ORIGIN)
+            || oldState.getLuminance() != newState.getLuminance()
+            || oldState.hasSidedTransparency()
+            || newState.hasSidedTransparency()
+    );
+  }
+
+  /**
+   * A block change that should notify neighbor blocks.
+   *
+   * @param pos      Block’s position.
+   * @param oldState The previous state.
+   * @param newState The new state.
+   */
+  record BlockUpdate(BlockPos pos, BlockState oldState, BlockState newState) {
+  }
+}
@@ -0,0 +1,220 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.darmo_creations.build_utils.ModGameRules;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A copy of the blocks of a cuboid region, used to undo/redo bulk edits.
+ * <p>
+ * Block states are stored per section as {@link SectionSnapshot}s, block entities as NBT data.
+ * Snapshots are captured and restored incrementally, by batches of chunk columns,
+ * through the same batched write path as fills.
+ */
+public class RegionSnapshot {
+  private final RegistryKey<World> dimension;
+  private final BlockBox box;
+  private final Long2ObjectMap<List<SectionSnapshot>> sections = new Long2ObjectLinkedOpenHashMap<>();
+  private final Long2ObjectMap<List<Pair<BlockPos, NbtCompound>>> blockEntities = new Long2ObjectLinkedOpenHashMap<>();
+  private long size;
+
+  /**
+   * Creates an empty snapshot for the given region.
+   * Chunks have to be captured with {@link #capture(ServerWorld, List)}.
+   *
+   * @param world The world the region belongs to.
+   * @param box   The region.
+   */
+  public RegionSnapshot(final ServerWorld world, final BlockBox box) {
+    this.dimension = world.getRegistryKey();
+    this.box = box;
+  }
+
+  /**
+   * Copies the parts of this snapshot’s region that lie within the given chunk columns.
+   * Sections are encoded in parallel.
+   *
+   * @param world  The world to copy blocks from. Must be the one this snapshot was created for.
+   * @param chunks Positions of the chunk columns to copy.
+   */
+  public void capture(ServerWorld world, final List<ChunkPos> chunks) {
+    int minY = Math.max(this.box.getMinY(), world.getBottomY());
+    int maxY = Math.min(this.box.getMaxY(), world.getTopY() - 1);
+    if (minY > maxY) {
+      return;
+    }
+    long limit = world.getServer().getGameRules().getInt(ModGameRules.UNDO_MEMORY_LIMIT) * 1024L * 1024L;
+    List<WorldChunk> loadedChunks = chunks.stream().map(p -> world.getChunk(p.x, p.z)).toList();
+    List<List<SectionSnapshot>> encoded = ChunkWriter.prepare(loadedChunks, chunk -> {
+      ChunkSection[] chunkSections = chunk.getSectionArray();
+      List<SectionSnapshot> snapshots = new ArrayList<>();
+      for (int sectionY = minY >> 4; sectionY <= maxY >> 4; sectionY++) {
+        PalettedContainer<BlockState> container = chunkSections[world.sectionCoordToIndex(sectionY)].getBlockStateContainer();
+        snapshots.add(SectionSnapshot.encode(ChunkSectionPos.from(chunk.getPos(), sectionY), container, limit));
+      }
+      return snapshots;
+    });
+
+    for (int i = 0; i < loadedChunks.size(); i++) {
+      WorldChunk chunk = loadedChunks.get(i);
+      long key = chunk.getPos().toLong();
+      this.sections.put(key, encoded.get(i));
+      this.size += encoded.get(i).stream().mapToLong(SectionSnapshot::getSize).sum();
+      List<Pair<BlockPos, NbtCompound>> chunkBlockEntities = new ArrayList<>();
+      chunk.getBlockEntities().forEach((pos, blockEntity) -> {
+        if (this.box.contains(pos)) {
+          chunkBlockEntities.add(Pair.of(pos, blockEntity.createNbtWithIdentifyingData()));
+        }
+      });
+      this.blockEntities.put(key, chunkBlockEntities);
+    }
+  }
+
+  /**
+   * Returns the positions of all captured chunk columns, in capture order.
+   */
+  List<ChunkPos> getChunks() {
+    List<ChunkPos> chunks = new ArrayList<>(this.sections.size());
+    for (long key : this.sections.keySet()) {
+      chunks.add(new ChunkPos(key));
+    }
+    return chunks;
+  }
+
+  /**
+   * Writes the blocks of this snapshot that lie within the given chunk columns back into the world.
+   * Sections are prepared in parallel.
+   *
+   * @param world  The world to edit. Must be the one this snapshot was created for.
+   * @param chunks Positions of the chunk columns to restore. They must have been captured.
+   * @return The number of blocks that were changed.
+   * @throws java.io.UncheckedIOException If some spilled data could not be read.
+   */
+  int restore(ServerWorld world, final List<ChunkPos> chunks) {
+    List<WorldChunk> loadedChunks = chunks.stream().map(p -> world.getChunk(p.x, p.z)).toList();
+    List<List<PreparedSection>> prepared = ChunkWriter.prepare(loadedChunks, chunk -> this.prepareChunk(chunk, world));
+    int blocksNb = 0;
+    for (int i = 0; i < loadedChunks.size(); i++) {
+      blocksNb += ChunkWriter.commit(loadedChunks.get(i), prepared.get(i), world);
+    }
+    return blocksNb;
+  }
+
+  /**
+   * Builds the restored contents of all captured sections of the given chunk.
+   * This method does not modify the chunk.
+   */
+  private List<PreparedSection> prepareChunk(final WorldChunk chunk, final ServerWorld world) {
+    ChunkPos chunkPos = chunk.getPos();
+    long key = chunkPos.toLong();
+    int minX = Math.max(this.box.getMinX(), chunkPos.getStartX());
+    int maxX = Math.min(this.box.getMaxX(), chunkPos.getEndX());
+    int minZ = Math.max(this.box.getMinZ(), chunkPos.getStartZ());
+    int maxZ = Math.min(this.box.getMaxZ(), chunkPos.getEndZ());
+    ChunkSection[] chunkSections = chunk.getSectionArray();
+    BlockPos.Mutable pos = new BlockPos.Mutable();
+    List<PreparedSection> preparedSections = new ArrayList<>();
+
+    for (SectionSnapshot snapshot : this.sections.get(key)) {
+      SectionSnapshot.Reader reader = snapshot.open();
+      int sectionY = snapshot.getPos().getSectionY();
+      int sectionIndex = world.sectionCoordToIndex(sectionY);
+      int fromY = Math.max(this.box.getMinY(), sectionY << 4);
+      int toY = Math.min(this.box.getMaxY(), (sectionY << 4) + 15);
+      PalettedContainer<BlockState> container = chunkSections[sectionIndex].getBlockStateContainer().copy();
+      ShortSet changed = new ShortOpenHashSet();
+      ShortSet lightChecks = new ShortOpenHashSet();
+      List<BlockPos> removedBlockEntities = new ArrayList<>();
+      List<Pair<BlockPos, NbtCompound>> addedBlockEntities = new ArrayList<>();
+
+      for (int x = minX; x <= maxX; x++) {
+        for (int z = minZ; z <= maxZ; z++) {
+          for (int y = fromY; y <= toY; y++) {
+            BlockState state = reader.get(x & 15, y & 15, z & 15);
+            BlockState oldState = container.swapUnsafe(x & 15, y & 15, z & 15, state);
+            if (oldState != state) {
+              pos.set(x, y, z);
+              changed.add(ChunkSectionPos.packLocal(pos));
+              if (PreparedSection.affectsLight(oldState, state)) {
+                lightChecks.add(ChunkSectionPos.packLocal(pos));
+              }
+              if (oldState.hasBlockEntity()) {
+                removedBlockEntities.add(pos.toImmutable());
+              }
+            }
+          }
+        }
+      }
+      for (Pair<BlockPos, NbtCompound> entry : this.blockEntities.get(key)) {
+        if (entry.getLeft().getY() >> 4 == sectionY) {
+          if (!removedBlockEntities.contains(entry.getLeft())) {
+            removedBlockEntities.add(entry.getLeft());
+          }
+          addedBlockEntities.add(entry);
+        }
+      }
+
+      if (!changed.isEmpty() || !addedBlockEntities.isEmpty()) {
+        preparedSections.add(new PreparedSection(sectionY, sectionIndex, container, new BlockCounter(container),
+            changed, lightChecks, removedBlockEntities, addedBlockEntities, List.of()));
+      }
+    }
+    return preparedSections;
+  }
+
+  /**
+   * The dimension this snapshot was captured in.
+   */
+  public RegistryKey<World> getDimension() {
+    return this.dimension;
+  }
+
+  /**
+   * The region covered by this snapshot.
+   */
+  public BlockBox getBox() {
+    return this.box;
+  }
+
+  /**
+   * Approximate number of bytes used by this snapshot outside the heap.
+   */
+  public long getSize() {
+    return this.size;
+  }
+
+  /**
+   * Indicates whether some data of this snapshot was lost because it could not be spilled to disk.
+   * Broken snapshots cannot be restored.
+   */
+  public boolean isBroken() {
+    return this.sections.values().stream().anyMatch(list -> list.stream().anyMatch(SectionSnapshot::isBroken));
+  }
+
+  /**
+   * Releases the data of this snapshot. It must not be used afterwards.
+   */
+  public void release() {
+    this.sections.values().forEach(list -> list.forEach(SectionSnapshot::release));
+    this.sections.clear();
+    this.blockEntities.clear();
+  }
+}
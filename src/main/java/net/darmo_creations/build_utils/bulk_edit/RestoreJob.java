@@ -0,0 +1,126 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.text.Style;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * An undo or redo of a bulk edit that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * Each step restores one chunk column of a {@link RegionSnapshot}, in the order they were captured.
+ * Columns are restored by batches, after their current state has been captured into the job’s own snapshot.
+ * Once the job is done, that snapshot is pushed onto the opposite stack of the owner’s {@link EditHistory}.
+ * <p>
+ * If some data of the restored snapshot could not be saved or read back, the job is aborted.
+ * The columns restored so far can still be reverted through the job’s own snapshot.
+ * <p>
+ * As snapshots are kept in memory only, these jobs are not persisted and are dropped if the server stops.
+ */
+public class RestoreJob extends EditJob {
+  private final RegionSnapshot restored;
+  private final List<ChunkPos> chunks;
+  private final boolean undo;
+  private boolean failed;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world    The world to edit. Must be the one the snapshot was captured in.
+   * @param restored The snapshot to restore. It is released once the job is done.
+   * @param owner    UUID of the player whose history the snapshot comes from.
+   * @param undo     True if the job undoes an edit, false if it redoes one.
+   */
+  RestoreJob(final ServerWorld world, final RegionSnapshot restored, final UUID owner, boolean undo) {
+    super(world, restored.getBox(), owner, false);
+    this.restored = restored;
+    this.chunks = restored.getChunks();
+    this.undo = undo;
+  }
+
+  /**
+   * The total number of captured chunk columns to restore.
+   */
+  @Override
+  public int getStepsNb() {
+    return this.chunks.size();
+  }
+
+  /**
+   * Restores the next batch of chunk columns then moves the cursor forward.
+   * Batches contain up to {@link FillEngine#BATCH_SIZE} columns that are prepared in parallel.
+   *
+   * @param world The world to edit. Must be the one designated by {@link #getDimension()}.
+   */
+  @Override
+  public void runNextStep(ServerWorld world) {
+    int end = Math.min(this.cursor + FillEngine.BATCH_SIZE, this.chunks.size());
+    List<ChunkPos> batch = this.chunks.subList(this.cursor, end);
+    if (this.restored.isBroken()) {
+      BuildUtils.LOGGER.error("Some data of the history entry for region {} could not be saved, aborting", this.restored.getBox());
+      this.abort();
+    } else {
+      this.snapshot.capture(world, batch);
+      try {
+        this.blocksNb += this.restored.restore(world, batch);
+        this.cursor = end;
+      } catch (UncheckedIOException e) {
+        BuildUtils.LOGGER.error("Could not read history entry for region {}, aborting", this.restored.getBox(), e);
+        this.abort();
+      }
+    }
+    if (this.isDone()) {
+      this.restored.release();
+    }
+  }
+
+  private void abort() {
+    this.failed = true;
+    this.cursor = this.chunks.size();
+  }
+
+  /**
+   * Pushes the snapshot of the region before it was restored onto the redo stack if this job is an undo,
+   * onto the undo stack otherwise.
+   */
+  @Override
+  void recordHistory() {
+    EditHistory.push(this.getOwner(), this.snapshot, this.undo);
+  }
+
+  /**
+   * Also releases the snapshot that was being restored, as it is not part of any history anymore.
+   */
+  @Override
+  void discard() {
+    super.discard();
+    this.restored.release();
+  }
+
+  @Override
+  public Operation getStepOperation() {
+    return this.undo ? Operation.UNDO : Operation.REDO;
+  }
+
+  @Override
+  protected String getProgressKey() {
+    return this.undo ? "message.build_utils.undo_job.progress" : "message.build_utils.redo_job.progress";
+  }
+
+  @Override
+  public Text getFeedbackMessage() {
+    if (this.failed) {
+      return new TranslatableText(this.undo ? "commands.build_utils.undo.error" : "commands.build_utils.redo.error")
+          .setStyle(Style.EMPTY.withColor(Formatting.RED));
+    }
+    return new TranslatableText(this.undo ? "commands.build_utils.undo.success" : "commands.build_utils.redo.success", this.blocksNb);
+  }
+}
@@ -0,0 +1,139 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of the block states of a 16³ chunk section.
+ * <p>
+ * States are stored as indices into a palette, bit-packed into longs that are kept outside the heap
+ * by the {@link SnapshotStorage}. Like vanilla containers, entries never span two longs.
+ * Single-state sections have no packed data.
+ */
+final class SectionSnapshot {
+  private static final int SIZE = 16 * 16 * 16;
+
+  /**
+   * Copies the block states of the given container.
+   *
+   * @param pos        Position of the section.
+   * @param container  The container to copy.
+   * @param limitBytes Maximum number of bytes that snapshots may keep in direct buffers.
+   * @return The snapshot.
+   */
+  static SectionSnapshot encode(final ChunkSectionPos pos, final PalettedContainer<BlockState> container, final long limitBytes) {
+    Reference2IntMap<BlockState> ids = new Reference2IntOpenHashMap<>();
+    ids.defaultReturnValue(-1);
+    List<BlockState> palette = new ArrayList<>();
+    int[] indices = new int[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      BlockState state = container.get(i & 15, i >> 8, (i >> 4) & 15);
+      int id = ids.getInt(state);
+      if (id == -1) {
+        id = palette.size();
+        palette.add(state);
+        ids.put(state, id);
+      }
+      indices[i] = id;
+    }
+
+    int bits = palette.size() == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(palette.size() - 1);
+    SnapshotStorage.Stored data = null;
+    if (bits != 0) {
+      int entriesPerLong = 64 / bits;
+      long[] packed = new long[(SIZE + entriesPerLong - 1) / entriesPerLong];
+      for (int i = 0; i < SIZE; i++) {
+        packed[i / entriesPerLong] |= (long) indices[i] << (i % entriesPerLong * bits);
+      }
+      data = SnapshotStorage.store(packed, limitBytes);
+    }
+    return new SectionSnapshot(pos, palette.toArray(BlockState[]::new), bits, data);
+  }
+
+  private final ChunkSectionPos pos;
+  private final BlockState[] palette;
+  private final int bits;
+  private final SnapshotStorage.Stored data;
+
+  private SectionSnapshot(final ChunkSectionPos pos, final BlockState[] palette, final int bits, final SnapshotStorage.Stored data) {
+    this.pos = pos;
+    this.palette = palette;
+    this.bits = bits;
+    this.data = data;
+  }
+
+  /**
+   * Position of the section.
+   */
+  ChunkSectionPos getPos() {
+    return this.pos;
+  }
+
+  /**
+   * Loads the packed data of this snapshot so that its block states can be read.
+   * Data that was spilled to disk is read once per call.
+   *
+   * @throws java.io.UncheckedIOException If the data could not be written or read back.
+   */
+  Reader open() {
+    return new Reader(this.palette, this.bits, this.data != null ? this.data.read() : null);
+  }
+
+  /**
+   * Indicates whether the packed data of this snapshot was lost because it could not be spilled to disk.
+   */
+  boolean isBroken() {
+    return this.data != null && this.data.isFailed();
+  }
+
+  /**
+   * Approximate number of bytes used by this snapshot outside the heap.
+   */
+  long getSize() {
+    return this.data != null ? this.data.getSize() : 0;
+  }
+
+  /**
+   * Releases the packed data of this snapshot. It must not be used afterwards.
+   */
+  void release() {
+    if (this.data != null) {
+      SnapshotStorage.release(this.data);
+    }
+  }
+
+  /**
+   * Gives access to the block states of a loaded snapshot.
+   */
+  static final class Reader {
+    private final BlockState[] palette;
+    private final int bits;
+    private final ByteBuffer data;
+
+    private Reader(final BlockState[] palette, int bits, final ByteBuffer data) {
+      this.palette = palette;
+      this.bits = bits;
+      this.data = data;
+    }
+
+    /**
+     * Returns the block state at the given section-relative coordinates.
+     */
+    BlockState get(int x, int y, int z) {
+      if (this.bits == 0) {
+        return this.palette[0];
+      }
+      int i = y << 8 | z << 4 | x;
+      int entriesPerLong = 64 / this.bits;
+      long value = this.data.getLong(i / entriesPerLong * Long.BYTES);
+      return this.palette[(int) (value >>> (i % entriesPerLong * this.bits) & ((1L << this.bits) - 1))];
+    }
+  }
+}
@@ -0,0 +1,338 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import com.mojang.datafixers.util.Either;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.darmo_creations.build_utils.structures.BlockTransform;
+import net.darmo_creations.build_utils.structures.StructureIO;
+import net.darmo_creations.build_utils.structures.StructureSnapshot;
+import net.darmo_creations.build_utils.structures.Template;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.text.TranslatableText;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Formatting;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A paste of a {@link StructureSnapshot} that is spread across several server ticks by the {@link EditJobScheduler}.
+ * <p>
+ * Unlike {@link PasteJob}, blocks are not bucketed beforehand. Each step pastes one destination chunk column,
+ * in X then Z order, by mapping each of its positions back into the snapshot. Only the cells of the snapshot
+ * that overlap the column are therefore read. Columns are pasted by batches, through the same two-stage write path
+ * as fills.
+ * <p>
+ * Neighbor updates are only triggered for blocks on the outer shell of the pasted region, unless the job is raw.
+ * Entities are not pasted.
+ * <p>
+ * Snapshots are not persisted: jobs resumed after a server restart open the snapshot file again
+ * through the {@link StructureIO}, without blocking the server thread.
+ */
+public class SnapshotPasteJob extends PersistentEditJob {
+  static final String TYPE = "snapshot_paste";
+
+  private static final String STRUCTURE_NAME_KEY = "StructureName";
+  private static final String ORIGIN_KEY = "Origin";
+  private static final String ROTATION_KEY = "Rotation";
+  private static final String MIRROR_KEY = "Mirror";
+  private static final String RAW_KEY = "Raw";
+  private static final String FEEDBACK_KEY = "Feedback";
+  private static final String CHUNKS_NB_KEY = "ChunksNb";
+
+  private final String structureName;
+  private final BlockPos origin;
+  private final BlockRotation rotation;
+  private final BlockMirror mirror;
+  private final boolean raw;
+  private final String feedbackKey;
+  private int chunksNb;
+  private boolean failed;
+  private CompletableFuture<Optional<Either<Template, StructureSnapshot>>> loading;
+  private StructureSnapshot structure;
+  /**
+   * The snapshot’s palette, transformed with the job’s mirror and rotation.
+   */
+  private BlockState[] palette;
+  private BlockBox box;
+  /**
+   * Maps world offsets from the origin back to snapshot positions.
+   */
+  private BlockTransform inverseTransform;
+
+  /**
+   * Creates a new job.
+   *
+   * @param world         The world to edit.
+   * @param structure     The snapshot to paste.
+   * @param structureName Name of the snapshot.
+   * @param origin        Position to paste the snapshot at.
+   * @param rotation      The rotation to apply after mirroring.
+   * @param mirror        The mirror to apply.
+   * @param raw           Whether to skip neighbor/shape updates and block callbacks.
+   * @param owner         UUID of the player that started the job. May be null.
+   * @param feedbackKey   Translation key of the message to send once the job is done.
+   *                      It receives the structure’s name as its only argument.
+   * @param broadcast     Whether to send the final message to all players instead of only the owner.
+   */
+  public SnapshotPasteJob(
+      final ServerWorld world,
+      final StructureSnapshot structure,
+      final String structureName,
+      final BlockPos origin,
+      final BlockRotation rotation,
+      final BlockMirror mirror,
+      boolean raw,
+      @Nullable final UUID owner,
+      final String feedbackKey,
+      final boolean broadcast
+  ) {
+    super(world, structure.getBoundingBox(origin, mirror, rotation), owner, broadcast);
+    this.structureName = Objects.requireNonNull(structureName);
+    this.origin = origin.toImmutable();
+    this.rotation = Objects.requireNonNull(rotation);
+    this.mirror = Objects.requireNonNull(mirror);
+    this.raw = raw;
+    this.feedbackKey = Objects.requireNonNull(feedbackKey);
+    this.setStructure(structure);
+  }
+
+  /**
+   * Creates a job from NBT data.
+   */
+  SnapshotPasteJob(final NbtCompound nbt) {
+    super(nbt);
+    this.structureName = nbt.getString(STRUCTURE_NAME_KEY);
+    this.origin = NbtHelper.toBlockPos(nbt.getCompound(ORIGIN_KEY));
+    this.rotation = BlockRotation.values()[nbt.getInt(ROTATION_KEY)];
+    this.mirror = BlockMirror.values()[nbt.getInt(MIRROR_KEY)];
+    this.raw = nbt.getBoolean(RAW_KEY);
+    this.feedbackKey = nbt.getString(FEEDBACK_KEY);
+    this.chunksNb = nbt.getInt(CHUNKS_NB_KEY);
+  }
+
+  /**
+   * Sets the snapshot to paste and computes the inverse transformation from world to snapshot positions.
+   */
+  private void setStructure(final StructureSnapshot structure) {
+    this.structure = structure;
+    this.palette = structure.getPalette().stream()
+        .map(state -> state.mirror(this.mirror).rotate(this.rotation))
+        .toArray(BlockState[]::new);
+    this.box = structure.getBoundingBox(this.origin, this.mirror, this.rotation);
+    this.inverseTransform = BlockTransform.of(this.mirror, this.rotation).inverse();
+    this.chunksNb = ((this.box.getMaxX() >> 4) - (this.box.getMinX() >> 4) + 1) * this.getChunksNbZ();
+  }
+
+  private int getChunksNbZ() {
+    return (this.box.getMaxZ() >> 4) - (this.box.getMinZ() >> 4) + 1;
+  }
+
+  /**
+   * The total number of destination chunk columns.
+   */
+  @Override
+  public int getStepsNb() {
+    return this.chunksNb;
+  }
+
+  @Override
+  public boolean isDone() {
+    return this.failed || super.isDone();
+  }
+
+  /**
+   * False while the snapshot of a resumed job is being loaded.
+   */
+  @Override
+  public boolean isReady() {
+    return this.loading == null || this.loading.isDone();
+  }
+
+  /**
+   * Pastes the next batch of chunk columns then moves the cursor forward.
+   * Batches contain up to {@link FillEngine#BATCH_SIZE} columns that are prepared in parallel.
+   * If the job was resumed after a restart, the first step starts opening the snapshot
+   * and pasting resumes once it is open.
+   *
+   * @param world The world to edit. Must be the one designated by {@link #getDimension()}.
+   */
+  @Override
+  public void runNextStep(ServerWorld world) {
+    if (this.structure == null) {
+      if (!this.loadStructure(world)) {
+        this.failed = true;
+      }
+      if (this.structure == null) {
+        return;
+      }
+    }
+    int end = Math.min(this.cursor + FillEngine.BATCH_SIZE, this.chunksNb);
+    int chunksNbZ = this.getChunksNbZ();
+    List<ChunkPos> batch = new ArrayList<>(end - this.cursor);
+    for (int i = this.cursor; i < end; i++) {
+      batch.add(new ChunkPos((this.box.getMinX() >> 4) + i / chunksNbZ, (this.box.getMinZ() >> 4) + i % chunksNbZ));
+    }
+    if (this.snapshot != null) {
+      this.snapshot.capture(world, batch);
+    }
+    List<WorldChunk> loadedChunks = batch.stream().map(p -> world.getChunk(p.x, p.z)).toList();
+    List<List<PreparedSection>> prepared = ChunkWriter.prepare(loadedChunks, chunk -> this.prepareChunk(chunk, world));
+    for (int i = 0; i < loadedChunks.size(); i++) {
+      this.blocksNb += ChunkWriter.commit(loadedChunks.get(i), prepared.get(i), world);
+    }
+    this.cursor = end;
+    if (this.isDone()) {
+      this.structure = null;
+      this.palette = null;
+    }
+  }
+
+  /**
+   * Starts loading the snapshot through the {@link StructureIO}, or takes the loaded one if it is available.
+   *
+   * @return False if the snapshot could not be loaded.
+   */
+  private boolean loadStructure(ServerWorld world) {
+    if (this.loading == null) {
+      try {
+        this.loading = StructureIO.loadStructure(world.getServer(), new Identifier(this.structureName), this.mirror, this.rotation);
+      } catch (InvalidIdentifierException e) {
+        this.loading = CompletableFuture.completedFuture(Optional.empty());
+      }
+    }
+    if (!this.loading.isDone()) {
+      return true;
+    }
+    Optional<StructureSnapshot> structure;
+    try {
+      structure = this.loading.join().flatMap(Either::right);
+    } catch (CompletionException | CancellationException e) {
+      BuildUtils.LOGGER.error("Error while loading snapshot {}", this.structureName, e);
+      structure = Optional.empty();
+    }
+    this.loading = null;
+    if (structure.isEmpty()) {
+      BuildUtils.LOGGER.warn("Could not load snapshot {}, aborting paste", this.structureName);
+      return false;
+    }
+    this.setStructure(structure.get());
+    return true;
+  }
+
+  /**
+   * Builds the new contents of all sections of the given chunk that receive blocks from the snapshot.
+   * This method does not modify the chunk.
+   */
+  private List<PreparedSection> prepareChunk(final WorldChunk chunk, final ServerWorld world) {
+    ChunkSection[] sections = chunk.getSectionArray();
+    ChunkPos chunkPos = chunk.getPos();
+    int minX = Math.max(this.box.getMinX(), chunkPos.getStartX());
+    int maxX = Math.min(this.box.getMaxX(), chunkPos.getEndX());
+    int minZ = Math.max(this.box.getMinZ(), chunkPos.getStartZ());
+    int maxZ = Math.min(this.box.getMaxZ(), chunkPos.getEndZ());
+    int minY = Math.max(this.box.getMinY(), world.getBottomY());
+    int maxY = Math.min(this.box.getMaxY(), world.getTopY() - 1);
+    List<PreparedSection> preparedSections = new ArrayList<>();
+    BlockPos.Mutable pos = new BlockPos.Mutable();
+
+    for (int sectionY = ChunkSectionPos.getSectionCoord(minY); sectionY <= ChunkSectionPos.getSectionCoord(maxY); sectionY++) {
+      int sectionIndex = world.sectionCoordToIndex(sectionY);
+      PasteJob.SectionBuilder builder = null;
+      for (int y = Math.max(minY, sectionY << 4); y <= Math.min(maxY, (sectionY << 4) + 15); y++) {
+        for (int z = minZ; z <= maxZ; z++) {
+          for (int x = minX; x <= maxX; x++) {
+            int dx = x - this.origin.getX();
+            int dz = z - this.origin.getZ();
+            int srcX = this.inverseTransform.applyX(dx, dz);
+            int srcY = y - this.origin.getY();
+            int srcZ = this.inverseTransform.applyZ(dx, dz);
+            int stateIndex = this.structure.getStateIndex(srcX, srcY, srcZ);
+            if (stateIndex < 0 || stateIndex >= this.palette.length) {
+              continue;
+            }
+            if (builder == null) {
+              builder = new PasteJob.SectionBuilder(sectionY, sectionIndex, sections[sectionIndex].getBlockStateContainer().copy());
+            }
+            BlockState state = this.palette[stateIndex];
+            pos.set(x, y, z);
+            builder.set(pos, state, state.hasBlockEntity() ? this.structure.getBlockEntityNbt(srcX, srcY, srcZ) : null,
+                !this.raw && this.isOnShell(pos));
+          }
+        }
+      }
+      if (builder != null) {
+        PreparedSection preparedSection = builder.build();
+        if (preparedSection != null) {
+          preparedSections.add(preparedSection);
+        }
+      }
+    }
+    return preparedSections;
+  }
+
+  /**
+   * Indicates whether the given position lies on one of the faces of the pasted region.
+   */
+  private boolean isOnShell(final BlockPos pos) {
+    return pos.getX() == this.box.getMinX() || pos.getX() == this.box.getMaxX()
+        || pos.getY() == this.box.getMinY() || pos.getY() == this.box.getMaxY()
+        || pos.getZ() == this.box.getMinZ() || pos.getZ() == this.box.getMaxZ();
+  }
+
+  @Override
+  public Operation getStepOperation() {
+    return Operation.PASTE_JOB_STEP;
+  }
+
+  @Override
+  protected String getProgressKey() {
+    return "message.build_utils.paste_job.progress";
+  }
+
+  @Override
+  public Text getFeedbackMessage() {
+    if (this.failed) {
+      return new TranslatableText("message.build_utils.paste_job.error.cannot_load_structure", this.structureName)
+          .setStyle(Style.EMPTY.withColor(Formatting.RED));
+    }
+    return new TranslatableText(this.feedbackKey, this.structureName);
+  }
+
+  @Override
+  protected String getType() {
+    return TYPE;
+  }
+
+  @Override
+  protected void writeNbt(NbtCompound nbt) {
+    nbt.putString(STRUCTURE_NAME_KEY, this.structureName);
+    nbt.put(ORIGIN_KEY, NbtHelper.fromBlockPos(this.origin));
+    nbt.putInt(ROTATION_KEY, this.rotation.ordinal());
+    nbt.putInt(MIRROR_KEY, this.mirror.ordinal());
+    nbt.putBoolean(RAW_KEY, this.raw);
+    nbt.putString(FEEDBACK_KEY, this.feedbackKey);
+    nbt.putInt(CHUNKS_NB_KEY, this.chunksNb);
+  }
+}
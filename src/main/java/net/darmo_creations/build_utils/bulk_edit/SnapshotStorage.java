@@ -0,0 +1,276 @@
+package net.darmo_creations.build_utils.bulk_edit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.ModGameRules;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stores the packed block data of history snapshots outside the Java heap.
+ * <p>
+ * Data is kept in direct buffers until their total size reaches the limit set by the
+ * {@link ModGameRules#UNDO_MEMORY_LIMIT} game rule. Beyond that limit, data is written to a spill file
+ * by a dedicated thread, then read back with positional reads. Until it has been written, spilled data
+ * stays on the heap.
+ * <p>
+ * Released ranges of the spill file are reused by data of the same size, and the file is truncated
+ * once it does not hold any live data. It is deleted when the server stops.
+ * <p>
+ * All methods are thread-safe.
+ */
+final class SnapshotStorage {
+  private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder()
+          .setNameFormat("BuildUtils-History-IO")
+          .setDaemon(true)
+          .setUncaughtExceptionHandler((thread, e) -> BuildUtils.LOGGER.error("Uncaught exception in thread {}", thread.getName(), e))
+          .build()
+  );
+
+  /**
+   * Offsets of the released ranges of the spill file, per range size.
+   * Packed sections only come in a few sizes, so ranges are reused as is.
+   */
+  private static final Int2ObjectMap<LongArrayList> FREE_RANGES = new Int2ObjectOpenHashMap<>();
+
+  private static Path spillFile;
+  /**
+   * Only opened and closed on the writer thread.
+   */
+  private static volatile FileChannel spillChannel;
+  private static long spillSize;
+  private static long spilledBytes;
+  private static long offHeapBytes;
+
+  /**
+   * Sets the path of the spill file. Called when the server starts.
+   */
+  static synchronized void open(final Path file) {
+    spillFile = file;
+  }
+
+  /**
+   * Deletes the spill file and resets all counters. Called when the server stops.
+   * Waits for the pending writes to finish.
+   */
+  static void close() {
+    Path file;
+    synchronized (SnapshotStorage.class) {
+      file = spillFile;
+      spillFile = null;
+      spillSize = 0;
+      spilledBytes = 0;
+      offHeapBytes = 0;
+      FREE_RANGES.clear();
+    }
+    try {
+      WRITER.submit(() -> {
+        try {
+          if (spillChannel != null) {
+            spillChannel.close();
+          }
+          if (file != null) {
+            Files.deleteIfExists(file);
+          }
+        } catch (IOException e) {
+          BuildUtils.LOGGER.warn("Could not delete history spill file", e);
+        }
+        spillChannel = null;
+      }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      BuildUtils.LOGGER.warn("Could not delete history spill file", e.getCause());
+    }
+  }
+
+  /**
+   * Copies the given data outside the heap. If it has to be spilled to disk, it is written asynchronously.
+   *
+   * @param data       The data to store.
+   * @param limitBytes Maximum number of bytes that may be kept in direct buffers.
+   * @return A handle to the data.
+   */
+  static Stored store(final long[] data, final long limitBytes) {
+    int size = data.length * Long.BYTES;
+    Path file;
+    long position;
+    synchronized (SnapshotStorage.class) {
+      file = spillFile;
+      if (offHeapBytes + size <= limitBytes || file == null) {
+        offHeapBytes += size;
+        position = -1;
+      } else {
+        LongArrayList freeRanges = FREE_RANGES.get(size);
+        if (freeRanges != null && !freeRanges.isEmpty()) {
+          position = freeRanges.removeLong(freeRanges.size() - 1);
+        } else {
+          position = spillSize;
+          spillSize += size;
+        }
+        spilledBytes += size;
+      }
+    }
+
+    if (position < 0) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+      buffer.asLongBuffer().put(data);
+      return new Stored(buffer.asReadOnlyBuffer(), -1, size);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.asLongBuffer().put(data);
+    Stored stored = new Stored(null, position, size);
+    stored.pending = buffer;
+    WRITER.execute(() -> write(file, stored));
+    return stored;
+  }
+
+  /**
+   * Writes the pending data of the given handle to the spill file. Runs on the writer thread.
+   * On failure, the handle is marked as failed and its data is dropped.
+   */
+  private static void write(final Path file, Stored stored) {
+    ByteBuffer pending = stored.pending;
+    if (pending == null) { // Released before being written
+      return;
+    }
+    ByteBuffer buffer = pending.duplicate();
+    try {
+      if (spillChannel == null) {
+        spillChannel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      }
+      while (buffer.hasRemaining()) {
+        spillChannel.write(buffer, stored.position + buffer.position());
+      }
+    } catch (IOException e) {
+      BuildUtils.LOGGER.error("Could not write history data to {}", file, e);
+      stored.failed = true;
+    }
+    stored.pending = null;
+  }
+
+  /**
+   * Truncates the spill file. Runs on the writer thread, after all writes that were queued before.
+   */
+  private static void truncate() {
+    if (spillChannel != null) {
+      try {
+        spillChannel.truncate(0);
+      } catch (IOException e) {
+        BuildUtils.LOGGER.warn("Could not truncate history spill file", e);
+      }
+    }
+  }
+
+  /**
+   * Notifies this storage that the given data is not used anymore.
+   * The range it occupied in the spill file may be reused by new data.
+   */
+  static synchronized void release(Stored stored) {
+    if (!stored.isSpilled()) {
+      offHeapBytes -= stored.size;
+      return;
+    }
+    stored.pending = null;
+    if (spillFile == null) { // Storage was closed
+      return;
+    }
+    spilledBytes -= stored.size;
+    if (spilledBytes == 0) {
+      FREE_RANGES.clear();
+      spillSize = 0;
+      WRITER.execute(SnapshotStorage::truncate);
+    } else {
+      FREE_RANGES.computeIfAbsent(stored.size, size -> new LongArrayList()).add(stored.position);
+    }
+  }
+
+  /**
+   * Handle to data stored by this class.
+   */
+  static final class Stored {
+    private final ByteBuffer buffer;
+    private final long position;
+    private final int size;
+    /**
+     * Spilled data that has not been written yet.
+     */
+    private volatile ByteBuffer pending;
+    private volatile boolean failed;
+
+    private Stored(final ByteBuffer buffer, long position, int size) {
+      this.buffer = buffer;
+      this.position = position;
+      this.size = size;
+    }
+
+    /**
+     * Whether the data was spilled to disk.
+     */
+    boolean isSpilled() {
+      return this.buffer == null;
+    }
+
+    /**
+     * Whether the data could not be written to the spill file. It is lost in that case.
+     */
+    boolean isFailed() {
+      return this.failed;
+    }
+
+    /**
+     * The number of bytes of data.
+     */
+    int getSize() {
+      return this.size;
+    }
+
+    /**
+     * Returns a buffer holding the data, to be read through absolute methods.
+     * Spilled data is read from the spill file on each call.
+     *
+     * @throws UncheckedIOException If the data could not be written or read back.
+     */
+    ByteBuffer read() {
+      if (this.buffer != null) {
+        return this.buffer;
+      }
+      ByteBuffer pending = this.pending;
+      if (pending != null) {
+        return pending;
+      }
+      if (this.failed) {
+        throw new UncheckedIOException(new IOException("History data could not be written to the spill file"));
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(this.size);
+      try {
+        while (buffer.hasRemaining()) {
+          if (spillChannel.read(buffer, this.position + buffer.position()) < 0) {
+            throw new EOFException("History spill file is truncated");
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return buffer;
+    }
+  }
+
+  private SnapshotStorage() {
+  }
+}
@@ -0,0 +1,144 @@
+package net.darmo_creations.build_utils.commands;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.darmo_creations.build_utils.bulk_edit.ClientSyncQueue;
+import net.darmo_creations.build_utils.bulk_edit.EditHistory;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.LatencyHistogram;
+import net.darmo_creations.build_utils.metrics.Operation;
+import net.minecraft.command.argument.EntityArgumentType;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.TranslatableText;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The /buildutils command.
+ * <p>
+ * Usage:
+ * <li>/buildutils undo: reverts the last bulk edit of the player.
+ * <li>/buildutils redo: re-applies the last reverted bulk edit of the player.
+ * <li>/buildutils stats: shows the metrics collected since the server started.
+ * <li>/buildutils sync budget &lt;packets&gt; [targets]: sets the number of bulk edit sync packets sent per tick.
+ * <li>/buildutils sync priority &lt;nearest|oldest&gt; [targets]: sets the order in which edited chunks are synced.
+ * <li>/buildutils sync reset [targets]: restores the default sync settings.
+ */
+public final class BuildUtilsCommand {
+  /**
+   * Registers this command into the given dispatcher.
+   */
+  public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+    LiteralArgumentBuilder<ServerCommandSource> priority = CommandManager.literal("priority");
+    for (ClientSyncQueue.Priority value : ClientSyncQueue.Priority.values()) {
+      priority.then(CommandManager.literal(value.getName())
+          .executes(context -> setSyncPriority(context.getSource(), List.of(context.getSource().getPlayer()), value))
+          .then(CommandManager.argument("targets", EntityArgumentType.players())
+              .executes(context -> setSyncPriority(context.getSource(), EntityArgumentType.getPlayers(context, "targets"), value))));
+    }
+
+    dispatcher.register(CommandManager.literal("buildutils")
+        .requires(source -> source.hasPermissionLevel(2))
+        .then(CommandManager.literal("undo")
+            .executes(context -> undo(context.getSource())))
+        .then(CommandManager.literal("redo")
+            .executes(context -> redo(context.getSource())))
+        .then(CommandManager.literal("stats")
+            .executes(context -> stats(context.getSource())))
+        .then(CommandManager.literal("sync")
+            .then(CommandManager.literal("budget")
+                .then(CommandManager.argument("packets", IntegerArgumentType.integer(1))
+                    .executes(context -> setSyncBudget(context.getSource(), List.of(context.getSource().getPlayer()),
+                        IntegerArgumentType.getInteger(context, "packets")))
+                    .then(CommandManager.argument("targets", EntityArgumentType.players())
+                        .executes(context -> setSyncBudget(context.getSource(), EntityArgumentType.getPlayers(context, "targets"),
+                            IntegerArgumentType.getInteger(context, "packets"))))))
+            .then(priority)
+            .then(CommandManager.literal("reset")
+                .executes(context -> resetSync(context.getSource(), List.of(context.getSource().getPlayer())))
+                .then(CommandManager.argument("targets", EntityArgumentType.players())
+                    .executes(context -> resetSync(context.getSource(), EntityArgumentType.getPlayers(context, "targets"))))))
+    );
+  }
+
+  private static int undo(ServerCommandSource source) throws CommandSyntaxException {
+    ServerPlayerEntity player = source.getPlayer();
+    if (!EditHistory.undo(source.getServer(), player.getUuid())) {
+      source.sendError(new TranslatableText("commands.build_utils.undo.nothing"));
+      return 0;
+    }
+    return 1;
+  }
+
+  private static int redo(ServerCommandSource source) throws CommandSyntaxException {
+    ServerPlayerEntity player = source.getPlayer();
+    if (!EditHistory.redo(source.getServer(), player.getUuid())) {
+      source.sendError(new TranslatableText("commands.build_utils.redo.nothing"));
+      return 0;
+    }
+    return 1;
+  }
+
+  private static int stats(ServerCommandSource source) {
+    source.sendFeedback(new TranslatableText("commands.build_utils.stats.queue_depth", BuildMetrics.getQueueDepth()), false);
+    int operationsNb = 0;
+    for (Operation operation : Operation.values()) {
+      BuildMetrics.OperationStats stats = BuildMetrics.getStats(operation);
+      LatencyHistogram latency = stats.getLatency();
+      if (latency.getCount() != 0) {
+        source.sendFeedback(new TranslatableText("commands.build_utils.stats.operation",
+            operation.getName(),
+            latency.getCount(),
+            BuildMetrics.formatMillis(latency.getMeanNanos()),
+            BuildMetrics.formatMillis(latency.getPercentileNanos(0.99)),
+            stats.getBlocks(),
+            "%.1f".formatted(stats.getBlocksPerSecond())
+        ), false);
+        operationsNb++;
+      }
+    }
+    if (operationsNb == 0) {
+      source.sendFeedback(new TranslatableText("commands.build_utils.stats.no_operations"), false);
+    }
+    BuildMetrics.getPacketStats().forEach((id, stats) -> source.sendFeedback(new TranslatableText(
+        "commands.build_utils.stats.packet", id.toString(), stats.getCount(), stats.getBytes(),
+        "%.1f".formatted((double) stats.getBytes() / stats.getCount())
+    ), false));
+    return operationsNb;
+  }
+
+  private static int setSyncBudget(ServerCommandSource source, final Collection<ServerPlayerEntity> players, int packetsPerTick) {
+    for (ServerPlayerEntity player : players) {
+      ClientSyncQueue.setPacketsPerTick(player.getUuid(), packetsPerTick);
+      source.sendFeedback(new TranslatableText("commands.build_utils.sync.budget.success",
+          player.getDisplayName(), packetsPerTick), true);
+    }
+    return players.size();
+  }
+
+  private static int setSyncPriority(ServerCommandSource source, final Collection<ServerPlayerEntity> players,
+                                     final ClientSyncQueue.Priority priority) {
+    for (ServerPlayerEntity player : players) {
+      ClientSyncQueue.setPriority(player.getUuid(), priority);
+      source.sendFeedback(new TranslatableText("commands.build_utils.sync.priority.success",
+          player.getDisplayName(), priority.getName()), true);
+    }
+    return players.size();
+  }
+
+  private static int resetSync(ServerCommandSource source, final Collection<ServerPlayerEntity> players) {
+    for (ServerPlayerEntity player : players) {
+      ClientSyncQueue.resetSettings(player.getUuid());
+      source.sendFeedback(new TranslatableText("commands.build_utils.sync.reset.success", player.getDisplayName()), true);
+    }
+    return players.size();
+  }
+
+  private BuildUtilsCommand() {
+  }
+}
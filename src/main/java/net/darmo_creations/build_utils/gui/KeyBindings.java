@@ -1,7 +1,10 @@
 package net.darmo_creations.build_utils.gui;
 
+import net.darmo_creations.build_utils.items.ModItems;
 import net.darmo_creations.build_utils.network.C2SPacketFactory;
+import net.darmo_creations.build_utils.network.packets.CycleWandModePacket;
 import net.darmo_creations.build_utils.network.packets.ToggleNightVisionPacket;
+import net.darmo_creations.build_utils.network.packets.ToggleWandRawModePacket;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
 import net.minecraft.client.option.KeyBinding;
@@ -18,6 +21,18 @@ public class KeyBindings {
       GLFW.GLFW_KEY_N,
       "category.build_utils"
   ));
+  public static final KeyBinding CYCLE_WAND_MODE_KEY = KeyBindingHelper.registerKeyBinding(new KeyBinding(
+      "key.build_utils.cycle_wand_mode",
+      InputUtil.Type.KEYSYM,
+      GLFW.GLFW_KEY_M,
+      "category.build_utils"
+  ));
+  public static final KeyBinding TOGGLE_WAND_RAW_MODE_KEY = KeyBindingHelper.registerKeyBinding(new KeyBinding(
+      "key.build_utils.toggle_wand_raw_mode",
+      InputUtil.Type.KEYSYM,
+      GLFW.GLFW_KEY_COMMA,
+      "category.build_utils"
+  ));
 
   /**
    * Registers all key bindings.
@@ -30,6 +45,21 @@ public class KeyBindings {
           C2SPacketFactory.sendPacket(new ToggleNightVisionPacket());
         }
       }
+      while (CYCLE_WAND_MODE_KEY.wasPressed()) {
+        if (client.player != null && client.player.isCreativeLevelTwoOp()
+            && (client.player.getMainHandStack().isOf(ModItems.CREATIVE_WAND)
+            || client.player.getOffHandStack().isOf(ModItems.CREATIVE_WAND))) {
+          C2SPacketFactory.sendPacket(new CycleWandModePacket());
+        }
+      }
+      // Permission level required by raw mode is checked by the server
+      while (TOGGLE_WAND_RAW_MODE_KEY.wasPressed()) {
+        if (client.player != null && client.player.isCreativeLevelTwoOp()
+            && (client.player.getMainHandStack().isOf(ModItems.CREATIVE_WAND)
+            || client.player.getOffHandStack().isOf(ModItems.CREATIVE_WAND))) {
+          C2SPacketFactory.sendPacket(new ToggleWandRawModePacket());
+        }
+      }
     });
   }
 }
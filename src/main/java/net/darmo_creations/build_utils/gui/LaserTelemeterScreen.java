@@ -2,6 +2,7 @@ package net.darmo_creations.build_utils.gui;
 
 import net.darmo_creations.build_utils.Utils;
 import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
+import net.darmo_creations.build_utils.block_entities.renderers.PastePreviewRenderer;
 import net.darmo_creations.build_utils.network.C2SPacketFactory;
 import net.darmo_creations.build_utils.network.packets.LaserTelemeterPacket;
 import net.minecraft.block.BlockState;
@@ -37,12 +38,14 @@ public class LaserTelemeterScreen extends Screen {
   private TextFieldWidget yOffsetTextField;
   private TextFieldWidget zOffsetTextField;
   private TextFieldWidget fillerBlockStateTextField;
+  private TextFieldWidget replacedBlockStateTextField;
   private TextFieldWidget fileNameTextField;
   private ButtonWidget modeButton;
   private ButtonWidget actionButton;
   private ButtonWidget previewPasteButton;
   private ButtonWidget rotationButton;
   private ButtonWidget mirrorButton;
+  private ButtonWidget rawButton;
 
   // Data
   private final LaserTelemeterBlockEntity blockEntity;
@@ -50,9 +53,11 @@ public class LaserTelemeterScreen extends Screen {
   private final Vec3i offset;
   private LaserTelemeterBlockEntity.Mode mode;
   private final BlockState fillerBlockState;
+  private final BlockState replacedBlockState;
   private final String structureName;
   private BlockRotation rotation;
   private BlockMirror mirror;
+  private boolean raw;
 
   /**
    * Creates a GUI for the given tile entity.
@@ -66,9 +71,11 @@ public class LaserTelemeterScreen extends Screen {
     this.offset = blockEntity.getOffset();
     this.mode = blockEntity.getMode();
     this.fillerBlockState = blockEntity.getFillerBlockState();
+    this.replacedBlockState = blockEntity.getReplacedBlockState();
     this.structureName = blockEntity.getStructureName();
     this.rotation = blockEntity.getRotation();
     this.mirror = blockEntity.getMirror();
+    this.raw = blockEntity.isRaw();
   }
 
   @Override
@@ -123,6 +130,17 @@ public class LaserTelemeterScreen extends Screen {
                 new TranslatableText("gui.build_utils.laser_telemeter.mirror_button.%s.tooltip".formatted(this.mirror.name().toLowerCase())), mouseX, mouseY)
     ));
 
+    // Moved next to the action button in fill modes by updateFields()
+    this.rawButton = this.addDrawableChild(new ButtonWidget(
+        middle + BUTTON_WIDTH / 4 + 2 * MARGIN, y,
+        BUTTON_WIDTH / 2, BUTTON_HEIGHT,
+        new LiteralText(""), // Set by setMode() method
+        b -> this.onToggleRaw(),
+        (button, matrices, mouseX, mouseY) ->
+            LaserTelemeterScreen.this.renderTooltip(matrices,
+                new TranslatableText("gui.build_utils.laser_telemeter.raw_button.tooltip"), mouseX, mouseY)
+    ));
+
     y += 2 * BUTTON_HEIGHT;
 
     this.fillerBlockStateTextField = this.addDrawableChild(
@@ -132,6 +150,14 @@ public class LaserTelemeterScreen extends Screen {
       this.fillerBlockStateTextField.setText(Utils.blockStateToString(this.fillerBlockState));
     }
 
+    // Shares its row with the filler field, which is shrunk in FILL_REPLACE mode by updateFields()
+    this.replacedBlockStateTextField = this.addDrawableChild(
+        new TextFieldWidget(this.client.textRenderer, middle - (3 * btnW) / 2, y, (3 * btnW) / 2 - MARGIN, BUTTON_HEIGHT, null));
+    this.replacedBlockStateTextField.setMaxLength(400);
+    if (this.replacedBlockState != null) {
+      this.replacedBlockStateTextField.setText(Utils.blockStateToString(this.replacedBlockState));
+    }
+
     this.fileNameTextField = this.addDrawableChild(
         new TextFieldWidget(this.client.textRenderer, middle - (3 * btnW) / 2, y, 3 * btnW, BUTTON_HEIGHT, null));
     this.fileNameTextField.setMaxLength(50);
@@ -183,17 +209,23 @@ public class LaserTelemeterScreen extends Screen {
 
   private void onCycleRotationMode() {
     this.rotation = BlockRotation.values()[(this.rotation.ordinal() + 1) % BlockRotation.values().length];
+    PastePreviewRenderer.setTransform(this.blockEntity.getPos(), this.mirror, this.rotation);
     this.updateFields();
   }
 
   private void onCycleMirrorMode() {
     this.mirror = BlockMirror.values()[(this.mirror.ordinal() + 1) % BlockMirror.values().length];
+    PastePreviewRenderer.setTransform(this.blockEntity.getPos(), this.mirror, this.rotation);
+    this.updateFields();
+  }
+
+  private void onToggleRaw() {
+    this.raw = !this.raw;
     this.updateFields();
   }
 
   private void onCycleMode() {
-    LaserTelemeterBlockEntity.Mode[] values = LaserTelemeterBlockEntity.Mode.values();
-    this.mode = values[(this.mode.ordinal() + 1) % values.length];
+    this.mode = this.mode.next();
     this.updateFields();
   }
 
@@ -201,7 +233,16 @@ public class LaserTelemeterScreen extends Screen {
     this.lengthXTextField.setVisible(this.mode != LaserTelemeterBlockEntity.Mode.PASTE);
     this.lengthYTextField.setVisible(this.mode != LaserTelemeterBlockEntity.Mode.PASTE);
     this.lengthZTextField.setVisible(this.mode != LaserTelemeterBlockEntity.Mode.PASTE);
-    this.fillerBlockStateTextField.setVisible(this.mode == LaserTelemeterBlockEntity.Mode.FILL);
+    this.fillerBlockStateTextField.setVisible(this.mode.getFillMode() != null);
+    this.replacedBlockStateTextField.setVisible(this.mode == LaserTelemeterBlockEntity.Mode.FILL_REPLACE);
+    int fieldsWidth = this.fileNameTextField.getWidth();
+    if (this.mode == LaserTelemeterBlockEntity.Mode.FILL_REPLACE) {
+      this.fillerBlockStateTextField.x = this.fileNameTextField.x + fieldsWidth / 2 + MARGIN;
+      this.fillerBlockStateTextField.setWidth(fieldsWidth - fieldsWidth / 2 - MARGIN);
+    } else {
+      this.fillerBlockStateTextField.x = this.fileNameTextField.x;
+      this.fillerBlockStateTextField.setWidth(fieldsWidth);
+    }
     this.fileNameTextField.setVisible(this.mode == LaserTelemeterBlockEntity.Mode.COPY || this.mode == LaserTelemeterBlockEntity.Mode.PASTE);
     this.modeButton.setMessage(new TranslatableText("gui.build_utils.laser_telemeter.mode_button.%s.label".formatted(this.mode.name().toLowerCase())));
     this.actionButton.setMessage(new TranslatableText("gui.build_utils.laser_telemeter.action_button.%s.label".formatted(this.mode.name().toLowerCase())));
@@ -211,6 +252,15 @@ public class LaserTelemeterScreen extends Screen {
     this.rotationButton.visible = this.mode == LaserTelemeterBlockEntity.Mode.PASTE;
     this.mirrorButton.setMessage(this.mirror.getName());
     this.mirrorButton.visible = this.mode == LaserTelemeterBlockEntity.Mode.PASTE;
+    this.rawButton.setMessage(new TranslatableText("gui.build_utils.laser_telemeter.raw_button.%s.label".formatted(this.raw ? "on" : "off")));
+    this.rawButton.visible = this.mode.getFillMode() != null || this.mode == LaserTelemeterBlockEntity.Mode.PASTE;
+    if (this.mode == LaserTelemeterBlockEntity.Mode.PASTE) {
+      this.rawButton.x = this.mirrorButton.x + this.mirrorButton.getWidth() + MARGIN;
+      this.rawButton.y = this.mirrorButton.y;
+    } else {
+      this.rawButton.x = this.previewPasteButton.x;
+      this.rawButton.y = this.previewPasteButton.y;
+    }
   }
 
   /**
@@ -231,15 +281,25 @@ public class LaserTelemeterScreen extends Screen {
         fillerBlockState = this.fillerBlockState;
       }
     }
+    BlockState replacedBlockState = Utils.stringToBlockState(this.replacedBlockStateTextField.getText());
+    if (replacedBlockState == null) {
+      if (this.replacedBlockState == null) {
+        replacedBlockState = Blocks.AIR.getDefaultState();
+      } else {
+        replacedBlockState = this.replacedBlockState;
+      }
+    }
     this.blockEntity.setSize(size);
     this.blockEntity.setOffset(offset);
     this.blockEntity.setMode(this.mode);
     this.blockEntity.setFillerBlockState(fillerBlockState);
+    this.blockEntity.setReplacedBlockState(replacedBlockState);
     this.blockEntity.setStructureName(structureName.equals("") ? null : structureName);
     this.blockEntity.setRotation(this.rotation);
     this.blockEntity.setMirror(this.mirror);
+    this.blockEntity.setRaw(this.raw);
     C2SPacketFactory.sendPacket(
-        new LaserTelemeterPacket(this.blockEntity.getPos(), offset, size, this.mode, fillerBlockState, structureName, this.rotation, this.mirror, performAction, previewPaste));
+        new LaserTelemeterPacket(this.blockEntity.getPos(), offset, size, this.mode, fillerBlockState, replacedBlockState, structureName, this.rotation, this.mirror, this.raw, performAction, previewPaste));
     //noinspection ConstantConditions
     this.client.setScreen(null);
   }
@@ -260,6 +320,13 @@ public class LaserTelemeterScreen extends Screen {
     this.client.setScreen(null);
   }
 
+  @Override
+  public void removed() {
+    // Previews follow the telemeter again, whether changes were applied or discarded
+    PastePreviewRenderer.setTransform(this.blockEntity.getPos(), null, null);
+    super.removed();
+  }
+
   @Override
   public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
     if (keyCode == GLFW.GLFW_KEY_ENTER || keyCode == GLFW.GLFW_KEY_KP_ENTER) {
@@ -297,9 +364,13 @@ public class LaserTelemeterScreen extends Screen {
           this.lengthZTextField.x, this.lengthZTextField.y + BUTTON_HEIGHT + fontHeight / 2, 0xa0a0a0);
     }
 
-    if (this.mode == LaserTelemeterBlockEntity.Mode.FILL) {
+    if (this.mode.getFillMode() != null) {
       drawTextWithShadow(matrices, font, new TranslatableText("gui.build_utils.laser_telemeter.filler_block_state.label"),
           this.fillerBlockStateTextField.x, this.fillerBlockStateTextField.y + BUTTON_HEIGHT + fontHeight / 2, 0xa0a0a0);
+      if (this.mode == LaserTelemeterBlockEntity.Mode.FILL_REPLACE) {
+        drawTextWithShadow(matrices, font, new TranslatableText("gui.build_utils.laser_telemeter.replaced_block_state.label"),
+            this.replacedBlockStateTextField.x, this.replacedBlockStateTextField.y + BUTTON_HEIGHT + fontHeight / 2, 0xa0a0a0);
+      }
     } else if (this.mode == LaserTelemeterBlockEntity.Mode.COPY || this.mode == LaserTelemeterBlockEntity.Mode.PASTE) {
       drawTextWithShadow(matrices, font, new TranslatableText("gui.build_utils.laser_telemeter.file_name.label"),
           this.fileNameTextField.x, this.fileNameTextField.y + BUTTON_HEIGHT + fontHeight / 2, 0xa0a0a0);
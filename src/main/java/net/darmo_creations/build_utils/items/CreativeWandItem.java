@@ -1,6 +1,12 @@
 package net.darmo_creations.build_utils.items;
 
+import net.darmo_creations.build_utils.ModGameRules;
 import net.darmo_creations.build_utils.Utils;
+import net.darmo_creations.build_utils.bulk_edit.EditJobScheduler;
+import net.darmo_creations.build_utils.bulk_edit.FillJob;
+import net.darmo_creations.build_utils.bulk_edit.FillMode;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.Operation;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.client.item.TooltipContext;
@@ -8,7 +14,9 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.ItemUsageContext;
+import net.minecraft.nbt.NbtByte;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtHelper;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Style;
@@ -18,10 +26,13 @@ import net.minecraft.util.ActionResult;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Hand;
 import net.minecraft.util.TypedActionResult;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Item used to fill areas with blocks.
@@ -30,11 +41,20 @@ import java.util.List;
  * <li>Right-click on block to select the first position.
  * <li>Right-click on another block to select the second position.
  * <li>Sneak-right-click on a block to select it as filler. If no block is targetted, air will be selected.
+ * <li>Press the cycle mode key to switch to the next {@link FillMode}.
+ * <li>Press the raw mode key to toggle raw mode: blocks are written without neighbor/shape updates
+ * nor block callbacks. Raw mode requires the permission level set by {@link ModGameRules#RAW_MODE_PERMISSION_LEVEL}.
+ * <p>
+ * In replace mode, selecting a filler moves the previously selected one to the replaced block state slot:
+ * the block to replace has to be selected first, then its replacement.
  */
 public class CreativeWandItem extends Item {
-  private static final String POS1_TAG_KEY = "Pos1";
-  private static final String POS2_TAG_KEY = "Pos2";
+  public static final String POS1_TAG_KEY = "Pos1";
+  public static final String POS2_TAG_KEY = "Pos2";
   private static final String STATE_TAG_KEY = "BlockState";
+  private static final String MODE_TAG_KEY = "Mode";
+  private static final String REPLACED_STATE_TAG_KEY = "ReplacedState";
+  private static final String RAW_TAG_KEY = "Raw";
 
   public CreativeWandItem(Settings settings) {
     super(settings.maxCount(1));
@@ -51,10 +71,11 @@ public class CreativeWandItem extends Item {
       ).setStyle(Style.EMPTY.withColor(Formatting.RED)), true);
       result = ActionResult.FAIL;
     } else {
-      WandData data = WandData.fromTag(heldItem.getNbt());
+      WandData data = WandData.of(heldItem);
       if (player.isSneaking()) {
-        setBlockState(Blocks.AIR.getDefaultState(), data, world, player);
-        heldItem.setNbt(data.toTag());
+        WandData newData = data.copy();
+        setBlockState(Blocks.AIR.getDefaultState(), newData, world, player);
+        newData.writeTo(heldItem);
         result = ActionResult.SUCCESS;
       } else if (data.isReady()) {
         if (world instanceof ServerWorld w) {
@@ -73,17 +94,34 @@ public class CreativeWandItem extends Item {
   }
 
   /**
-   * Fills the area selected by the given wand data.
+   * Queues a job that fills the area selected by the given wand data.
+   * The player will be notified once the job is done.
    *
    * @param player The player holding the item.
    * @param data   Wand data.
    * @param world  The world to edit.
    */
   private void fill(PlayerEntity player, WandData data, ServerWorld world) {
-    int blocksNb = Utils.fill(data.firstPosition, data.secondPosition, data.blockState, world);
-    Utils.sendMessage(world, player,
-        new TranslatableText("item.build_utils.creative_wand.feedback.total_filled_volume", blocksNb),
-        false);
+    if (data.raw && !Utils.canUseRawMode(player)) {
+      Utils.sendMessage(world, player, new TranslatableText(
+          "item.build_utils.creative_wand.action_bar.error.raw_mode_permissions"
+      ).setStyle(Style.EMPTY.withColor(Formatting.RED)), true);
+      return;
+    }
+    long start = Util.getMeasuringTimeNano();
+    EditJobScheduler.submit(world.getServer(), new FillJob(
+        world,
+        data.firstPosition,
+        data.secondPosition,
+        data.blockState,
+        data.mode,
+        data.replacedState,
+        data.raw,
+        player.getUuid(),
+        "item.build_utils.creative_wand.feedback.total_filled_volume",
+        false
+    ));
+    BuildMetrics.record(Operation.WAND_FILL, Util.getMeasuringTimeNano() - start);
   }
 
   @Override
@@ -98,7 +136,7 @@ public class CreativeWandItem extends Item {
     }
     BlockPos pos = context.getBlockPos();
     ItemStack heldItem = context.getStack();
-    WandData data = WandData.fromTag(heldItem.getNbt());
+    WandData data = WandData.of(heldItem).copy();
 
     if (player.isSneaking()) {
       setBlockState(world.getBlockState(pos), data, world, player);
@@ -119,13 +157,13 @@ public class CreativeWandItem extends Item {
       }
     }
 
-    heldItem.setNbt(data.toTag());
+    data.writeTo(heldItem);
     return ActionResult.SUCCESS;
   }
 
   @Override
   public void appendTooltip(ItemStack stack, World world, List<Text> tooltip, TooltipContext context) {
-    WandData data = WandData.fromTag(stack.getNbt());
+    WandData data = WandData.of(stack);
     tooltip.add(new TranslatableText(
         "item.build_utils.creative_wand.tooltip.pos1",
         data.firstPosition != null ? Utils.blockPosToString(data.firstPosition) : "-"
@@ -138,6 +176,64 @@ public class CreativeWandItem extends Item {
         "item.build_utils.creative_wand.tooltip.blockstate",
         data.blockState != null ? Utils.blockStateToString(data.blockState) : "-"
     ).setStyle(Style.EMPTY.withColor(Formatting.BLUE)));
+    tooltip.add(new TranslatableText(
+        "item.build_utils.creative_wand.tooltip.mode",
+        new TranslatableText("item.build_utils.creative_wand.mode." + data.mode.getName())
+    ).setStyle(Style.EMPTY.withColor(Formatting.GOLD)));
+    if (data.mode == FillMode.REPLACE) {
+      tooltip.add(new TranslatableText(
+          "item.build_utils.creative_wand.tooltip.replaced_blockstate",
+          data.replacedState != null ? Utils.blockStateToString(data.replacedState) : "-"
+      ).setStyle(Style.EMPTY.withColor(Formatting.DARK_BLUE)));
+    }
+    if (data.raw) {
+      tooltip.add(new TranslatableText("item.build_utils.creative_wand.tooltip.raw")
+          .setStyle(Style.EMPTY.withColor(Formatting.RED)));
+    }
+  }
+
+  /**
+   * Switches the given wand to its next fill mode then sends a confirmation message to the player.
+   *
+   * @param stack  The wand.
+   * @param player The player holding the wand.
+   */
+  public static void cycleMode(ItemStack stack, PlayerEntity player) {
+    if (!player.isCreativeLevelTwoOp()) {
+      Utils.sendMessage(player.getWorld(), player, new TranslatableText(
+          "item.build_utils.creative_wand.action_bar.error.permissions"
+      ).setStyle(Style.EMPTY.withColor(Formatting.RED)), true);
+      return;
+    }
+    WandData data = WandData.of(stack).copy();
+    data.mode = data.mode.next();
+    data.writeTo(stack);
+    Utils.sendMessage(player.getWorld(), player, new TranslatableText(
+        "item.build_utils.creative_wand.action_bar.mode_selected",
+        new TranslatableText("item.build_utils.creative_wand.mode." + data.mode.getName())
+    ), true);
+  }
+
+  /**
+   * Toggles the raw mode of the given wand then sends a confirmation message to the player.
+   *
+   * @param stack  The wand.
+   * @param player The player holding the wand.
+   */
+  public static void toggleRawMode(ItemStack stack, PlayerEntity player) {
+    WandData data = WandData.of(stack).copy();
+    // Always allow players to leave raw mode
+    if (!data.raw && !Utils.canUseRawMode(player)) {
+      Utils.sendMessage(player.getWorld(), player, new TranslatableText(
+          "item.build_utils.creative_wand.action_bar.error.raw_mode_permissions"
+      ).setStyle(Style.EMPTY.withColor(Formatting.RED)), true);
+      return;
+    }
+    data.raw = !data.raw;
+    data.writeTo(stack);
+    Utils.sendMessage(player.getWorld(), player, new TranslatableText(
+        "item.build_utils.creative_wand.action_bar.raw_mode_" + (data.raw ? "enabled" : "disabled")
+    ), true);
   }
 
   /**
@@ -149,6 +245,9 @@ public class CreativeWandItem extends Item {
    * @param player     Player to send chat message to.
    */
   private static void setBlockState(final BlockState blockState, WandData data, final World world, PlayerEntity player) {
+    if (data.mode == FillMode.REPLACE) {
+      data.replacedState = data.blockState;
+    }
     data.blockState = blockState;
     Utils.sendMessage(world, player, new TranslatableText(
         "item.build_utils.creative_wand.action_bar.blockstate_selected",
@@ -158,73 +257,123 @@ public class CreativeWandItem extends Item {
 
   /**
    * Class holding data for the wand that can serialize/deserialize NBT tags.
+   * <p>
+   * Decoded data is cached per NBT compound, so that using a wand or hovering it in an inventory
+   * does not parse its block states again. Shared instances returned by {@link #of(ItemStack)} must not be modified.
    */
   private static class WandData {
+    private static final WandData EMPTY = new WandData();
+    private static final NbtDataCache<WandData> CACHE = new NbtDataCache<>(WandData::fromTag,
+        POS1_TAG_KEY, POS2_TAG_KEY, STATE_TAG_KEY, MODE_TAG_KEY, REPLACED_STATE_TAG_KEY, RAW_TAG_KEY);
+
+    /**
+     * Returns the data of the given wand. Its NBT data is only decoded again once it changed.
+     *
+     * @param stack The wand.
+     * @return The shared WandData object. Use {@link #copy()} to get a modifiable one.
+     */
+    static WandData of(final ItemStack stack) {
+      NbtCompound data = stack.getNbt();
+      return data != null ? CACHE.get(data) : EMPTY;
+    }
+
     /**
      * Create a data instance from the given NBT tags.
-     * If tag is null, an empty instance is returned.
      *
      * @param data NBT tag to deserialize.
      * @return The WandData object.
      */
-    static WandData fromTag(NbtCompound data) {
-      if (data != null) {
-        NbtCompound tag1 = data.getCompound(POS1_TAG_KEY);
-        NbtCompound tag2 = data.getCompound(POS2_TAG_KEY);
-        NbtCompound tagState = data.getCompound(STATE_TAG_KEY);
-        BlockPos pos1 = !tag1.isEmpty() ? NbtHelper.toBlockPos(tag1) : null;
-        BlockPos pos2 = !tag2.isEmpty() ? NbtHelper.toBlockPos(tag2) : null;
-        BlockState state = !tagState.isEmpty() ? NbtHelper.toBlockState(tagState) : null;
-        return new WandData(pos1, pos2, state);
-      } else {
-        return new WandData();
-      }
+    private static WandData fromTag(NbtCompound data) {
+      NbtCompound tag1 = data.getCompound(POS1_TAG_KEY);
+      NbtCompound tag2 = data.getCompound(POS2_TAG_KEY);
+      NbtCompound tagState = data.getCompound(STATE_TAG_KEY);
+      BlockPos pos1 = !tag1.isEmpty() ? NbtHelper.toBlockPos(tag1) : null;
+      BlockPos pos2 = !tag2.isEmpty() ? NbtHelper.toBlockPos(tag2) : null;
+      BlockState state = !tagState.isEmpty() ? NbtHelper.toBlockState(tagState) : null;
+      NbtCompound tagReplacedState = data.getCompound(REPLACED_STATE_TAG_KEY);
+      BlockState replacedState = !tagReplacedState.isEmpty() ? NbtHelper.toBlockState(tagReplacedState) : null;
+      return new WandData(pos1, pos2, state, FillMode.fromName(data.getString(MODE_TAG_KEY)), replacedState,
+          data.getBoolean(RAW_TAG_KEY));
     }
 
     BlockPos firstPosition;
     BlockPos secondPosition;
     BlockState blockState;
+    FillMode mode;
+    BlockState replacedState;
+    boolean raw;
 
     /**
      * Create an empty object.
      */
     WandData() {
-      this(null, null, null);
+      this(null, null, null, FillMode.SOLID, null, false);
     }
 
     /**
-     * Create an object for the given positions and block state.
+     * Create an object for the given positions, block states and modes.
      */
-    WandData(BlockPos firstPosition, BlockPos secondPosition, BlockState blockState) {
+    WandData(BlockPos firstPosition, BlockPos secondPosition, BlockState blockState, FillMode mode, BlockState replacedState, boolean raw) {
       this.firstPosition = firstPosition;
       this.secondPosition = secondPosition;
       this.blockState = blockState;
+      this.mode = mode;
+      this.replacedState = replacedState;
+      this.raw = raw;
     }
 
     /**
-     * Data object is considered ready when both positions and blockstate are set.
+     * Returns a modifiable copy of this object.
+     */
+    WandData copy() {
+      return new WandData(this.firstPosition, this.secondPosition, this.blockState, this.mode, this.replacedState, this.raw);
+    }
+
+    /**
+     * Data object is considered ready when both positions and blockstate are set,
+     * and the replaced blockstate too in replace mode.
      */
     boolean isReady() {
-      return this.firstPosition != null && this.secondPosition != null && this.blockState != null;
+      return this.firstPosition != null && this.secondPosition != null && this.blockState != null
+          && (this.mode != FillMode.REPLACE || this.replacedState != null);
     }
 
     /**
-     * Convert this data object to NBT tags.
+     * Write this data object into the NBT tags of the given wand.
+     * Only the tags whose value changed are replaced, other ones are left untouched.
      */
-    NbtCompound toTag() {
-      NbtCompound root = new NbtCompound();
+    void writeTo(ItemStack stack) {
+      WandData current = of(stack);
+      NbtCompound root = stack.getOrCreateNbt();
 
-      if (this.firstPosition != null) {
-        root.put(POS1_TAG_KEY, NbtHelper.fromBlockPos(this.firstPosition));
+      if (!Objects.equals(this.firstPosition, current.firstPosition)) {
+        put(root, POS1_TAG_KEY, this.firstPosition != null ? NbtHelper.fromBlockPos(this.firstPosition) : null);
+      }
+      if (!Objects.equals(this.secondPosition, current.secondPosition)) {
+        put(root, POS2_TAG_KEY, this.secondPosition != null ? NbtHelper.fromBlockPos(this.secondPosition) : null);
+      }
+      if (this.blockState != current.blockState) {
+        put(root, STATE_TAG_KEY, this.blockState != null ? NbtHelper.fromBlockState(this.blockState) : null);
       }
-      if (this.secondPosition != null) {
-        root.put(POS2_TAG_KEY, NbtHelper.fromBlockPos(this.secondPosition));
+      if (this.mode != current.mode || !root.contains(MODE_TAG_KEY)) {
+        root.putString(MODE_TAG_KEY, this.mode.getName());
       }
-      if (this.blockState != null) {
-        root.put(STATE_TAG_KEY, NbtHelper.fromBlockState(this.blockState));
+      if (this.replacedState != current.replacedState) {
+        put(root, REPLACED_STATE_TAG_KEY, this.replacedState != null ? NbtHelper.fromBlockState(this.replacedState) : null);
       }
+      if (this.raw != current.raw) {
+        put(root, RAW_TAG_KEY, this.raw ? NbtByte.ONE : null);
+      }
+
+      CACHE.put(root, this.copy());
+    }
 
-      return root;
+    private static void put(NbtCompound root, final String key, @Nullable NbtElement element) {
+      if (element != null) {
+        root.put(key, element);
+      } else {
+        root.remove(key);
+      }
     }
   }
 }
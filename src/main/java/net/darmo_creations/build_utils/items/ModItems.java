@@ -1,6 +1,7 @@
 package net.darmo_creations.build_utils.items;
 
 import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.items.renderers.SelectionRenderer;
 import net.fabricmc.fabric.api.item.v1.FabricItemSettings;
 import net.minecraft.item.Item;
 import net.minecraft.util.Identifier;
@@ -35,6 +36,14 @@ public final class ModItems {
   public static void init() {
   }
 
+  /**
+   * Registers item renderers.
+   * Must be called on client only.
+   */
+  public static void registerRenderers() {
+    SelectionRenderer.init();
+  }
+
   private ModItems() {
   }
 }
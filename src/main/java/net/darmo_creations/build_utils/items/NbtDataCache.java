@@ -0,0 +1,72 @@
+package net.darmo_creations.build_utils.items;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+
+import java.util.function.Function;
+
+/**
+ * Caches objects decoded from the NBT data of item stacks, so that data is only decoded again once it changed.
+ * <p>
+ * Entries are keyed by the identity of the stacks’ compounds, which are only weakly referenced. As compounds
+ * may be modified in place, each entry also holds the elements it was decoded from, and is only used while
+ * the compound still holds the very same elements for all keys. Elements are never modified in place,
+ * only replaced. Checking an entry thus costs a few map lookups and no allocation.
+ * <p>
+ * Caches are thread-safe, as items are used by both the client and the integrated server.
+ *
+ * @param <T> Type of decoded objects. They are shared and must not be modified.
+ */
+final class NbtDataCache<T> {
+  private final Function<NbtCompound, T> decoder;
+  private final String[] keys;
+  private final Cache<NbtCompound, Entry<T>> entries = CacheBuilder.newBuilder().weakKeys().build();
+
+  /**
+   * Creates a cache.
+   *
+   * @param decoder Function that decodes an object from a compound.
+   * @param keys    Keys of all elements the decoder reads.
+   */
+  NbtDataCache(final Function<NbtCompound, T> decoder, final String... keys) {
+    this.decoder = decoder;
+    this.keys = keys;
+  }
+
+  /**
+   * Returns the object decoded from the given compound, decoding it only if it is not cached or its elements changed.
+   */
+  T get(final NbtCompound nbt) {
+    Entry<T> entry = this.entries.getIfPresent(nbt);
+    if (entry != null && entry.matches(nbt, this.keys)) {
+      return entry.data();
+    }
+    T data = this.decoder.apply(nbt);
+    this.put(nbt, data);
+    return data;
+  }
+
+  /**
+   * Caches the given object for the given compound, which must hold its data.
+   */
+  void put(final NbtCompound nbt, final T data) {
+    NbtElement[] elements = new NbtElement[this.keys.length];
+    for (int i = 0; i < this.keys.length; i++) {
+      elements[i] = nbt.get(this.keys[i]);
+    }
+    this.entries.put(nbt, new Entry<>(elements, data));
+  }
+
+  private record Entry<T>(NbtElement[] elements, T data) {
+    boolean matches(final NbtCompound nbt, final String[] keys) {
+      for (int i = 0; i < keys.length; i++) {
+        if (nbt.get(keys[i]) != this.elements[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
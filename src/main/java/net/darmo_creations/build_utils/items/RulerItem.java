@@ -15,6 +15,8 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.World;
 
+import java.util.Objects;
+
 /**
  * Item used to measure lengths, areas and volumes.
  * <p>
@@ -24,7 +26,7 @@ import net.minecraft.world.World;
  * The size, areas and volume the selected 3D rectangle will appear in the chat.
  */
 public class RulerItem extends Item {
-  private static final String POS_TAG_KEY = "Pos";
+  public static final String POS_TAG_KEY = "Pos";
 
   public RulerItem(Settings settings) {
     super(settings.maxCount(1));
@@ -37,7 +39,7 @@ public class RulerItem extends Item {
     ItemStack heldItem = player.getStackInHand(context.getHand());
     BlockPos pos = context.getBlockPos();
     World world = context.getWorld();
-    RulerData data = RulerData.fromTag(heldItem.getNbt());
+    RulerData data = RulerData.of(heldItem).copy();
 
     if (data.position == null) {
       data.position = pos;
@@ -85,28 +87,39 @@ public class RulerItem extends Item {
       data.position = null;
     }
 
-    heldItem.setNbt(data.toTag());
+    data.writeTo(heldItem);
     return ActionResult.SUCCESS;
   }
 
   /**
    * Class holding data for the ruler that can serialize/deserialize NBT tags.
+   * <p>
+   * Decoded data is cached per NBT compound. Shared instances returned by {@link #of(ItemStack)} must not be modified.
    */
   private static class RulerData {
+    private static final RulerData EMPTY = new RulerData();
+    private static final NbtDataCache<RulerData> CACHE = new NbtDataCache<>(RulerData::fromTag, POS_TAG_KEY);
+
+    /**
+     * Returns the data of the given ruler. Its NBT data is only decoded again once it changed.
+     *
+     * @param stack The ruler.
+     * @return The shared RulerData object. Use {@link #copy()} to get a modifiable one.
+     */
+    static RulerData of(final ItemStack stack) {
+      NbtCompound data = stack.getNbt();
+      return data != null ? CACHE.get(data) : EMPTY;
+    }
+
     /**
      * Create a data instance from the given NBT tags.
-     * If tag is null, an empty instance is returned.
      *
      * @param data NBT tag to deserialize.
      * @return The RulerData object.
      */
-    static RulerData fromTag(NbtCompound data) {
-      if (data != null) {
-        NbtCompound tag = data.getCompound(POS_TAG_KEY);
-        return new RulerData(!tag.isEmpty() ? NbtHelper.toBlockPos(tag) : null);
-      } else {
-        return new RulerData();
-      }
+    private static RulerData fromTag(NbtCompound data) {
+      NbtCompound tag = data.getCompound(POS_TAG_KEY);
+      return new RulerData(!tag.isEmpty() ? NbtHelper.toBlockPos(tag) : null);
     }
 
     BlockPos position;
@@ -126,16 +139,29 @@ public class RulerItem extends Item {
     }
 
     /**
-     * Convert this data object to NBT tags.
+     * Returns a modifiable copy of this object.
      */
-    NbtCompound toTag() {
-      NbtCompound root = new NbtCompound();
+    RulerData copy() {
+      return new RulerData(this.position);
+    }
 
-      if (this.position != null) {
-        root.put(POS_TAG_KEY, NbtHelper.fromBlockPos(this.position));
+    /**
+     * Write this data object into the NBT tags of the given ruler.
+     * The position tag is only replaced if the position changed.
+     */
+    void writeTo(ItemStack stack) {
+      RulerData current = of(stack);
+      NbtCompound root = stack.getOrCreateNbt();
+
+      if (!Objects.equals(this.position, current.position)) {
+        if (this.position != null) {
+          root.put(POS_TAG_KEY, NbtHelper.fromBlockPos(this.position));
+        } else {
+          root.remove(POS_TAG_KEY);
+        }
       }
 
-      return root;
+      CACHE.put(root, this.copy());
     }
   }
 }
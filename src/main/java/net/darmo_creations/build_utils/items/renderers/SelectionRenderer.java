@@ -0,0 +1,212 @@
+package net.darmo_creations.build_utils.items.renderers;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.darmo_creations.build_utils.items.CreativeWandItem;
+import net.darmo_creations.build_utils.items.ModItems;
+import net.darmo_creations.build_utils.items.RulerItem;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
+import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.render.WorldRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.Vec3d;
+
+/**
+ * Draws the selections of the {@link CreativeWandItem}s and {@link RulerItem}s held by the player.
+ * <p>
+ * Selected positions are drawn in the same colors as in tooltips and chat messages, the selected region in white.
+ * <p>
+ * Each hand has its own cached selection. Positions are only decoded again when the NBT elements that hold them
+ * are replaced, which is checked by identity, and the vertex buffer is only rebuilt when the decoded positions changed.
+ * Drawing an unchanged selection thus neither decodes NBT data nor allocates anything.
+ */
+public final class SelectionRenderer {
+  private static final int FIRST_POSITION_COLOR = 0x55ffff; // Formatting.AQUA
+  private static final int SECOND_POSITION_COLOR = 0x00aaaa; // Formatting.DARK_AQUA
+  private static final int REGION_COLOR = 0xffffff;
+  /**
+   * Amount boxes are inflated by, to prevent them from z-fighting with block faces and outlines.
+   */
+  private static final double POSITION_MARGIN = 0.002;
+  private static final double REGION_MARGIN = 0.004;
+
+  private static final Selection MAIN_HAND = new Selection();
+  private static final Selection OFF_HAND = new Selection();
+  /**
+   * Builder shared by all selections, they are only rebuilt on the render thread.
+   */
+  private static final BufferBuilder BUILDER = new BufferBuilder(3 * 24 * VertexFormats.LINES.getVertexSizeByte());
+  private static final MatrixStack BUILD_MATRICES = new MatrixStack();
+  private static final Matrix4f MATRIX = new Matrix4f();
+
+  /**
+   * Registers the render handlers. Must be called on client only.
+   */
+  public static void init() {
+    ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(() -> {
+      MAIN_HAND.close();
+      OFF_HAND.close();
+    }));
+    WorldRenderEvents.AFTER_ENTITIES.register(SelectionRenderer::render);
+  }
+
+  private static void render(final WorldRenderContext context) {
+    PlayerEntity player = MinecraftClient.getInstance().player;
+    if (player == null) {
+      return;
+    }
+    boolean drawMainHand = MAIN_HAND.update(player.getMainHandStack());
+    boolean drawOffHand = OFF_HAND.update(player.getOffHandStack());
+    if (!drawMainHand && !drawOffHand) {
+      return;
+    }
+    Vec3d cameraPos = context.camera().getPos();
+    RenderLayer renderLayer = RenderLayer.getLines();
+    renderLayer.startDrawing();
+    if (drawMainHand) {
+      MAIN_HAND.draw(context, cameraPos);
+    }
+    if (drawOffHand) {
+      OFF_HAND.draw(context, cameraPos);
+    }
+    renderLayer.endDrawing();
+  }
+
+  /**
+   * Sets the given position to the one held by the given NBT element.
+   *
+   * @return False if the element does not hold any position.
+   */
+  private static boolean decode(final NbtElement tag, BlockPos.Mutable pos) {
+    // Same format as NbtHelper.toBlockPos(), without allocating a new position
+    if (tag instanceof NbtCompound compound && !compound.isEmpty()) {
+      pos.set(compound.getInt("X"), compound.getInt("Y"), compound.getInt("Z"));
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * The selection of the item held in one hand.
+   */
+  private static class Selection {
+    /**
+     * NBT elements the positions were last decoded from.
+     */
+    NbtElement firstTag;
+    NbtElement secondTag;
+    final BlockPos.Mutable firstPos = new BlockPos.Mutable();
+    final BlockPos.Mutable secondPos = new BlockPos.Mutable();
+    boolean hasFirstPos;
+    boolean hasSecondPos;
+    boolean dirty;
+    /**
+     * Position vertices are relative to, to keep enough float precision far from the world’s origin.
+     */
+    final BlockPos.Mutable origin = new BlockPos.Mutable();
+    VertexBuffer vertexBuffer;
+
+    /**
+     * Updates this selection from the given stack.
+     *
+     * @return True if there is anything to draw.
+     */
+    boolean update(final ItemStack stack) {
+      NbtCompound nbt = stack.getNbt();
+      NbtElement firstTag = null;
+      NbtElement secondTag = null;
+      if (nbt != null) {
+        if (stack.isOf(ModItems.CREATIVE_WAND)) {
+          firstTag = nbt.get(CreativeWandItem.POS1_TAG_KEY);
+          secondTag = nbt.get(CreativeWandItem.POS2_TAG_KEY);
+        } else if (stack.isOf(ModItems.RULER)) {
+          firstTag = nbt.get(RulerItem.POS_TAG_KEY);
+        }
+      }
+      if (firstTag != this.firstTag) {
+        this.firstTag = firstTag;
+        this.hasFirstPos = decode(firstTag, this.firstPos);
+        this.dirty = true;
+      }
+      if (secondTag != this.secondTag) {
+        this.secondTag = secondTag;
+        this.hasSecondPos = decode(secondTag, this.secondPos);
+        this.dirty = true;
+      }
+      return this.hasFirstPos || this.hasSecondPos;
+    }
+
+    void draw(final WorldRenderContext context, final Vec3d cameraPos) {
+      if (this.dirty) {
+        this.rebuild();
+      }
+      MATRIX.load(context.matrixStack().peek().getPositionMatrix());
+      MATRIX.multiplyByTranslation(
+          (float) (this.origin.getX() - cameraPos.x),
+          (float) (this.origin.getY() - cameraPos.y),
+          (float) (this.origin.getZ() - cameraPos.z)
+      );
+      this.vertexBuffer.setShader(MATRIX, context.projectionMatrix(), RenderSystem.getShader());
+    }
+
+    void rebuild() {
+      this.origin.set(this.hasFirstPos ? this.firstPos : this.secondPos);
+      BUILDER.begin(VertexFormat.DrawMode.LINES, VertexFormats.LINES);
+      if (this.hasFirstPos) {
+        this.drawBox(this.firstPos, this.firstPos, POSITION_MARGIN, FIRST_POSITION_COLOR);
+      }
+      if (this.hasSecondPos) {
+        this.drawBox(this.secondPos, this.secondPos, POSITION_MARGIN, SECOND_POSITION_COLOR);
+      }
+      if (this.hasFirstPos && this.hasSecondPos) {
+        this.drawBox(this.firstPos, this.secondPos, REGION_MARGIN, REGION_COLOR);
+      }
+      BUILDER.end();
+      if (this.vertexBuffer == null) {
+        this.vertexBuffer = new VertexBuffer();
+      }
+      this.vertexBuffer.upload(BUILDER);
+      this.dirty = false;
+    }
+
+    /**
+     * Draws the box enclosing both given positions, relative to the origin.
+     */
+    private void drawBox(final BlockPos pos1, final BlockPos pos2, double margin, int color) {
+      WorldRenderer.drawBox(
+          BUILD_MATRICES, BUILDER,
+          Math.min(pos1.getX(), pos2.getX()) - this.origin.getX() - margin,
+          Math.min(pos1.getY(), pos2.getY()) - this.origin.getY() - margin,
+          Math.min(pos1.getZ(), pos2.getZ()) - this.origin.getZ() - margin,
+          Math.max(pos1.getX(), pos2.getX()) + 1 - this.origin.getX() + margin,
+          Math.max(pos1.getY(), pos2.getY()) + 1 - this.origin.getY() + margin,
+          Math.max(pos1.getZ(), pos2.getZ()) + 1 - this.origin.getZ() + margin,
+          (color >> 16 & 0xff) / 255f, (color >> 8 & 0xff) / 255f, (color & 0xff) / 255f, 1
+      );
+    }
+
+    void close() {
+      if (this.vertexBuffer != null) {
+        this.vertexBuffer.close();
+        this.vertexBuffer = null;
+      }
+      // Force a rebuild if the same elements are still held after reconnection
+      this.dirty = true;
+    }
+  }
+
+  private SelectionRenderer() {
+  }
+}
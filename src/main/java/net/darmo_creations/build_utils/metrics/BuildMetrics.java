@@ -0,0 +1,205 @@
+package net.darmo_creations.build_utils.metrics;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters and latency histograms of the mod’s operations on the server,
+ * as well as the number of bytes received per packet type.
+ * <p>
+ * Recording only increments lock-free counters, so that metrics can stay enabled in production.
+ * Stats can be queried through the /buildutils stats command. A summary of the operations that occurred
+ * since the last one is also logged every {@link #LOG_INTERVAL} ticks, as key=value pairs.
+ */
+public final class BuildMetrics {
+  /**
+   * Number of ticks between two log lines.
+   */
+  public static final int LOG_INTERVAL = 1200;
+
+  private static final Map<Operation, OperationStats> OPERATIONS;
+  private static final Map<Identifier, PacketStats> PACKETS = new ConcurrentHashMap<>();
+  private static volatile int queueDepth;
+  private static int ticks;
+  private static long lastLogTime = Util.getMeasuringTimeNano();
+
+  static {
+    Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      operations.put(operation, new OperationStats());
+    }
+    OPERATIONS = Collections.unmodifiableMap(operations);
+  }
+
+  /**
+   * Registers the tick handler that logs metrics. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerTickEvents.END_SERVER_TICK.register(server -> {
+      if (++ticks >= LOG_INTERVAL) {
+        ticks = 0;
+        logAndRoll();
+      }
+    });
+  }
+
+  /**
+   * Records an operation that did not write any blocks.
+   *
+   * @param operation The operation.
+   * @param nanos     The time it took, in nanoseconds.
+   */
+  public static void record(Operation operation, long nanos) {
+    record(operation, nanos, 0);
+  }
+
+  /**
+   * Records an operation.
+   *
+   * @param operation The operation.
+   * @param nanos     The time it took, in nanoseconds.
+   * @param blocksNb  The number of blocks it wrote.
+   */
+  public static void record(Operation operation, long nanos, long blocksNb) {
+    OperationStats stats = OPERATIONS.get(operation);
+    stats.latency.record(nanos);
+    if (blocksNb != 0) {
+      stats.blocks.add(blocksNb);
+    }
+  }
+
+  /**
+   * Records a received packet.
+   *
+   * @param id    Packet’s ID.
+   * @param bytes Size of the packet’s payload.
+   */
+  public static void recordPacket(final Identifier id, int bytes) {
+    PacketStats stats = PACKETS.computeIfAbsent(id, i -> new PacketStats());
+    stats.count.increment();
+    stats.bytes.add(bytes);
+  }
+
+  /**
+   * Sets the current number of pending edit jobs.
+   */
+  public static void setQueueDepth(int depth) {
+    queueDepth = depth;
+  }
+
+  /**
+   * The number of pending edit jobs, as of the last server tick.
+   */
+  public static int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Returns the stats of the given operation.
+   */
+  public static OperationStats getStats(Operation operation) {
+    return OPERATIONS.get(operation);
+  }
+
+  /**
+   * Returns the stats of all packet types that have been received at least once.
+   */
+  public static Map<Identifier, PacketStats> getPacketStats() {
+    return Collections.unmodifiableMap(PACKETS);
+  }
+
+  /**
+   * Logs the operations that occurred since the last call and updates their block rates.
+   */
+  private static void logAndRoll() {
+    long now = Util.getMeasuringTimeNano();
+    double seconds = (now - lastLogTime) / 1e9;
+    lastLogTime = now;
+    OPERATIONS.forEach((operation, stats) -> {
+      long count = stats.latency.getCount();
+      long blocks = stats.blocks.sum();
+      long intervalCount = count - stats.lastCount;
+      stats.blocksPerSecond = (blocks - stats.lastBlocks) / seconds;
+      stats.lastCount = count;
+      stats.lastBlocks = blocks;
+      if (intervalCount != 0) {
+        BuildUtils.LOGGER.info("metrics op={} count={} interval_count={} mean_ms={} p50_ms={} p99_ms={} blocks={} blocks_per_s={} queue_depth={}",
+            operation.getName(), count, intervalCount,
+            formatMillis(stats.latency.getMeanNanos()),
+            formatMillis(stats.latency.getPercentileNanos(0.5)),
+            formatMillis(stats.latency.getPercentileNanos(0.99)),
+            blocks, "%.1f".formatted(stats.blocksPerSecond), queueDepth);
+      }
+    });
+  }
+
+  /**
+   * Formats a duration in nanoseconds as milliseconds with 3 decimals.
+   */
+  public static String formatMillis(double nanos) {
+    return "%.3f".formatted(nanos / 1e6);
+  }
+
+  /**
+   * Stats of a single operation.
+   */
+  public static class OperationStats {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder blocks = new LongAdder();
+    // Only accessed from the server thread
+    private long lastCount;
+    private long lastBlocks;
+    private volatile double blocksPerSecond;
+
+    private OperationStats() {
+    }
+
+    public LatencyHistogram getLatency() {
+      return this.latency;
+    }
+
+    /**
+     * The total number of blocks written by this operation.
+     */
+    public long getBlocks() {
+      return this.blocks.sum();
+    }
+
+    /**
+     * The number of blocks written per second during the last logging interval.
+     */
+    public double getBlocksPerSecond() {
+      return this.blocksPerSecond;
+    }
+  }
+
+  /**
+   * Stats of a single packet type.
+   */
+  public static class PacketStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private PacketStats() {
+    }
+
+    public long getCount() {
+      return this.count.sum();
+    }
+
+    public long getBytes() {
+      return this.bytes.sum();
+    }
+  }
+
+  private BuildMetrics() {
+  }
+}
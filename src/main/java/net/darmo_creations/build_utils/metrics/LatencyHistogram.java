@@ -0,0 +1,66 @@
+package net.darmo_creations.build_utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with power-of-two buckets.
+ * Bucket i counts the durations in [2^i, 2^(i+1)) nanoseconds, hence percentiles are approximated
+ * by the upper bound of their bucket, within a factor of 2.
+ */
+public class LatencyHistogram {
+  private static final int BUCKETS_NB = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS_NB);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+
+  /**
+   * Records a duration.
+   *
+   * @param nanos The duration in nanoseconds.
+   */
+  public void record(long nanos) {
+    long value = Math.max(1, nanos);
+    this.buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(value));
+    this.count.increment();
+    this.totalNanos.add(value);
+  }
+
+  /**
+   * The number of recorded durations.
+   */
+  public long getCount() {
+    return this.count.sum();
+  }
+
+  /**
+   * The mean of recorded durations in nanoseconds, 0 if none were recorded.
+   */
+  public double getMeanNanos() {
+    long count = this.count.sum();
+    return count == 0 ? 0 : (double) this.totalNanos.sum() / count;
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of recorded durations.
+   *
+   * @param percentile A value in [0, 1].
+   * @return The upper bound in nanoseconds, 0 if no durations were recorded.
+   */
+  public long getPercentileNanos(double percentile) {
+    long count = this.count.sum();
+    if (count == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(percentile * count);
+    long cumulated = 0;
+    for (int i = 0; i < BUCKETS_NB; i++) {
+      cumulated += this.buckets.get(i);
+      if (cumulated >= threshold) {
+        return i == BUCKETS_NB - 1 ? Long.MAX_VALUE : 1L << (i + 1);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+}
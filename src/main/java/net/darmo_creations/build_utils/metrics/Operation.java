@@ -0,0 +1,65 @@
+package net.darmo_creations.build_utils.metrics;
+
+/**
+ * Operations measured by {@link BuildMetrics}.
+ */
+public enum Operation {
+  /**
+   * Submission of a fill by a creative wand.
+   */
+  WAND_FILL("wand_fill"),
+  /**
+   * Fill job started by a laser telemeter, recorded once it is done with the time spent running its steps.
+   */
+  TELEMETER_FILL("telemeter_fill"),
+  /**
+   * Copy job started by a laser telemeter, recorded once the file is written with the time spent running its steps.
+   */
+  TELEMETER_COPY("telemeter_copy"),
+  /**
+   * Paste job started by a laser telemeter, recorded once it is done with the time spent running its steps.
+   */
+  TELEMETER_PASTE("telemeter_paste"),
+  /**
+   * Handling of a night vision toggle request.
+   */
+  NIGHT_VISION_TOGGLE("night_vision_toggle"),
+  /**
+   * A single step of a fill job.
+   */
+  FILL_JOB_STEP("fill_job_step"),
+  /**
+   * A single step of a paste job.
+   */
+  PASTE_JOB_STEP("paste_job_step"),
+  /**
+   * A single step of a copy job.
+   */
+  COPY_JOB_STEP("copy_job_step"),
+  /**
+   * All job steps run during a single server tick.
+   */
+  JOBS_TICK("jobs_tick"),
+  /**
+   * A single step of an undo job.
+   */
+  UNDO("undo"),
+  /**
+   * A single step of a redo job.
+   */
+  REDO("redo"),
+  ;
+
+  private final String name;
+
+  Operation(final String name) {
+    this.name = name;
+  }
+
+  /**
+   * The name of this operation, as shown in stats and logs.
+   */
+  public String getName() {
+    return this.name;
+  }
+}
@@ -0,0 +1,28 @@
+package net.darmo_creations.build_utils.mixin;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Mutable;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+/**
+ * Gives write access to the block states container and cached counters of {@link ChunkSection}s,
+ * allowing bulk edits to swap in block states that were prepared off the server thread.
+ */
+@Mixin(ChunkSection.class)
+public interface ChunkSectionAccessor {
+  @Mutable
+  @Accessor("blockStateContainer")
+  void setBlockStateContainer(PalettedContainer<BlockState> blockStateContainer);
+
+  @Accessor("nonEmptyBlockCount")
+  void setNonEmptyBlockCount(short nonEmptyBlockCount);
+
+  @Accessor("randomTickableBlockCount")
+  void setRandomTickableBlockCount(short randomTickableBlockCount);
+
+  @Accessor("nonEmptyFluidCount")
+  void setNonEmptyFluidCount(short nonEmptyFluidCount);
+}
@@ -0,0 +1,71 @@
+package net.darmo_creations.build_utils.mixin;
+
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.darmo_creations.build_utils.bulk_edit.BatchLightingProvider;
+import net.minecraft.server.world.ServerLightingProvider;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.light.ChunkLightProvider;
+import net.minecraft.world.chunk.light.ChunkLightingView;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyArg;
+
+/**
+ * Lets bulk edits queue light checks by batches: {@link ServerLightingProvider#checkBlock(BlockPos)} queues
+ * one lighting task per call, which floods the lighting thread when thousands of blocks are changed at once.
+ * <p>
+ * While {@link #buildUtils$checkBlocks(LongList)} runs, the task queued by checkBlock is replaced
+ * by one that checks all positions of the batch.
+ */
+@Mixin(ServerLightingProvider.class)
+public abstract class ServerLightingProviderMixin implements BatchLightingProvider {
+  @Unique
+  private LongList buildUtils$batch;
+
+  @Override
+  public void buildUtils$checkBlocks(final LongList positions) {
+    if (positions.isEmpty()) {
+      return;
+    }
+    this.buildUtils$batch = positions;
+    try {
+      ((ServerLightingProvider) (Object) this).checkBlock(BlockPos.fromLong(positions.getLong(0)));
+    } finally {
+      this.buildUtils$batch = null;
+    }
+  }
+
+  @ModifyArg(
+      method = "checkBlock",
+      at = @At(
+          value = "INVOKE",
+          target = "Lnet/minecraft/server/world/ServerLightingProvider;enqueue(IILnet/minecraft/server/world/ServerLightingProvider$Stage;Ljava/lang/Runnable;)V"
+      ),
+      index = 3
+  )
+  private Runnable buildUtils$replaceCheckTask(Runnable task) {
+    LongList positions = this.buildUtils$batch;
+    if (positions == null) {
+      return task;
+    }
+    LightingProvider provider = (LightingProvider) (Object) this;
+    // Same as LightingProvider.checkBlock, which cannot be called directly as it is overridden
+    return () -> {
+      ChunkLightingView blockLight = provider.get(LightType.BLOCK);
+      ChunkLightingView skyLight = provider.get(LightType.SKY);
+      BlockPos.Mutable pos = new BlockPos.Mutable();
+      for (int i = 0; i < positions.size(); i++) {
+        pos.set(positions.getLong(i));
+        if (blockLight instanceof ChunkLightProvider<?, ?> lightProvider) {
+          lightProvider.checkBlock(pos);
+        }
+        if (skyLight instanceof ChunkLightProvider<?, ?> lightProvider) {
+          lightProvider.checkBlock(pos);
+        }
+      }
+    };
+  }
+}
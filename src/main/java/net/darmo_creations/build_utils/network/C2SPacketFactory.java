@@ -15,13 +15,17 @@ public class C2SPacketFactory {
       new Identifier(BuildUtils.MOD_ID, "laser_telemeter_data_packet");
   public static final Identifier TOGGLE_NIGHT_VISION_PACKET_ID =
       new Identifier(BuildUtils.MOD_ID, "toggle_night_vision_packet");
+  public static final Identifier CYCLE_WAND_MODE_PACKET_ID =
+      new Identifier(BuildUtils.MOD_ID, "cycle_wand_mode_packet");
+  public static final Identifier TOGGLE_WAND_RAW_MODE_PACKET_ID =
+      new Identifier(BuildUtils.MOD_ID, "toggle_wand_raw_mode_packet");
 
   /**
    * Sends a packet to the server.
    *
    * @param packet The packet to send.
    * @throws IllegalArgumentException If the packet has not been registered through
-   *                                  {@link PacketRegistry#registerPacket(Identifier, Class, ServerPacketHandler)}.
+   *                                  {@link PacketRegistry#registerPacket(Identifier, Class, java.util.function.Function, ServerPacketHandler)}.
    */
   public static void sendPacket(final Packet packet) {
     Optional<Identifier> id = PacketRegistry.getPacketID(packet.getClass());
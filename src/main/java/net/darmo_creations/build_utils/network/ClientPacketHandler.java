@@ -0,0 +1,8 @@
+package net.darmo_creations.build_utils.network;
+
+import net.darmo_creations.build_utils.network.packets.Packet;
+import net.minecraft.client.MinecraftClient;
+
+public interface ClientPacketHandler<T extends Packet> {
+  void onPacket(MinecraftClient client, final T packet);
+}
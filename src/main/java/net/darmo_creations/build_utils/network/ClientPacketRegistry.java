@@ -0,0 +1,35 @@
+package net.darmo_creations.build_utils.network;
+
+import net.darmo_creations.build_utils.network.packets.Packet;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.function.Function;
+
+/**
+ * Registers the client-side handlers of packets sent by the server.
+ * Kept apart from {@link PacketRegistry} as client classes are not available on dedicated servers.
+ */
+public final class ClientPacketRegistry {
+  /**
+   * Registers the client-side handler of a packet.
+   * The packet must also be registered on both sides through
+   * {@link PacketRegistry#registerS2CPacket(Identifier, Class)}.
+   *
+   * @param id            Packet’s ID.
+   * @param decoder       Function that reads a packet from a buffer, usually the packet’s constructor.
+   * @param clientHandler The client-side handler.
+   */
+  public static <T extends Packet> void registerHandler(
+      final Identifier id,
+      final Function<PacketByteBuf, T> decoder,
+      final ClientPacketHandler<T> clientHandler
+  ) {
+    ClientPlayNetworking.registerGlobalReceiver(id,
+        (client, handler, buf, responseSender) -> clientHandler.onPacket(client, decoder.apply(buf)));
+  }
+
+  private ClientPacketRegistry() {
+  }
+}
@@ -8,15 +8,16 @@ import net.minecraft.util.math.Vec3i;
  */
 public final class PacketBufUtil {
   /**
-   * Writes a {@link Vec3i} to a {@link PacketByteBuf}.
+   * Writes a {@link Vec3i} to a {@link PacketByteBuf}. Coordinates are written as zigzag-encoded var ints,
+   * hence small vectors only take 3 bytes.
    *
    * @param byteBuf Destination buffer.
    * @param vec3i   A vector.
    */
   public static void writeVec3i(PacketByteBuf byteBuf, final Vec3i vec3i) {
-    byteBuf.writeDouble(vec3i.getX());
-    byteBuf.writeDouble(vec3i.getY());
-    byteBuf.writeDouble(vec3i.getZ());
+    writeZigZagVarInt(byteBuf, vec3i.getX());
+    writeZigZagVarInt(byteBuf, vec3i.getY());
+    writeZigZagVarInt(byteBuf, vec3i.getZ());
   }
 
   /**
@@ -25,13 +26,35 @@ public final class PacketBufUtil {
    * @param byteBuf Source buffer.
    * @return A vector.
    */
-  public static Vec3i readVec3i(final PacketByteBuf byteBuf) {
-    double x = byteBuf.readDouble();
-    double y = byteBuf.readDouble();
-    double z = byteBuf.readDouble();
+  public static Vec3i readVec3i(PacketByteBuf byteBuf) {
+    int x = readZigZagVarInt(byteBuf);
+    int y = readZigZagVarInt(byteBuf);
+    int z = readZigZagVarInt(byteBuf);
     return new Vec3i(x, y, z);
   }
 
+  /**
+   * Writes a signed int as a var int, after mapping it to an unsigned one
+   * so that values close to 0 take few bytes whatever their sign.
+   *
+   * @param byteBuf Destination buffer.
+   * @param value   The value to write.
+   */
+  public static void writeZigZagVarInt(PacketByteBuf byteBuf, int value) {
+    byteBuf.writeVarInt((value << 1) ^ (value >> 31));
+  }
+
+  /**
+   * Reads a signed int written by {@link #writeZigZagVarInt(PacketByteBuf, int)}.
+   *
+   * @param byteBuf Source buffer.
+   * @return The value.
+   */
+  public static int readZigZagVarInt(PacketByteBuf byteBuf) {
+    int value = byteBuf.readVarInt();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
   private PacketBufUtil() {
   }
 }
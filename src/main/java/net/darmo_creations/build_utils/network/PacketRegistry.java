@@ -1,14 +1,15 @@
 package net.darmo_creations.build_utils.network;
 
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
 import net.darmo_creations.build_utils.network.packets.Packet;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Manages all custom packets defined by this mod.
@@ -21,21 +22,36 @@ public final class PacketRegistry {
    *
    * @param id            Packet’s ID.
    * @param packetClass   Packet’s class.
+   * @param decoder       Function that reads a packet from a buffer, usually the packet’s constructor.
    * @param serverHandler The server-side handler.
    */
-  public static <T extends Packet> void registerPacket(final Identifier id, final Class<T> packetClass, final ServerPacketHandler<T> serverHandler) {
+  public static <T extends Packet> void registerPacket(
+      final Identifier id,
+      final Class<T> packetClass,
+      final Function<PacketByteBuf, T> decoder,
+      final ServerPacketHandler<T> serverHandler
+  ) {
     PACKET_CLASSES.put(packetClass, id);
     ServerPlayNetworking.registerGlobalReceiver(id,
         (server, player, handler, buf, responseSender) -> {
-          try {
-            serverHandler.onPacket(server, player, packetClass.getConstructor(PacketByteBuf.class).newInstance(buf));
-          } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
-                   NoSuchMethodException e) {
-            throw new RuntimeException(e);
-          }
+          BuildMetrics.recordPacket(id, buf.readableBytes());
+          serverHandler.onPacket(server, player, decoder.apply(buf));
         });
   }
 
+  /**
+   * Registers a packet sent from the server to clients.
+   * Its client-side handler is registered through {@link ClientPacketRegistry}.
+   * <p>
+   * Must be called on both clients and server.
+   *
+   * @param id          Packet’s ID.
+   * @param packetClass Packet’s class.
+   */
+  public static <T extends Packet> void registerS2CPacket(final Identifier id, final Class<T> packetClass) {
+    PACKET_CLASSES.put(packetClass, id);
+  }
+
   /**
    * Returns the ID on the given packet class.
    */
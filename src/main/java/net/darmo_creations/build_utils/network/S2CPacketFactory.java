@@ -0,0 +1,33 @@
+package net.darmo_creations.build_utils.network;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.darmo_creations.build_utils.network.packets.Packet;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.util.Optional;
+
+/**
+ * A class that defines static methods that send packets from the server to clients.
+ */
+public class S2CPacketFactory {
+  public static final Identifier PASTE_PREVIEW_PACKET_ID =
+      new Identifier(BuildUtils.MOD_ID, "paste_preview_packet");
+
+  /**
+   * Sends a packet to a player.
+   *
+   * @param player The player to send the packet to.
+   * @param packet The packet to send.
+   * @throws IllegalArgumentException If the packet has not been registered through
+   *                                  {@link PacketRegistry#registerS2CPacket(Identifier, Class)}.
+   */
+  public static void sendPacket(ServerPlayerEntity player, final Packet packet) {
+    Optional<Identifier> id = PacketRegistry.getPacketID(packet.getClass());
+    if (id.isEmpty()) {
+      throw new IllegalArgumentException("invalid packet type " + packet.getClass().getName());
+    }
+    ServerPlayNetworking.send(player, id.get(), packet.getBuffer());
+  }
+}
@@ -1,10 +1,12 @@
 package net.darmo_creations.build_utils.network.packets;
 
 import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
 import net.darmo_creations.build_utils.Utils;
 import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
 import net.darmo_creations.build_utils.network.PacketBufUtil;
 import net.darmo_creations.build_utils.network.ServerPacketHandler;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
@@ -18,32 +20,66 @@ import java.util.Objects;
 
 /**
  * A packet used to sync data of a {@link LaserTelemeterBlockEntity} from client to server.
+ * <p>
+ * Format (version 3):
+ * <li>format version (byte)
+ * <li>block entity’s position (long)
+ * <li>offset and size (3 zigzag var ints each)
+ * <li>mode, rotation and mirror ordinals (var ints)
+ * <li>filler and replaced block states’ raw IDs (var ints)
+ * <li>structure name (string)
+ * <li>flags (byte): bit 0 is performAction, bit 1 is previewPaste, bit 2 is raw
  */
 public class LaserTelemeterPacket implements Packet {
+  /**
+   * Version of the wire format. Must be incremented whenever the format changes.
+   */
+  public static final byte FORMAT_VERSION = 3;
+
+  private static final int PERFORM_ACTION_FLAG = 1;
+  private static final int PREVIEW_PASTE_FLAG = 1 << 1;
+  private static final int RAW_FLAG = 1 << 2;
+
   private final BlockPos pos;
   private final Vec3i offset;
   private final Vec3i size;
   private final LaserTelemeterBlockEntity.Mode mode;
   private final BlockState fillerBlockState;
+  private final BlockState replacedBlockState;
   private final String structureName;
   private final BlockRotation rotation;
   private final BlockMirror mirror;
+  private final boolean raw;
   private final boolean performAction;
   private final boolean previewPaste;
 
-  // Invoked by PacketRegistry through reflection
-  @SuppressWarnings("unused")
-  public LaserTelemeterPacket(final PacketByteBuf buf) {
+  // Decoder registered in PacketRegistry
+  public LaserTelemeterPacket(PacketByteBuf buf) {
+    byte version = buf.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new DecoderException("unsupported laser telemeter packet version %d, expected %d".formatted(version, FORMAT_VERSION));
+    }
     this.pos = buf.readBlockPos();
     this.offset = PacketBufUtil.readVec3i(buf);
     this.size = PacketBufUtil.readVec3i(buf);
-    this.mode = LaserTelemeterBlockEntity.Mode.values()[buf.readInt()];
-    this.fillerBlockState = Utils.stringToBlockState(buf.readString());
+    this.mode = readEnum(buf, LaserTelemeterBlockEntity.Mode.values());
+    this.rotation = readEnum(buf, BlockRotation.values());
+    this.mirror = readEnum(buf, BlockMirror.values());
+    this.fillerBlockState = Block.getStateFromRawId(buf.readVarInt());
+    this.replacedBlockState = Block.getStateFromRawId(buf.readVarInt());
     this.structureName = buf.readString().strip();
-    this.rotation = BlockRotation.values()[buf.readInt() % BlockRotation.values().length];
-    this.mirror = BlockMirror.values()[buf.readInt() % BlockMirror.values().length];
-    this.performAction = buf.readBoolean();
-    this.previewPaste = buf.readBoolean();
+    byte flags = buf.readByte();
+    this.performAction = (flags & PERFORM_ACTION_FLAG) != 0;
+    this.previewPaste = (flags & PREVIEW_PASTE_FLAG) != 0;
+    this.raw = (flags & RAW_FLAG) != 0;
+  }
+
+  private static <T extends Enum<T>> T readEnum(PacketByteBuf buf, final T[] values) {
+    int ordinal = buf.readVarInt();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new DecoderException("invalid ordinal %d for %s".formatted(ordinal, values.getClass().getComponentType().getSimpleName()));
+    }
+    return values[ordinal];
   }
 
   public LaserTelemeterPacket(
@@ -52,9 +88,11 @@ public class LaserTelemeterPacket implements Packet {
       final Vec3i size,
       final LaserTelemeterBlockEntity.Mode mode,
       final BlockState fillerBlockState,
+      final BlockState replacedBlockState,
       final String structureName,
       final BlockRotation rotation,
       final BlockMirror mirror,
+      final boolean raw,
       final boolean performAction,
       final boolean previewPaste
   ) {
@@ -63,9 +101,11 @@ public class LaserTelemeterPacket implements Packet {
     this.size = Objects.requireNonNull(size);
     this.mode = Objects.requireNonNull(mode);
     this.fillerBlockState = Objects.requireNonNull(fillerBlockState);
+    this.replacedBlockState = Objects.requireNonNull(replacedBlockState);
     this.structureName = structureName;
     this.rotation = rotation;
     this.mirror = mirror;
+    this.raw = raw;
     this.performAction = performAction;
     this.previewPaste = previewPaste;
   }
@@ -73,16 +113,27 @@ public class LaserTelemeterPacket implements Packet {
   @Override
   public PacketByteBuf getBuffer() {
     PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+    buf.writeByte(FORMAT_VERSION);
     buf.writeBlockPos(this.pos);
     PacketBufUtil.writeVec3i(buf, this.offset);
     PacketBufUtil.writeVec3i(buf, this.size);
-    buf.writeInt(this.mode.ordinal());
-    buf.writeString(Utils.blockStateToString(this.fillerBlockState));
+    buf.writeVarInt(this.mode.ordinal());
+    buf.writeVarInt(this.rotation.ordinal());
+    buf.writeVarInt(this.mirror.ordinal());
+    buf.writeVarInt(Block.getRawIdFromState(this.fillerBlockState));
+    buf.writeVarInt(Block.getRawIdFromState(this.replacedBlockState));
     buf.writeString(this.structureName);
-    buf.writeInt(this.rotation.ordinal());
-    buf.writeInt(this.mirror.ordinal());
-    buf.writeBoolean(this.performAction);
-    buf.writeBoolean(this.previewPaste);
+    int flags = 0;
+    if (this.performAction) {
+      flags |= PERFORM_ACTION_FLAG;
+    }
+    if (this.previewPaste) {
+      flags |= PREVIEW_PASTE_FLAG;
+    }
+    if (this.raw) {
+      flags |= RAW_FLAG;
+    }
+    buf.writeByte(flags);
     return buf;
   }
 
@@ -106,6 +157,10 @@ public class LaserTelemeterPacket implements Packet {
     return this.fillerBlockState;
   }
 
+  public BlockState replacedBlockState() {
+    return this.replacedBlockState;
+  }
+
   public String structureName() {
     return this.structureName;
   }
@@ -126,6 +181,10 @@ public class LaserTelemeterPacket implements Packet {
     return this.mirror;
   }
 
+  public boolean raw() {
+    return this.raw;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -135,18 +194,18 @@ public class LaserTelemeterPacket implements Packet {
       return false;
     }
     LaserTelemeterPacket that = (LaserTelemeterPacket) o;
-    return this.performAction == that.performAction && this.previewPaste == that.previewPaste && this.pos.equals(that.pos) && this.offset.equals(that.offset) && this.size.equals(that.size) && this.mode == that.mode && this.fillerBlockState.equals(that.fillerBlockState) && Objects.equals(this.structureName, that.structureName) && this.rotation == that.rotation && this.mirror == that.mirror;
+    return this.performAction == that.performAction && this.previewPaste == that.previewPaste && this.pos.equals(that.pos) && this.offset.equals(that.offset) && this.size.equals(that.size) && this.mode == that.mode && this.fillerBlockState.equals(that.fillerBlockState) && this.replacedBlockState.equals(that.replacedBlockState) && Objects.equals(this.structureName, that.structureName) && this.rotation == that.rotation && this.mirror == that.mirror && this.raw == that.raw;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(this.pos, this.offset, this.size, this.mode, this.fillerBlockState, this.structureName, this.rotation, this.mirror, this.performAction, this.previewPaste);
+    return Objects.hash(this.pos, this.offset, this.size, this.mode, this.fillerBlockState, this.replacedBlockState, this.structureName, this.rotation, this.mirror, this.raw, this.performAction, this.previewPaste);
   }
 
   @Override
   public String toString() {
-    return "LaserTelemeterPacket[pos=%s, offset=%s, size=%s, mode=%s, fillerBlockState=%s, structureName=%s, rotation=%s, mirror=%s, performAction=%s, previewPaste=%s]"
-        .formatted(this.pos, this.offset, this.size, this.mode, this.fillerBlockState, this.structureName, this.rotation, this.mirror, this.performAction, this.previewPaste);
+    return "LaserTelemeterPacket[pos=%s, offset=%s, size=%s, mode=%s, fillerBlockState=%s, replacedBlockState=%s, structureName=%s, rotation=%s, mirror=%s, raw=%s, performAction=%s, previewPaste=%s]"
+        .formatted(this.pos, this.offset, this.size, this.mode, this.fillerBlockState, this.replacedBlockState, this.structureName, this.rotation, this.mirror, this.raw, this.performAction, this.previewPaste);
   }
 
   /**
@@ -161,6 +220,7 @@ public class LaserTelemeterPacket implements Packet {
             be.setSize(packet.size());
             be.setMode(packet.mode());
             be.setFillerBlockState(packet.fillerBlockState());
+            be.setReplacedBlockState(packet.replacedBlockState());
             if ("".equals(packet.structureName())) {
               be.setStructureName(null);
             } else {
@@ -168,8 +228,9 @@ public class LaserTelemeterPacket implements Packet {
             }
             be.setRotation(packet.rotation());
             be.setMirror(packet.mirror());
+            be.setRaw(packet.raw());
             if (packet.performAction()) {
-              be.performAction(packet.previewPaste());
+              be.performAction(player, packet.previewPaste());
             }
           })
       );
@@ -0,0 +1,365 @@
+package net.darmo_creations.build_utils.network.packets;
+
+import com.mojang.datafixers.util.Either;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.darmo_creations.build_utils.block_entities.LaserTelemeterBlockEntity;
+import net.darmo_creations.build_utils.block_entities.renderers.PastePreviewRenderer;
+import net.darmo_creations.build_utils.network.ClientPacketHandler;
+import net.darmo_creations.build_utils.network.PacketBufUtil;
+import net.darmo_creations.build_utils.structures.StructureSnapshot;
+import net.darmo_creations.build_utils.structures.Template;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A packet that carries part of the blocks of a structure to the player that requested a paste preview
+ * from a {@link LaserTelemeterBlockEntity}.
+ * <p>
+ * Blocks are sent untransformed, clients apply the telemeter’s mirror and rotation themselves. They are grouped
+ * in cubic cells of 16 blocks, each with its own palette, and palette indices are packed with as few bits as
+ * the palette needs, as in chunk sections. Index 0 is reserved for air, empty cells are not sent.
+ * A preview is split into as many packets as needed to keep each of them under {@link #MAX_CELLS_SIZE} bytes.
+ * A preview without cells clears the previous one.
+ * <p>
+ * Format (version 1):
+ * <li>format version (byte)
+ * <li>block entity’s position (long)
+ * <li>preview ID (var int)
+ * <li>structure name (string)
+ * <li>structure size (3 zigzag var ints)
+ * <li>total number of cells of the preview (var int)
+ * <li>number of cells in this packet (var int), then for each cell: its coordinates (3 var ints),
+ * its palette length and entries’ raw IDs (var ints), and its packed indices (long array)
+ */
+public class PastePreviewPacket implements Packet {
+  /**
+   * Version of the wire format. Must be incremented whenever the format changes.
+   */
+  public static final byte FORMAT_VERSION = 1;
+  /**
+   * Maximum number of non-air blocks of a structure that may be previewed.
+   */
+  public static final int MAX_BLOCKS = 1 << 18;
+
+  private static final int CELL_SIZE = 16;
+  private static final int CELL_VOLUME = CELL_SIZE * CELL_SIZE * CELL_SIZE;
+  private static final int MAX_CELLS_SIZE = 1 << 18;
+  private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+  private final BlockPos pos;
+  private final int previewId;
+  private final String structureName;
+  private final Vec3i size;
+  private final int cellsNb;
+  private final List<Cell> cells;
+
+  // Decoder registered in ClientPacketRegistry
+  public PastePreviewPacket(PacketByteBuf buf) {
+    byte version = buf.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new DecoderException("unsupported paste preview packet version %d, expected %d".formatted(version, FORMAT_VERSION));
+    }
+    this.pos = buf.readBlockPos();
+    this.previewId = buf.readVarInt();
+    this.structureName = buf.readString();
+    this.size = PacketBufUtil.readVec3i(buf);
+    this.cellsNb = buf.readVarInt();
+    int packetCellsNb = buf.readVarInt();
+    if (packetCellsNb < 0 || packetCellsNb > this.cellsNb) {
+      throw new DecoderException("invalid cells number %d out of %d".formatted(packetCellsNb, this.cellsNb));
+    }
+    this.cells = new ArrayList<>(packetCellsNb);
+    for (int i = 0; i < packetCellsNb; i++) {
+      this.cells.add(Cell.read(buf));
+    }
+  }
+
+  private PastePreviewPacket(
+      final BlockPos pos,
+      int previewId,
+      final String structureName,
+      final Vec3i size,
+      int cellsNb,
+      final List<Cell> cells
+  ) {
+    this.pos = pos;
+    this.previewId = previewId;
+    this.structureName = structureName;
+    this.size = size;
+    this.cellsNb = cellsNb;
+    this.cells = cells;
+  }
+
+  /**
+   * Splits the given structure into packets.
+   * May be called from any thread.
+   *
+   * @param pos           Position of the telemeter the preview is for.
+   * @param structureName Name of the structure.
+   * @param structure     The untransformed structure.
+   * @return The packets, or an empty value if the structure has more than {@link #MAX_BLOCKS} non-air blocks.
+   */
+  public static Optional<List<PastePreviewPacket>> split(
+      final BlockPos pos,
+      final String structureName,
+      final Either<Template, StructureSnapshot> structure
+  ) {
+    Optional<List<Cell>> cells = structure.map(PastePreviewPacket::getCells, PastePreviewPacket::getCells);
+    if (cells.isEmpty()) {
+      return Optional.empty();
+    }
+    int previewId = NEXT_ID.getAndIncrement();
+    Vec3i size = structure.map(Template::getSize, StructureSnapshot::getSize);
+    int cellsNb = cells.get().size();
+    List<PastePreviewPacket> packets = new ArrayList<>();
+    List<Cell> packetCells = new ArrayList<>();
+    int packetSize = 0;
+    for (Cell cell : cells.get()) {
+      int cellSize = cell.getMaxSerializedSize();
+      if (!packetCells.isEmpty() && packetSize + cellSize > MAX_CELLS_SIZE) {
+        packets.add(new PastePreviewPacket(pos, previewId, structureName, size, cellsNb, packetCells));
+        packetCells = new ArrayList<>();
+        packetSize = 0;
+      }
+      packetCells.add(cell);
+      packetSize += cellSize;
+    }
+    packets.add(new PastePreviewPacket(pos, previewId, structureName, size, cellsNb, packetCells));
+    return Optional.of(packets);
+  }
+
+  /**
+   * Returns a packet that clears the preview of the telemeter at the given position.
+   */
+  public static PastePreviewPacket clear(final BlockPos pos) {
+    return new PastePreviewPacket(pos, 0, "", Vec3i.ZERO, 0, List.of());
+  }
+
+  private static Optional<List<Cell>> getCells(final Template template) {
+    Long2ObjectMap<BlockState[]> cellStates = new Long2ObjectOpenHashMap<>();
+    int blocksNb = 0;
+    for (int i = 0; i < template.getBlocksNb(); i++) {
+      BlockState state = template.getState(i);
+      if (state.isAir()) {
+        continue;
+      }
+      if (++blocksNb > MAX_BLOCKS) {
+        return Optional.empty();
+      }
+      long pos = template.getPackedPos(i);
+      int x = BlockPos.unpackLongX(pos);
+      int y = BlockPos.unpackLongY(pos);
+      int z = BlockPos.unpackLongZ(pos);
+      BlockState[] states = cellStates.computeIfAbsent(BlockPos.asLong(x >> 4, y >> 4, z >> 4), key -> new BlockState[CELL_VOLUME]);
+      states[getIndexInCell(x, y, z)] = state;
+    }
+    List<Cell> cells = new ArrayList<>(cellStates.size());
+    for (Long2ObjectMap.Entry<BlockState[]> entry : cellStates.long2ObjectEntrySet()) {
+      long key = entry.getLongKey();
+      cells.add(Cell.pack(BlockPos.unpackLongX(key), BlockPos.unpackLongY(key), BlockPos.unpackLongZ(key), entry.getValue()));
+    }
+    return Optional.of(cells);
+  }
+
+  private static Optional<List<Cell>> getCells(final StructureSnapshot snapshot) {
+    Vec3i size = snapshot.getSize();
+    List<BlockState> palette = snapshot.getPalette();
+    List<Cell> cells = new ArrayList<>();
+    BlockState[] states = new BlockState[CELL_VOLUME];
+    int blocksNb = 0;
+    for (int cy = 0; cy * CELL_SIZE < size.getY(); cy++) {
+      for (int cz = 0; cz * CELL_SIZE < size.getZ(); cz++) {
+        for (int cx = 0; cx * CELL_SIZE < size.getX(); cx++) {
+          boolean empty = true;
+          int maxY = Math.min(size.getY(), (cy + 1) * CELL_SIZE);
+          int maxZ = Math.min(size.getZ(), (cz + 1) * CELL_SIZE);
+          int maxX = Math.min(size.getX(), (cx + 1) * CELL_SIZE);
+          for (int y = cy * CELL_SIZE; y < maxY; y++) {
+            for (int z = cz * CELL_SIZE; z < maxZ; z++) {
+              for (int x = cx * CELL_SIZE; x < maxX; x++) {
+                int stateIndex = snapshot.getStateIndex(x, y, z);
+                if (stateIndex < 0 || palette.get(stateIndex).isAir()) {
+                  continue;
+                }
+                if (++blocksNb > MAX_BLOCKS) {
+                  return Optional.empty();
+                }
+                states[getIndexInCell(x, y, z)] = palette.get(stateIndex);
+                empty = false;
+              }
+            }
+          }
+          if (!empty) {
+            cells.add(Cell.pack(cx, cy, cz, states));
+            Arrays.fill(states, null);
+          }
+        }
+      }
+    }
+    return Optional.of(cells);
+  }
+
+  private static int getIndexInCell(int x, int y, int z) {
+    return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+  }
+
+  @Override
+  public PacketByteBuf getBuffer() {
+    PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+    buf.writeByte(FORMAT_VERSION);
+    buf.writeBlockPos(this.pos);
+    buf.writeVarInt(this.previewId);
+    buf.writeString(this.structureName);
+    PacketBufUtil.writeVec3i(buf, this.size);
+    buf.writeVarInt(this.cellsNb);
+    buf.writeVarInt(this.cells.size());
+    this.cells.forEach(cell -> cell.write(buf));
+    return buf;
+  }
+
+  public BlockPos getPos() {
+    return this.pos;
+  }
+
+  public int getPreviewId() {
+    return this.previewId;
+  }
+
+  public String getStructureName() {
+    return this.structureName;
+  }
+
+  public Vec3i getSize() {
+    return this.size;
+  }
+
+  /**
+   * The total number of cells of the preview, across all packets.
+   */
+  public int getCellsNb() {
+    return this.cellsNb;
+  }
+
+  /**
+   * The cells carried by this packet.
+   */
+  public List<Cell> getCells() {
+    return this.cells;
+  }
+
+  /**
+   * A cubic cell of 16 blocks.
+   *
+   * @param x       Cell’s X coordinate, in cells from the structure’s origin.
+   * @param y       Cell’s Y coordinate, in cells from the structure’s origin.
+   * @param z       Cell’s Z coordinate, in cells from the structure’s origin.
+   * @param palette The cell’s palette. The first entry is always air.
+   * @param indices Palette index of each block, in YZX order.
+   */
+  public record Cell(int x, int y, int z, BlockState[] palette, PackedIntegerArray indices) {
+    private static Cell pack(int x, int y, int z, final BlockState[] states) {
+      Reference2IntMap<BlockState> indices = new Reference2IntOpenHashMap<>();
+      indices.defaultReturnValue(-1);
+      List<BlockState> palette = new ArrayList<>();
+      palette.add(Blocks.AIR.getDefaultState());
+      int[] localIndices = new int[CELL_VOLUME];
+      for (int i = 0; i < CELL_VOLUME; i++) {
+        BlockState state = states[i];
+        if (state != null) {
+          int index = indices.getInt(state);
+          if (index < 0) {
+            index = palette.size();
+            indices.put(state, index);
+            palette.add(state);
+          }
+          localIndices[i] = index;
+        }
+      }
+      PackedIntegerArray data = new PackedIntegerArray(getBits(palette.size()), CELL_VOLUME);
+      for (int i = 0; i < CELL_VOLUME; i++) {
+        if (localIndices[i] != 0) {
+          data.set(i, localIndices[i]);
+        }
+      }
+      return new Cell(x, y, z, palette.toArray(BlockState[]::new), data);
+    }
+
+    private static Cell read(PacketByteBuf buf) {
+      int x = buf.readVarInt();
+      int y = buf.readVarInt();
+      int z = buf.readVarInt();
+      int paletteLength = buf.readVarInt();
+      if (paletteLength < 1 || paletteLength > CELL_VOLUME + 1) {
+        throw new DecoderException("invalid cell palette length %d".formatted(paletteLength));
+      }
+      BlockState[] palette = new BlockState[paletteLength];
+      for (int i = 0; i < paletteLength; i++) {
+        palette[i] = Block.getStateFromRawId(buf.readVarInt());
+      }
+      int bits = getBits(paletteLength);
+      int valuesPerLong = 64 / bits;
+      long[] data = buf.readLongArray(null, CELL_VOLUME);
+      if (data.length != (CELL_VOLUME + valuesPerLong - 1) / valuesPerLong) {
+        throw new DecoderException("invalid cell data length %d for %d bits".formatted(data.length, bits));
+      }
+      return new Cell(x, y, z, palette, new PackedIntegerArray(bits, CELL_VOLUME, data));
+    }
+
+    private static int getBits(int paletteLength) {
+      return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteLength - 1));
+    }
+
+    private void write(PacketByteBuf buf) {
+      buf.writeVarInt(this.x);
+      buf.writeVarInt(this.y);
+      buf.writeVarInt(this.z);
+      buf.writeVarInt(this.palette.length);
+      for (BlockState state : this.palette) {
+        buf.writeVarInt(Block.getRawIdFromState(state));
+      }
+      buf.writeLongArray(this.indices.getData());
+    }
+
+    /**
+     * An upper bound of the number of bytes written by {@link #write(PacketByteBuf)}, var ints taking 5 bytes at most.
+     */
+    private int getMaxSerializedSize() {
+      return 5 * (4 + this.palette.length) + 5 + 8 * this.indices.getData().length;
+    }
+
+    /**
+     * Returns the state of the block at the given index. Invalid palette indices resolve to air.
+     */
+    public BlockState getState(int index) {
+      int paletteIndex = this.indices.get(index);
+      return paletteIndex < this.palette.length ? this.palette[paletteIndex] : Blocks.AIR.getDefaultState();
+    }
+  }
+
+  /**
+   * Client-side handler for this packet.
+   */
+  public static class ClientHandler implements ClientPacketHandler<PastePreviewPacket> {
+    @Override
+    public void onPacket(MinecraftClient client, final PastePreviewPacket packet) {
+      client.execute(() -> PastePreviewRenderer.onPacket(packet));
+    }
+  }
+}
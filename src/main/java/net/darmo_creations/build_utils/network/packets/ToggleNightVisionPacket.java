@@ -1,16 +1,18 @@
 package net.darmo_creations.build_utils.network.packets;
 
 import io.netty.buffer.Unpooled;
+import net.darmo_creations.build_utils.metrics.BuildMetrics;
+import net.darmo_creations.build_utils.metrics.Operation;
 import net.darmo_creations.build_utils.network.ServerPacketHandler;
 import net.minecraft.entity.effect.StatusEffectInstance;
 import net.minecraft.entity.effect.StatusEffects;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Util;
 
 public class ToggleNightVisionPacket implements Packet {
-  // Invoked by PacketRegistry through reflection
-  @SuppressWarnings("unused")
+  // Decoder registered in PacketRegistry
   public ToggleNightVisionPacket(final PacketByteBuf buf) {
   }
 
@@ -29,11 +31,13 @@ public class ToggleNightVisionPacket implements Packet {
     @Override
     public void onPacket(MinecraftServer server, ServerPlayerEntity player, final ToggleNightVisionPacket packet) {
       server.execute(() -> {
+        long start = Util.getMeasuringTimeNano();
         if (player.hasStatusEffect(StatusEffects.NIGHT_VISION)) {
           player.removeStatusEffect(StatusEffects.NIGHT_VISION);
         } else {
           player.addStatusEffect(new StatusEffectInstance(StatusEffects.NIGHT_VISION, 99999, 0, false, false));
         }
+        BuildMetrics.record(Operation.NIGHT_VISION_TOGGLE, Util.getMeasuringTimeNano() - start);
       });
     }
   }
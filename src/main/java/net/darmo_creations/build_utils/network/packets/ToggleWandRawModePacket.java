@@ -0,0 +1,46 @@
+package net.darmo_creations.build_utils.network.packets;
+
+import io.netty.buffer.Unpooled;
+import net.darmo_creations.build_utils.items.CreativeWandItem;
+import net.darmo_creations.build_utils.items.ModItems;
+import net.darmo_creations.build_utils.network.ServerPacketHandler;
+import net.minecraft.item.ItemStack;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Hand;
+
+/**
+ * Packet used to toggle the raw mode of the {@link CreativeWandItem} held by a player.
+ */
+public class ToggleWandRawModePacket implements Packet {
+  // Decoder registered in PacketRegistry
+  public ToggleWandRawModePacket(final PacketByteBuf buf) {
+  }
+
+  public ToggleWandRawModePacket() {
+  }
+
+  @Override
+  public PacketByteBuf getBuffer() {
+    return new PacketByteBuf(Unpooled.buffer());
+  }
+
+  /**
+   * Server-side handler for this packet.
+   */
+  public static class ServerHandler implements ServerPacketHandler<ToggleWandRawModePacket> {
+    @Override
+    public void onPacket(MinecraftServer server, ServerPlayerEntity player, final ToggleWandRawModePacket packet) {
+      server.execute(() -> {
+        for (Hand hand : Hand.values()) {
+          ItemStack stack = player.getStackInHand(hand);
+          if (stack.isOf(ModItems.CREATIVE_WAND)) {
+            CreativeWandItem.toggleRawMode(stack, player);
+            break;
+          }
+        }
+      });
+    }
+  }
+}
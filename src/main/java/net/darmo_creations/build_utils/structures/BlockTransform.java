@@ -0,0 +1,92 @@
+package net.darmo_creations.build_utils.structures;
+
+import net.minecraft.structure.Structure;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * A mirror and/or rotation around the origin, expressed as integer coefficients over the X and Z axes.
+ * <p>
+ * Coefficients are derived once from {@link Structure#transformAround(BlockPos, BlockMirror, BlockRotation, BlockPos)},
+ * so that positions are transformed exactly as vanilla would, without allocating any object.
+ * The Y coordinate is never affected.
+ *
+ * @param xx Coefficient of X in the new X coordinate.
+ * @param xz Coefficient of Z in the new X coordinate.
+ * @param zx Coefficient of X in the new Z coordinate.
+ * @param zz Coefficient of Z in the new Z coordinate.
+ */
+public record BlockTransform(int xx, int xz, int zx, int zz) {
+  /**
+   * The transform that leaves positions unchanged.
+   */
+  public static final BlockTransform IDENTITY = new BlockTransform(1, 0, 0, 1);
+
+  /**
+   * Returns the transform that applies the given mirror then the given rotation.
+   */
+  public static BlockTransform of(BlockMirror mirror, BlockRotation rotation) {
+    if (mirror == BlockMirror.NONE && rotation == BlockRotation.NONE) {
+      return IDENTITY;
+    }
+    BlockPos x = Structure.transformAround(new BlockPos(1, 0, 0), mirror, rotation, BlockPos.ORIGIN);
+    BlockPos z = Structure.transformAround(new BlockPos(0, 0, 1), mirror, rotation, BlockPos.ORIGIN);
+    return new BlockTransform(x.getX(), z.getX(), x.getZ(), z.getZ());
+  }
+
+  /**
+   * Indicates whether this transform leaves positions unchanged.
+   */
+  public boolean isIdentity() {
+    return this.equals(IDENTITY);
+  }
+
+  /**
+   * Returns the transform that undoes this one.
+   * As the coefficients form an orthogonal matrix, the inverse is its transpose.
+   */
+  public BlockTransform inverse() {
+    return new BlockTransform(this.xx, this.zx, this.xz, this.zz);
+  }
+
+  /**
+   * Returns the transform that applies this one then the given one.
+   */
+  public BlockTransform then(final BlockTransform other) {
+    return new BlockTransform(
+        other.xx * this.xx + other.xz * this.zx,
+        other.xx * this.xz + other.xz * this.zz,
+        other.zx * this.xx + other.zz * this.zx,
+        other.zx * this.xz + other.zz * this.zz
+    );
+  }
+
+  /**
+   * Returns the transformed X coordinate of the given position.
+   */
+  public int applyX(int x, int z) {
+    return this.xx * x + this.xz * z;
+  }
+
+  /**
+   * Returns the transformed Z coordinate of the given position.
+   */
+  public int applyZ(int x, int z) {
+    return this.zx * x + this.zz * z;
+  }
+
+  /**
+   * Transforms the given packed position.
+   *
+   * @see BlockPos#asLong(int, int, int)
+   */
+  public long apply(long packedPos) {
+    if (this.isIdentity()) {
+      return packedPos;
+    }
+    int x = BlockPos.unpackLongX(packedPos);
+    int z = BlockPos.unpackLongZ(packedPos);
+    return BlockPos.asLong(this.applyX(x, z), BlockPos.unpackLongY(packedPos), this.applyZ(x, z));
+  }
+}
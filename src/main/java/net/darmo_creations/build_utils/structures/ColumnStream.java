@@ -0,0 +1,163 @@
+package net.darmo_creations.build_utils.structures;
+
+import net.minecraft.block.Block;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bounded queue through which the columns of a copied region are handed from the server thread
+ * to an I/O thread that writes them into a file as they come.
+ * <p>
+ * Columns are captured one at a time by {@link #captureNext(ServerWorld)}, on the server thread,
+ * while {@link #write(Path)} runs on an I/O thread, see {@link StructureIO#write(ColumnStream, Path)}.
+ * At most {@link #CAPACITY} captured columns may wait to be written. The server thread never waits for the writer:
+ * callers have to check {@link #isFull()} and capture the next column later, e.g. on the next tick.
+ * Memory usage is thus bounded by a few columns whatever the size of the region.
+ *
+ * @param <T> Type of captured columns.
+ */
+public abstract class ColumnStream<T> {
+  /**
+   * Maximum number of captured columns waiting to be written.
+   */
+  public static final int CAPACITY = 4;
+  /**
+   * Number of milliseconds the writer waits before checking whether the capture was aborted.
+   */
+  private static final int POLL_INTERVAL = 50;
+
+  protected final BlockBox box;
+  protected final Block ignoredBlock;
+  /**
+   * The parts of the region to capture, in capture order.
+   */
+  protected final List<BlockBox> columns;
+  private final BlockingQueue<T> queue = new ArrayBlockingQueue<>(CAPACITY);
+  private int cursor;
+  private int blocksNb;
+  private volatile boolean aborted;
+
+  /**
+   * Creates a stream.
+   *
+   * @param box          The region to copy.
+   * @param ignoredBlock Blocks to ignore. May be null.
+   * @param columns      The parts of the region to capture one after the other.
+   */
+  protected ColumnStream(final BlockBox box, @Nullable final Block ignoredBlock, final List<BlockBox> columns) {
+    this.box = box;
+    this.ignoredBlock = ignoredBlock;
+    this.columns = columns;
+  }
+
+  /**
+   * The total number of columns to capture.
+   */
+  public int getColumnsNb() {
+    return this.columns.size();
+  }
+
+  /**
+   * The number of blocks captured so far, ignored blocks excluded.
+   */
+  public int getBlocksNb() {
+    return this.blocksNb;
+  }
+
+  /**
+   * Indicates whether the writer has to take some columns before the next one can be captured.
+   */
+  public boolean isFull() {
+    return this.queue.remainingCapacity() == 0;
+  }
+
+  /**
+   * Captures the next column and hands it to the writer. Must be called from the server thread,
+   * and only while this stream is not full. If the capture fails, the stream is aborted so that the writer stops too.
+   *
+   * @param world The world to copy blocks from.
+   * @throws IllegalStateException If all columns have been captured or the stream is full.
+   */
+  public void captureNext(ServerWorld world) {
+    if (this.cursor >= this.columns.size()) {
+      throw new IllegalStateException("all columns have been captured");
+    }
+    if (this.isFull()) {
+      throw new IllegalStateException("stream is full");
+    }
+    boolean done = false;
+    try {
+      T column = this.capture(world, this.columns.get(this.cursor));
+      this.queue.add(column);
+      this.cursor++;
+      done = true;
+    } finally {
+      if (!done) {
+        this.abort();
+      }
+    }
+  }
+
+  /**
+   * Stops the writer, which then fails without replacing the target file.
+   */
+  public void abort() {
+    this.aborted = true;
+  }
+
+  /**
+   * Captures the blocks of the given column. Called from the server thread.
+   * Implementations must report the number of captured blocks through {@link #addBlocks(int)}.
+   *
+   * @param world  The world to copy blocks from.
+   * @param column The part of the region to capture.
+   * @return The captured column.
+   */
+  protected abstract T capture(ServerWorld world, final BlockBox column);
+
+  /**
+   * Adds to the number of captured blocks. Must only be called from {@link #capture(ServerWorld, BlockBox)}.
+   */
+  protected void addBlocks(int blocksNb) {
+    this.blocksNb += blocksNb;
+  }
+
+  /**
+   * Writes the columns of this stream into the given file, as they are captured.
+   * Must not be called from the server thread, as it waits for columns to be captured.
+   *
+   * @param file The file to write to.
+   * @throws IOException If any I/O error occurs or the capture was aborted.
+   */
+  public abstract void write(final Path file) throws IOException;
+
+  /**
+   * Takes the next column, waiting until it is captured. Called from the writer.
+   * Once the last column has been taken, all data written by the server thread during the capture is visible.
+   *
+   * @throws IOException If the capture was aborted or the thread was interrupted.
+   */
+  protected T take() throws IOException {
+    try {
+      T column;
+      while ((column = this.queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS)) == null) {
+        if (this.aborted) {
+          throw new IOException("capture aborted");
+        }
+      }
+      return column;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+}
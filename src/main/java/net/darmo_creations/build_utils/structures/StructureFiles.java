@@ -0,0 +1,76 @@
+package net.darmo_creations.build_utils.structures;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.FileNameUtil;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.WorldSavePath;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * This class defines functions to locate structure files, following the rules of vanilla’s structure manager.
+ */
+public final class StructureFiles {
+  /**
+   * Extension of vanilla structure files.
+   */
+  public static final String STRUCTURE_EXTENSION = ".nbt";
+  /**
+   * Extension of {@link StructureSnapshot} files.
+   */
+  public static final String SNAPSHOT_EXTENSION = ".bsnap";
+
+  /**
+   * Returns the path of the structure file with the given ID in the world’s "generated" directory.
+   *
+   * @param server The server.
+   * @param id     Structure’s ID.
+   * @return The path.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  public static Path getStructurePath(final MinecraftServer server, final Identifier id) {
+    return getPath(server, id, "structures", STRUCTURE_EXTENSION);
+  }
+
+  /**
+   * Returns the path of the snapshot file with the given ID in the world’s "generated" directory.
+   * Snapshots are stored in a "snapshots" directory next to the "structures" one.
+   *
+   * @param server The server.
+   * @param id     Snapshot’s ID.
+   * @return The path.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  public static Path getSnapshotPath(final MinecraftServer server, final Identifier id) {
+    return getPath(server, id, "snapshots", SNAPSHOT_EXTENSION);
+  }
+
+  /**
+   * Returns the path of a file with the given ID, directory and extension in the world’s "generated" directory.
+   *
+   * @param server    The server.
+   * @param id        File’s ID.
+   * @param directory Name of the directory, within the ID’s namespace directory.
+   * @param extension File’s extension.
+   * @return The path.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  static Path getPath(final MinecraftServer server, final Identifier id, final String directory, final String extension) {
+    Path generatedPath = server.getSavePath(WorldSavePath.GENERATED).normalize();
+    try {
+      Path directoryPath = generatedPath.resolve(id.getNamespace()).resolve(directory);
+      Path path = FileNameUtil.getResourcePath(directoryPath, id.getPath(), extension);
+      if (path.startsWith(generatedPath) && FileNameUtil.isNormal(path) && FileNameUtil.isAllowedName(path)) {
+        return path;
+      }
+      throw new InvalidIdentifierException("Invalid resource path: " + path);
+    } catch (InvalidPathException e) {
+      throw new InvalidIdentifierException("Invalid resource path: " + id, e);
+    }
+  }
+
+  private StructureFiles() {
+  }
+}
@@ -0,0 +1,157 @@
+package net.darmo_creations.build_utils.structures;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mojang.datafixers.util.Either;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs structure file reads and writes off the server thread.
+ * <p>
+ * Operations are run by a small pool of daemon threads fed by a bounded queue. When the queue is full,
+ * new operations fail immediately with a {@link RejectedExecutionException} instead of piling up.
+ * Unless stated otherwise, returned futures complete on I/O threads: callers that need to touch the world should resume
+ * on the server thread, e.g. through {@link CompletableFuture#whenCompleteAsync(java.util.function.BiConsumer, Executor)}
+ * with the server as executor.
+ * <p>
+ * Pending operations are waited for when the server stops, so that no structure file is left half-written.
+ */
+public final class StructureIO {
+  private static final int THREADS_NB = 2;
+  private static final int QUEUE_CAPACITY = 32;
+  /**
+   * Maximum number of seconds to wait for pending operations when the server stops.
+   */
+  private static final int SHUTDOWN_TIMEOUT = 30;
+
+  private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+      THREADS_NB, THREADS_NB,
+      0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+      new ThreadFactoryBuilder()
+          .setNameFormat("BuildUtils-IO-%d")
+          .setDaemon(true)
+          .setUncaughtExceptionHandler((thread, e) -> BuildUtils.LOGGER.error("Uncaught exception in thread {}", thread.getName(), e))
+          .build(),
+      new ThreadPoolExecutor.AbortPolicy()
+  );
+
+  /**
+   * Registers the server lifecycle handlers. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerLifecycleEvents.SERVER_STOPPING.register(server -> awaitPending());
+  }
+
+  /**
+   * Loads the structure with the given ID.
+   * If a snapshot with this ID is more recent than the structure file, it is opened instead of loading the template.
+   * Templates are loaded through the {@link TemplateCache}. Those that have to go through the server’s structure manager,
+   * which is not thread-safe, are loaded on the server thread. The returned future therefore completes on that thread.
+   *
+   * @param server   The server.
+   * @param id       Structure’s ID.
+   * @param mirror   The mirror to apply to templates.
+   * @param rotation The rotation to apply to templates after mirroring.
+   * @return A future holding either the transformed template or the untransformed snapshot,
+   * or an empty value if the structure does not exist or could not be read.
+   */
+  public static CompletableFuture<Optional<Either<Template, StructureSnapshot>>> loadStructure(
+      MinecraftServer server,
+      final Identifier id,
+      final BlockMirror mirror,
+      final BlockRotation rotation
+  ) {
+    return submit(() -> {
+      Optional<StructureSnapshot> snapshot = StructureSnapshot.load(server, id);
+      if (snapshot.isPresent()) {
+        return Optional.of(Either.<Template, StructureSnapshot>right(snapshot.get()));
+      }
+      return TemplateCache.getFromFile(server, id, mirror, rotation).map(Either::<Template, StructureSnapshot>left);
+    }).thenComposeAsync(structure -> CompletableFuture.completedFuture(structure.isPresent()
+        ? structure
+        : TemplateCache.getFromManager(server, id, mirror, rotation).map(Either::<Template, StructureSnapshot>left)
+    ), server);
+  }
+
+  /**
+   * Writes the columns of the given stream into a file as they are captured, see {@link ColumnStream}.
+   * The columns have to be captured on the server thread, e.g. by a {@link net.darmo_creations.build_utils.bulk_edit.CopyJob}.
+   *
+   * @param stream The stream to take columns from.
+   * @param file   The file to write to.
+   * @return A future that completes once the file has been written. It completes exceptionally
+   * with an {@link UncheckedIOException} if any I/O error occurs or the capture is aborted.
+   */
+  public static CompletableFuture<Void> write(final ColumnStream<?> stream, final Path file) {
+    CompletableFuture<Void> write = submit(() -> {
+      stream.write(file);
+      return null;
+    });
+    if (write.isCompletedExceptionally()) {
+      stream.abort();
+    }
+    return write;
+  }
+
+  private static <T> CompletableFuture<T> submit(final IOSupplier<T> task) {
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return task.get();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, EXECUTOR);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Blocks until all queued operations are done, or the timeout is reached.
+   */
+  private static void awaitPending() {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT);
+    while (!EXECUTOR.getQueue().isEmpty() || EXECUTOR.getActiveCount() != 0) {
+      if (System.nanoTime() > deadline) {
+        BuildUtils.LOGGER.warn("Gave up waiting for {} pending structure file operations",
+            EXECUTOR.getQueue().size() + EXECUTOR.getActiveCount());
+        return;
+      }
+      try {
+        //noinspection BusyWait
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * A supplier that may throw an {@link IOException}.
+   */
+  @FunctionalInterface
+  private interface IOSupplier<T> {
+    T get() throws IOException;
+  }
+
+  private StructureIO() {
+  }
+}
@@ -0,0 +1,542 @@
+package net.darmo_creations.build_utils.structures;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.chunk.WorldChunk;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A region of a world stored in a file that is read through memory mapping instead of being deserialized.
+ * This format is meant for copies that are too large for vanilla structure files.
+ * <p>
+ * Blocks are grouped in cells of 16×16×16 blocks, starting from the region’s lowest corner.
+ * Files are laid out as follows, all values being big-endian:
+ * <li>A header of {@link #HEADER_SIZE} bytes: magic number, format version, data version, size along X, Y and Z,
+ * number of blocks, length of the palette, offset and length of the block entities data, then 4 reserved bytes.
+ * <li>The palette, as an uncompressed NBT compound holding a list of block states.
+ * <li>The cell offset table: the offset in the file of each cell, as a long, ordered by Y then Z then X.
+ * Cells that only contain ignored blocks are not stored and have an offset of 0.
+ * <li>The cells: number of entries in the cell’s palette (int), number of bits per block (int), the cell’s palette
+ * as global palette indices (ints, -1 for ignored blocks), then the blocks’ local palette indices packed into longs.
+ * Indices never span two longs. If the cell’s palette has a single entry, no bits are used and no longs are stored.
+ * <li>The block entities data, as an uncompressed NBT compound.
+ * <p>
+ * Snapshots are written by a {@link Stream}, one column of cells at a time, so that regions never have to be
+ * held in memory as a whole.
+ * <p>
+ * Only the palette and block entities are deserialized when a snapshot is opened.
+ * Blocks are read straight from the mapped file, so only the cells that are actually accessed are paged in.
+ * Snapshots may be read from several threads at once.
+ * <p>
+ * Files larger than 2 GiB are not supported.
+ */
+public final class StructureSnapshot {
+  /**
+   * Volume above which regions should be copied into snapshots instead of structure files.
+   * Larger regions would not fit in the {@link TemplateCache} anyway.
+   */
+  public static final long MIN_VOLUME = TemplateCache.MAX_WEIGHT;
+
+  private static final int MAGIC = 0x42534E50; // "BSNP"
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 48;
+  private static final int CELL_SIZE = 16;
+  private static final int CELL_VOLUME = CELL_SIZE * CELL_SIZE * CELL_SIZE;
+
+  private static final String PALETTE_KEY = "palette";
+  private static final String BLOCK_ENTITIES_KEY = "block_entities";
+  private static final String POS_KEY = "pos";
+  private static final String NBT_KEY = "nbt";
+
+  private final ByteBuffer buffer;
+  private final int dataVersion;
+  private final Vec3i size;
+  private final int blocksNb;
+  private final List<BlockState> palette;
+  private final int cellsX;
+  private final int cellsZ;
+  private final int tableOffset;
+  private final Long2ObjectMap<NbtCompound> blockEntities;
+
+  private StructureSnapshot(final ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a snapshot file");
+    }
+    int formatVersion = buffer.getInt(4);
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException("Unsupported snapshot format version " + formatVersion);
+    }
+    this.dataVersion = buffer.getInt(8);
+    this.size = new Vec3i(buffer.getInt(12), buffer.getInt(16), buffer.getInt(20));
+    this.blocksNb = buffer.getInt(24);
+    int paletteLength = buffer.getInt(28);
+    long blockEntitiesOffset = buffer.getLong(32);
+    int blockEntitiesLength = buffer.getInt(40);
+    this.cellsX = getCellsNb(this.size.getX());
+    this.cellsZ = getCellsNb(this.size.getZ());
+    this.tableOffset = HEADER_SIZE + paletteLength;
+    long cellsNb = (long) this.cellsX * getCellsNb(this.size.getY()) * this.cellsZ;
+    long dataOffset = this.tableOffset + 8 * cellsNb;
+    if (this.size.getX() <= 0 || this.size.getY() <= 0 || this.size.getZ() <= 0 || paletteLength < 0
+        || dataOffset > blockEntitiesOffset || blockEntitiesLength < 0
+        || blockEntitiesOffset + blockEntitiesLength > buffer.capacity()) {
+      throw new IOException("Malformed snapshot file");
+    }
+    for (int i = 0; i < cellsNb; i++) {
+      long offset = buffer.getLong(this.tableOffset + 8 * i);
+      if (offset != 0 && (offset < dataOffset || offset >= blockEntitiesOffset)) {
+        throw new IOException("Malformed snapshot file");
+      }
+    }
+
+    NbtCompound paletteTag = readCompound(buffer, HEADER_SIZE, paletteLength);
+    List<BlockState> palette = new ArrayList<>();
+    for (NbtElement element : paletteTag.getList(PALETTE_KEY, NbtElement.COMPOUND_TYPE)) {
+      palette.add(NbtHelper.toBlockState((NbtCompound) element));
+    }
+    this.palette = List.copyOf(palette);
+
+    this.blockEntities = new Long2ObjectOpenHashMap<>();
+    NbtCompound blockEntitiesTag = readCompound(buffer, (int) blockEntitiesOffset, blockEntitiesLength);
+    for (NbtElement element : blockEntitiesTag.getList(BLOCK_ENTITIES_KEY, NbtElement.COMPOUND_TYPE)) {
+      NbtCompound entry = (NbtCompound) element;
+      int[] pos = entry.getIntArray(POS_KEY);
+      if (pos.length == 3) {
+        this.blockEntities.put(BlockPos.asLong(pos[0], pos[1], pos[2]), entry.getCompound(NBT_KEY));
+      }
+    }
+  }
+
+  /**
+   * Loads the snapshot with the given ID, unless the structure file with the same ID is more recent.
+   *
+   * @param server The server.
+   * @param id     Snapshot’s ID.
+   * @return The snapshot or an empty value if there is no snapshot, it is older than the structure file,
+   * it was saved by another game version or it could not be read.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  public static Optional<StructureSnapshot> load(MinecraftServer server, final Identifier id) {
+    Path path = StructureFiles.getSnapshotPath(server, id);
+    Path structurePath = StructureFiles.getStructurePath(server, id);
+    try {
+      if (!Files.isRegularFile(path) || Files.isRegularFile(structurePath)
+          && Files.getLastModifiedTime(structurePath).compareTo(Files.getLastModifiedTime(path)) > 0) {
+        return Optional.empty();
+      }
+      StructureSnapshot snapshot = open(path);
+      if (snapshot.dataVersion != SharedConstants.getGameVersion().getWorldVersion()) {
+        BuildUtils.LOGGER.warn("Snapshot {} was saved by another game version, ignoring it", id);
+        return Optional.empty();
+      }
+      return Optional.of(snapshot);
+    } catch (IOException e) {
+      BuildUtils.LOGGER.error("Could not read snapshot {}", id, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Maps the given snapshot file into memory.
+   *
+   * @param file The file to open.
+   * @return The snapshot.
+   * @throws IOException If any I/O error occurs, the file is too large or it is malformed.
+   */
+  public static StructureSnapshot open(final Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot file is too large");
+      }
+      // The mapping remains valid once the channel is closed
+      return new StructureSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+    }
+  }
+
+  /**
+   * The size of the snapshot. It is not affected by transformations.
+   */
+  public Vec3i getSize() {
+    return this.size;
+  }
+
+  /**
+   * The number of stored blocks, ignored blocks excluded.
+   */
+  public int getBlocksNb() {
+    return this.blocksNb;
+  }
+
+  /**
+   * The global palette of this snapshot.
+   */
+  public List<BlockState> getPalette() {
+    return this.palette;
+  }
+
+  /**
+   * Returns the region occupied by this snapshot once pasted at the given position with the given transformations.
+   *
+   * @param origin   Position the snapshot is pasted at.
+   * @param mirror   The mirror to apply.
+   * @param rotation The rotation to apply after mirroring.
+   * @return The region.
+   */
+  public BlockBox getBoundingBox(final BlockPos origin, BlockMirror mirror, BlockRotation rotation) {
+    BlockTransform transform = BlockTransform.of(mirror, rotation);
+    int maxX = this.size.getX() - 1;
+    int maxZ = this.size.getZ() - 1;
+    return BlockBox.create(origin, origin.add(transform.applyX(maxX, maxZ), this.size.getY() - 1, transform.applyZ(maxX, maxZ)));
+  }
+
+  /**
+   * Returns the global palette index of the block at the given position.
+   *
+   * @param x Position relative to the snapshot’s lowest corner.
+   * @param y Position relative to the snapshot’s lowest corner.
+   * @param z Position relative to the snapshot’s lowest corner.
+   * @return The index, or -1 if the block was ignored or the position is outside of the snapshot.
+   */
+  public int getStateIndex(int x, int y, int z) {
+    if (x < 0 || y < 0 || z < 0 || x >= this.size.getX() || y >= this.size.getY() || z >= this.size.getZ()) {
+      return -1;
+    }
+    int cell = ((y >> 4) * this.cellsZ + (z >> 4)) * this.cellsX + (x >> 4);
+    int offset = (int) this.buffer.getLong(this.tableOffset + 8 * cell);
+    if (offset == 0) {
+      return -1;
+    }
+    int paletteSize = this.buffer.getInt(offset);
+    int bits = this.buffer.getInt(offset + 4);
+    int localIndex = 0;
+    if (bits != 0) {
+      int i = (y & 15) << 8 | (z & 15) << 4 | x & 15;
+      int valuesPerLong = 64 / bits;
+      long value = this.buffer.getLong(offset + 8 + 4 * paletteSize + 8 * (i / valuesPerLong));
+      localIndex = (int) (value >>> (i % valuesPerLong) * bits) & (1 << bits) - 1;
+    }
+    return this.buffer.getInt(offset + 8 + 4 * localIndex);
+  }
+
+  /**
+   * Returns the data of the block entity at the given position.
+   *
+   * @param x Position relative to the snapshot’s lowest corner.
+   * @param y Position relative to the snapshot’s lowest corner.
+   * @param z Position relative to the snapshot’s lowest corner.
+   * @return The data or null if there is no block entity at this position. It must not be modified.
+   */
+  @Nullable
+  public NbtCompound getBlockEntityNbt(int x, int y, int z) {
+    return this.blockEntities.get(BlockPos.asLong(x, y, z));
+  }
+
+  private static int getCellsNb(int length) {
+    return (length + CELL_SIZE - 1) / CELL_SIZE;
+  }
+
+  private static byte[] writeCompound(final NbtCompound nbt) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      NbtIo.write(nbt, out);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static NbtCompound readCompound(final ByteBuffer buffer, int offset, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      return NbtIo.read(in);
+    }
+  }
+
+  /**
+   * The packed blocks of a single cell.
+   *
+   * @param palette Global palette index of each entry of the cell’s palette. -1 for ignored blocks.
+   * @param bits    Number of bits per block.
+   * @param data    Packed local palette indices.
+   */
+  private record Cell(int[] palette, int bits, long[] data) {
+    /**
+     * Packs the given global palette indices of a cell’s blocks.
+     */
+    static Cell pack(final int[] states) {
+      Int2IntMap localIndices = new Int2IntOpenHashMap();
+      int[] palette = new int[CELL_VOLUME];
+      for (int state : states) {
+        if (!localIndices.containsKey(state)) {
+          palette[localIndices.size()] = state;
+          localIndices.put(state, localIndices.size());
+        }
+      }
+      int paletteSize = localIndices.size();
+      int bits = paletteSize == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+      long[] data;
+      if (bits == 0) {
+        data = new long[0];
+      } else {
+        int valuesPerLong = 64 / bits;
+        data = new long[(CELL_VOLUME + valuesPerLong - 1) / valuesPerLong];
+        for (int i = 0; i < CELL_VOLUME; i++) {
+          data[i / valuesPerLong] |= (long) localIndices.get(states[i]) << (i % valuesPerLong) * bits;
+        }
+      }
+      return new Cell(Arrays.copyOf(palette, paletteSize), bits, data);
+    }
+  }
+
+  /**
+   * The packed cells of a column of cells, from bottom to top.
+   *
+   * @param index         Index of the column’s lowest cell in the cell offset table.
+   * @param cells         Packed cells. Null for cells that only contain ignored blocks.
+   * @param blockEntities Block entities data, keyed by position relative to the region’s lowest corner.
+   */
+  private record CellColumn(int index, Cell[] cells, Long2ObjectMap<NbtCompound> blockEntities) {
+  }
+
+  /**
+   * A copy of a region into a snapshot file.
+   * <p>
+   * Each column of cells is captured then packed on the server thread. The writer appends the cells to a temporary file
+   * as they come and only keeps their offsets. As the palette precedes the cells in snapshot files, the final file
+   * is assembled once all columns have been written. Block entities are also appended to a temporary file.
+   */
+  public static final class Stream extends ColumnStream<CellColumn> {
+    private final Vec3i size;
+    private final int cellsX;
+    private final int cellsY;
+    private final int cellsZ;
+    /**
+     * The global palette. It is only updated by the server thread, and read by the writer once all columns are taken.
+     */
+    private final Reference2IntMap<BlockState> palette = new Reference2IntLinkedOpenHashMap<>();
+
+    /**
+     * Creates a stream for the given region.
+     *
+     * @param box          The region to copy.
+     * @param ignoredBlock Blocks to ignore. May be null.
+     */
+    public Stream(final BlockBox box, @Nullable final Block ignoredBlock) {
+      super(box, ignoredBlock, getColumns(box));
+      this.size = new Vec3i(box.getBlockCountX(), box.getBlockCountY(), box.getBlockCountZ());
+      this.cellsX = getCellsNb(this.size.getX());
+      this.cellsY = getCellsNb(this.size.getY());
+      this.cellsZ = getCellsNb(this.size.getZ());
+    }
+
+    /**
+     * Splits the given region into columns of cells, in X then Z order.
+     */
+    private static List<BlockBox> getColumns(final BlockBox box) {
+      List<BlockBox> columns = new ArrayList<>();
+      for (int x = box.getMinX(); x <= box.getMaxX(); x += CELL_SIZE) {
+        for (int z = box.getMinZ(); z <= box.getMaxZ(); z += CELL_SIZE) {
+          columns.add(new BlockBox(
+              x, box.getMinY(), z,
+              Math.min(box.getMaxX(), x + CELL_SIZE - 1), box.getMaxY(), Math.min(box.getMaxZ(), z + CELL_SIZE - 1)
+          ));
+        }
+      }
+      return columns;
+    }
+
+    /**
+     * Captures the blocks of a column of cells. Blocks of the ignored type are not captured. Entities are not captured.
+     */
+    @Override
+    protected CellColumn capture(ServerWorld world, final BlockBox column) {
+      int cellX = (column.getMinX() - this.box.getMinX()) >> 4;
+      int cellZ = (column.getMinZ() - this.box.getMinZ()) >> 4;
+      Cell[] cells = new Cell[this.cellsY];
+      Long2ObjectMap<NbtCompound> blockEntities = new Long2ObjectOpenHashMap<>();
+      int blocksNb = 0;
+      int[] states = new int[CELL_VOLUME];
+      BlockPos.Mutable pos = new BlockPos.Mutable();
+      WorldChunk chunk = null;
+
+      for (int cellY = 0; cellY < this.cellsY; cellY++) {
+        boolean empty = true;
+        for (int i = 0; i < CELL_VOLUME; i++) {
+          int x = cellX << 4 | i & 15;
+          int y = cellY << 4 | i >> 8;
+          int z = cellZ << 4 | i >> 4 & 15;
+          states[i] = -1;
+          if (x >= this.size.getX() || y >= this.size.getY() || z >= this.size.getZ()) {
+            continue;
+          }
+          pos.set(this.box.getMinX() + x, this.box.getMinY() + y, this.box.getMinZ() + z);
+          if (chunk == null || chunk.getPos().x != pos.getX() >> 4 || chunk.getPos().z != pos.getZ() >> 4) {
+            chunk = world.getChunk(pos.getX() >> 4, pos.getZ() >> 4);
+          }
+          BlockState state = chunk.getBlockState(pos);
+          if (this.ignoredBlock != null && state.isOf(this.ignoredBlock)) {
+            continue;
+          }
+          this.palette.putIfAbsent(state, this.palette.size());
+          states[i] = this.palette.getInt(state);
+          empty = false;
+          blocksNb++;
+          if (state.hasBlockEntity()) {
+            BlockEntity blockEntity = chunk.getBlockEntity(pos);
+            if (blockEntity != null) {
+              blockEntities.put(BlockPos.asLong(x, y, z), blockEntity.createNbtWithId());
+            }
+          }
+        }
+        if (!empty) {
+          cells[cellY] = Cell.pack(states);
+        }
+      }
+      this.addBlocks(blocksNb);
+      return new CellColumn(cellZ * this.cellsX + cellX, cells, blockEntities);
+    }
+
+    /**
+     * Writes the columns of this stream into a snapshot file, as they are captured.
+     * <p>
+     * The file is first written to a temporary file that then replaces the target file.
+     *
+     * @param file The file to write to.
+     * @throws IOException If any I/O error occurs, the capture was aborted or the file would be too large.
+     */
+    @Override
+    public void write(final Path file) throws IOException {
+      Files.createDirectories(file.getParent());
+      Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+      Path cellsFile = file.resolveSibling(file.getFileName() + ".cells.tmp");
+      Path blockEntitiesFile = file.resolveSibling(file.getFileName() + ".block_entities.tmp");
+      int cellsNb = this.cellsX * this.cellsY * this.cellsZ;
+      int layerSize = this.cellsX * this.cellsZ;
+      // Offsets relative to the start of the cells, -1 for cells that are not stored
+      long[] offsets = new long[cellsNb];
+      Arrays.fill(offsets, -1);
+      long cellsSize = 0;
+      int blockEntitiesNb = 0;
+      try {
+        try (DataOutputStream cellsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cellsFile)));
+             DataOutputStream blockEntitiesOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(blockEntitiesFile)))) {
+          for (int n = 0; n < this.columns.size(); n++) {
+            CellColumn column = this.take();
+            for (int cellY = 0; cellY < column.cells().length; cellY++) {
+              Cell cell = column.cells()[cellY];
+              if (cell == null) {
+                continue;
+              }
+              offsets[cellY * layerSize + column.index()] = cellsSize;
+              cellsOut.writeInt(cell.palette.length);
+              cellsOut.writeInt(cell.bits);
+              for (int index : cell.palette) {
+                cellsOut.writeInt(index);
+              }
+              for (long value : cell.data) {
+                cellsOut.writeLong(value);
+              }
+              cellsSize += 8 + 4L * cell.palette.length + 8L * cell.data.length;
+            }
+            for (Long2ObjectMap.Entry<NbtCompound> blockEntity : column.blockEntities().long2ObjectEntrySet()) {
+              long pos = blockEntity.getLongKey();
+              NbtCompound entry = new NbtCompound();
+              entry.putIntArray(POS_KEY, new int[]{BlockPos.unpackLongX(pos), BlockPos.unpackLongY(pos), BlockPos.unpackLongZ(pos)});
+              entry.put(NBT_KEY, blockEntity.getValue());
+              entry.write(blockEntitiesOut);
+              blockEntitiesNb++;
+            }
+          }
+        }
+
+        // All columns have been taken, the palette and the number of blocks are final
+        NbtList paletteList = new NbtList();
+        this.palette.keySet().forEach(state -> paletteList.add(NbtHelper.fromBlockState(state)));
+        NbtCompound paletteTag = new NbtCompound();
+        paletteTag.put(PALETTE_KEY, paletteList);
+        byte[] paletteData = writeCompound(paletteTag);
+
+        long dataOffset = HEADER_SIZE + paletteData.length + 8L * cellsNb;
+        long blockEntitiesOffset = dataOffset + cellsSize;
+        // Root compound type and empty name, list type, name, element type and length, entries, then end tag
+        long blockEntitiesLength = 1 + 2 + 1 + 2 + BLOCK_ENTITIES_KEY.length() + 1 + 4 + Files.size(blockEntitiesFile) + 1;
+        if (blockEntitiesOffset + blockEntitiesLength > Integer.MAX_VALUE) {
+          throw new IOException("Snapshot file would be too large");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+          out.writeInt(MAGIC);
+          out.writeInt(FORMAT_VERSION);
+          out.writeInt(SharedConstants.getGameVersion().getWorldVersion());
+          out.writeInt(this.size.getX());
+          out.writeInt(this.size.getY());
+          out.writeInt(this.size.getZ());
+          out.writeInt(this.getBlocksNb());
+          out.writeInt(paletteData.length);
+          out.writeLong(blockEntitiesOffset);
+          out.writeInt((int) blockEntitiesLength);
+          out.writeInt(0);
+          out.write(paletteData);
+          for (long offset : offsets) {
+            out.writeLong(offset < 0 ? 0 : dataOffset + offset);
+          }
+          Files.copy(cellsFile, out);
+
+          out.writeByte(NbtElement.COMPOUND_TYPE);
+          out.writeUTF("");
+          out.writeByte(NbtElement.LIST_TYPE);
+          out.writeUTF(BLOCK_ENTITIES_KEY);
+          out.writeByte(NbtElement.COMPOUND_TYPE);
+          out.writeInt(blockEntitiesNb);
+          Files.copy(blockEntitiesFile, out);
+          out.writeByte(NbtElement.END_TYPE);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        Files.deleteIfExists(cellsFile);
+        Files.deleteIfExists(blockEntitiesFile);
+      }
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package net.darmo_creations.build_utils.structures;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.AbstractNbtNumber;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtTagSizeTracker;
+import net.minecraft.nbt.NbtTypes;
+import net.minecraft.structure.Structure;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads structure files without building a {@link Structure} object nor the whole NBT tree.
+ * <p>
+ * Top-level entries of the file are read one by one. The "blocks" list, which makes up most of the file,
+ * is read element by element and each block is handed to a {@link Visitor} as soon as it has been read.
+ * Entities are skipped.
+ * <p>
+ * When a file contains several palettes, only the first one is used.
+ */
+public final class StructureStreamReader {
+  private static final String DATA_VERSION_KEY = "DataVersion";
+  private static final String SIZE_KEY = "size";
+  private static final String PALETTE_KEY = "palette";
+  private static final String PALETTES_KEY = "palettes";
+  private static final String BLOCKS_KEY = "blocks";
+  private static final String POS_KEY = "pos";
+  private static final String STATE_KEY = "state";
+  private static final String NBT_KEY = "nbt";
+
+  /**
+   * Reads the given gzip-compressed structure file.
+   *
+   * @param file    The file to read.
+   * @param visitor The visitor to notify.
+   * @throws IOException If any I/O error occurs or the file is malformed.
+   */
+  public static void read(final Path file, Visitor visitor) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readByte() != NbtElement.COMPOUND_TYPE) {
+        throw new IOException("root tag must be a compound");
+      }
+      in.readUTF();
+      byte type;
+      while ((type = in.readByte()) != NbtElement.END_TYPE) {
+        String key = in.readUTF();
+        if (BLOCKS_KEY.equals(key) && type == NbtElement.LIST_TYPE) {
+          byte elementType = in.readByte();
+          int blocksNb = in.readInt();
+          if (blocksNb > 0 && elementType != NbtElement.COMPOUND_TYPE) {
+            throw new IOException("invalid blocks list type: " + elementType);
+          }
+          for (int i = 0; i < blocksNb; i++) {
+            visitBlock(NbtCompound.TYPE.read(in, 2, NbtTagSizeTracker.EMPTY), visitor);
+          }
+        } else {
+          visitEntry(key, NbtTypes.byId(type).read(in, 1, NbtTagSizeTracker.EMPTY), visitor);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads structure data that has already been loaded as NBT.
+   *
+   * @param nbt     The data to read.
+   * @param visitor The visitor to notify.
+   */
+  public static void read(final NbtCompound nbt, Visitor visitor) {
+    for (String key : nbt.getKeys()) {
+      NbtElement element = nbt.get(key);
+      if (BLOCKS_KEY.equals(key) && element instanceof NbtList blocks) {
+        for (int i = 0; i < blocks.size(); i++) {
+          visitBlock(blocks.getCompound(i), visitor);
+        }
+      } else {
+        visitEntry(key, element, visitor);
+      }
+    }
+  }
+
+  private static void visitEntry(final String key, final NbtElement element, Visitor visitor) {
+    switch (key) {
+      case DATA_VERSION_KEY -> {
+        if (element instanceof AbstractNbtNumber number) {
+          visitor.visitDataVersion(number.intValue());
+        }
+      }
+      case SIZE_KEY -> {
+        if (element instanceof NbtList list) {
+          visitor.visitSize(new Vec3i(list.getInt(0), list.getInt(1), list.getInt(2)));
+        }
+      }
+      case PALETTE_KEY -> {
+        if (element instanceof NbtList list) {
+          visitor.visitPalette(readPalette(list));
+        }
+      }
+      case PALETTES_KEY -> {
+        if (element instanceof NbtList list && !list.isEmpty()) {
+          visitor.visitPalette(readPalette(list.getList(0)));
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  private static List<BlockState> readPalette(final NbtList list) {
+    List<BlockState> palette = new ArrayList<>(list.size());
+    for (int i = 0; i < list.size(); i++) {
+      palette.add(NbtHelper.toBlockState(list.getCompound(i)));
+    }
+    return palette;
+  }
+
+  private static void visitBlock(final NbtCompound block, Visitor visitor) {
+    NbtList pos = block.getList(POS_KEY, NbtElement.INT_TYPE);
+    visitor.visitBlock(
+        new BlockPos(pos.getInt(0), pos.getInt(1), pos.getInt(2)),
+        block.getInt(STATE_KEY),
+        block.contains(NBT_KEY, NbtElement.COMPOUND_TYPE) ? block.getCompound(NBT_KEY) : null
+    );
+  }
+
+  /**
+   * Receives the data of a structure file as it is being read.
+   * Entries are visited in the order they appear in the file, so blocks may be visited before the palette.
+   */
+  public interface Visitor {
+    /**
+     * Called when the data version of the file has been read.
+     */
+    void visitDataVersion(int dataVersion);
+
+    /**
+     * Called when the size of the structure has been read.
+     */
+    void visitSize(Vec3i size);
+
+    /**
+     * Called when the palette of the structure has been read.
+     */
+    void visitPalette(List<BlockState> palette);
+
+    /**
+     * Called for each block of the structure.
+     *
+     * @param pos        Block’s position, relative to the structure’s origin.
+     * @param stateIndex Index of the block’s state in the palette.
+     * @param nbt        Block entity data. May be null.
+     */
+    void visitBlock(BlockPos pos, int stateIndex, @Nullable NbtCompound nbt);
+  }
+
+  private StructureStreamReader() {
+  }
+}
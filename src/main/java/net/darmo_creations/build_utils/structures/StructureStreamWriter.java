@@ -0,0 +1,222 @@
+package net.darmo_creations.build_utils.structures;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtInt;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.structure.Structure;
+import net.minecraft.structure.StructureManager;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.WorldChunk;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies regions of a world into structure files without building a {@link Structure} object.
+ * <p>
+ * Copies go through a {@link Stream}: the region is captured chunk column by chunk column on the server thread,
+ * while an I/O thread writes each block of each column in the NBT format used by {@link StructureManager}.
+ * <p>
+ * As the palette and the number of blocks precede blocks in structure files, blocks are first written to
+ * a temporary file, that is then appended to the final file once all columns have been written.
+ */
+public final class StructureStreamWriter {
+  private static final String DATA_VERSION_KEY = "DataVersion";
+  private static final String SIZE_KEY = "size";
+  private static final String ENTITIES_KEY = "entities";
+  private static final String PALETTE_KEY = "palette";
+  private static final String BLOCKS_KEY = "blocks";
+  private static final String POS_KEY = "pos";
+  private static final String STATE_KEY = "state";
+  private static final String NBT_KEY = "nbt";
+
+  /**
+   * Captures the blocks of a chunk column. Blocks of the ignored type are not captured. Entities are not captured.
+   */
+  private static Column capture(ServerWorld world, final BlockBox column, @Nullable final Block ignoredBlock) {
+    WorldChunk chunk = world.getChunk(column.getMinX() >> 4, column.getMinZ() >> 4);
+    BlockPos.Mutable pos = new BlockPos.Mutable();
+    BlockState[] states = new BlockState[column.getBlockCountX() * column.getBlockCountY() * column.getBlockCountZ()];
+    Int2ObjectMap<NbtCompound> blockEntities = new Int2ObjectOpenHashMap<>();
+    int blocksNb = 0;
+    int index = 0;
+    for (int y = column.getMinY(); y <= column.getMaxY(); y++) {
+      for (int z = column.getMinZ(); z <= column.getMaxZ(); z++) {
+        for (int x = column.getMinX(); x <= column.getMaxX(); x++, index++) {
+          BlockState state = chunk.getBlockState(pos.set(x, y, z));
+          if (ignoredBlock != null && state.isOf(ignoredBlock)) {
+            continue;
+          }
+          states[index] = state;
+          blocksNb++;
+          if (state.hasBlockEntity()) {
+            BlockEntity blockEntity = chunk.getBlockEntity(pos);
+            if (blockEntity != null) {
+              blockEntities.put(index, blockEntity.createNbtWithId());
+            }
+          }
+        }
+      }
+    }
+    return new Column(states, blockEntities, blocksNb);
+  }
+
+  /**
+   * Writes the columns of the given stream into a structure file, as they are captured.
+   * <p>
+   * The file is first written to a temporary file that then replaces the target file.
+   *
+   * @param stream The stream to take columns from.
+   * @param file   The file to write to.
+   * @throws IOException If any I/O error occurs or the capture was aborted.
+   */
+  private static void write(Stream stream, final Path file) throws IOException {
+    BlockBox box = stream.box;
+    Files.createDirectories(file.getParent());
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    Path blocksFile = file.resolveSibling(file.getFileName() + ".blocks.tmp");
+    Reference2IntMap<BlockState> palette = new Reference2IntLinkedOpenHashMap<>();
+    int blocksNb = 0;
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(blocksFile)))) {
+        for (BlockBox column : stream.columns) {
+          Column data = stream.take();
+          int index = 0;
+          for (int y = column.getMinY(); y <= column.getMaxY(); y++) {
+            for (int z = column.getMinZ(); z <= column.getMaxZ(); z++) {
+              for (int x = column.getMinX(); x <= column.getMaxX(); x++, index++) {
+                BlockState state = data.states()[index];
+                if (state == null) {
+                  continue;
+                }
+                palette.putIfAbsent(state, palette.size());
+                NbtCompound block = new NbtCompound();
+                block.put(POS_KEY, intList(x - box.getMinX(), y - box.getMinY(), z - box.getMinZ()));
+                block.putInt(STATE_KEY, palette.getInt(state));
+                NbtCompound nbt = data.blockEntities().get(index);
+                if (nbt != null) {
+                  block.put(NBT_KEY, nbt);
+                }
+                block.write(out);
+                blocksNb++;
+              }
+            }
+          }
+        }
+      }
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+        out.writeByte(NbtElement.COMPOUND_TYPE);
+        out.writeUTF("");
+
+        writeEntry(out, DATA_VERSION_KEY, NbtInt.of(SharedConstants.getGameVersion().getWorldVersion()));
+        writeEntry(out, SIZE_KEY, intList(box.getBlockCountX(), box.getBlockCountY(), box.getBlockCountZ()));
+        writeEntry(out, ENTITIES_KEY, new NbtList());
+        NbtList paletteTag = new NbtList();
+        palette.keySet().forEach(state -> paletteTag.add(NbtHelper.fromBlockState(state)));
+        writeEntry(out, PALETTE_KEY, paletteTag);
+
+        out.writeByte(NbtElement.LIST_TYPE);
+        out.writeUTF(BLOCKS_KEY);
+        out.writeByte(NbtElement.COMPOUND_TYPE);
+        out.writeInt(blocksNb);
+        Files.copy(blocksFile, out);
+
+        out.writeByte(NbtElement.END_TYPE);
+      }
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(blocksFile);
+    }
+  }
+
+  /**
+   * Splits the given region into the parts that lie in each chunk column, in the order they are captured.
+   */
+  private static List<BlockBox> getColumns(final BlockBox box) {
+    List<BlockBox> columns = new ArrayList<>();
+    for (int chunkX = box.getMinX() >> 4; chunkX <= box.getMaxX() >> 4; chunkX++) {
+      for (int chunkZ = box.getMinZ() >> 4; chunkZ <= box.getMaxZ() >> 4; chunkZ++) {
+        columns.add(new BlockBox(
+            Math.max(box.getMinX(), chunkX << 4), box.getMinY(), Math.max(box.getMinZ(), chunkZ << 4),
+            Math.min(box.getMaxX(), (chunkX << 4) + 15), box.getMaxY(), Math.min(box.getMaxZ(), (chunkZ << 4) + 15)
+        ));
+      }
+    }
+    return columns;
+  }
+
+  private static void writeEntry(DataOutputStream out, final String key, final NbtElement element) throws IOException {
+    out.writeByte(element.getType());
+    out.writeUTF(key);
+    element.write(out);
+  }
+
+  private static NbtList intList(int... values) {
+    NbtList list = new NbtList();
+    for (int value : values) {
+      list.add(NbtInt.of(value));
+    }
+    return list;
+  }
+
+  /**
+   * The blocks of a captured chunk column.
+   *
+   * @param states        Block state at each position of the column, in capture order. Null for ignored blocks.
+   * @param blockEntities Block entity data, keyed by position index.
+   * @param blocksNb      The number of captured blocks.
+   */
+  private record Column(BlockState[] states, Int2ObjectMap<NbtCompound> blockEntities, int blocksNb) {
+  }
+
+  /**
+   * A copy of a region into a structure file.
+   */
+  public static final class Stream extends ColumnStream<Column> {
+    /**
+     * Creates a stream for the given region.
+     *
+     * @param box          The region to copy.
+     * @param ignoredBlock Blocks to ignore. May be null.
+     */
+    public Stream(final BlockBox box, @Nullable final Block ignoredBlock) {
+      super(box, ignoredBlock, getColumns(box));
+    }
+
+    @Override
+    protected Column capture(ServerWorld world, final BlockBox column) {
+      Column data = StructureStreamWriter.capture(world, column, this.ignoredBlock);
+      this.addBlocks(data.blocksNb());
+      return data;
+    }
+
+    @Override
+    public void write(final Path file) throws IOException {
+      StructureStreamWriter.write(this, file);
+    }
+  }
+
+  private StructureStreamWriter() {
+  }
+}
@@ -0,0 +1,279 @@
+package net.darmo_creations.build_utils.structures;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.darmo_creations.build_utils.BuildUtils;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A compact, read-only copy of the blocks of a structure file.
+ * <p>
+ * Blocks are stored as parallel arrays of packed relative positions and palette indices,
+ * block entity data is kept only for the blocks that have some. Entities are ignored.
+ * <p>
+ * Transformed templates share the arrays of the template they were derived from: positions are transformed
+ * on access by a {@link BlockTransform}, and block states through a transformed copy of the palette.
+ * <p>
+ * Templates are immutable and may be shared between threads.
+ */
+public final class Template {
+  private final Vec3i size;
+  private final BlockBox bounds;
+  private final List<BlockState> palette;
+  private final BlockTransform transform;
+  /**
+   * Untransformed packed positions.
+   */
+  private final long[] positions;
+  private final int[] states;
+  private final Int2ObjectMap<NbtCompound> blockEntities;
+
+  private Template(
+      final Vec3i size,
+      final BlockBox bounds,
+      final List<BlockState> palette,
+      final BlockTransform transform,
+      final long[] positions,
+      final int[] states,
+      final Int2ObjectMap<NbtCompound> blockEntities
+  ) {
+    this.size = size;
+    this.bounds = bounds;
+    this.palette = palette;
+    this.transform = transform;
+    this.positions = positions;
+    this.states = states;
+    this.blockEntities = blockEntities;
+  }
+
+  /**
+   * Loads the structure with the given ID. Must be called from the server thread.
+   * <p>
+   * Files from the world’s "generated" directory are streamed through {@link StructureStreamReader}.
+   * Files that were saved by an older game version and structures that are only available
+   * from data packs are loaded through the server’s structure manager, which updates their data.
+   *
+   * @param server The server.
+   * @param id     Structure’s ID.
+   * @return The template or an empty value if the structure does not exist or could not be read.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   * @see #loadFile(MinecraftServer, Identifier)
+   * @see #loadFromManager(MinecraftServer, Identifier)
+   */
+  public static Optional<Template> load(MinecraftServer server, final Identifier id) {
+    return loadFile(server, id).or(() -> loadFromManager(server, id));
+  }
+
+  /**
+   * Loads the structure with the given ID from the world’s "generated" directory. May be called from any thread.
+   *
+   * @param server The server.
+   * @param id     Structure’s ID.
+   * @return The template or an empty value if the file does not exist, could not be read, or was saved
+   * by an older game version. Such structures have to be loaded by {@link #loadFromManager(MinecraftServer, Identifier)}.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  public static Optional<Template> loadFile(MinecraftServer server, final Identifier id) {
+    Path path = StructureFiles.getStructurePath(server, id);
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+    try {
+      return read(path);
+    } catch (IOException e) {
+      BuildUtils.LOGGER.error("Could not read structure {}", id, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Loads the structure with the given ID through the server’s structure manager, which updates its data
+   * and also looks into data packs. Must be called from the server thread, as the manager is not thread-safe.
+   *
+   * @param server The server.
+   * @param id     Structure’s ID.
+   * @return The template or an empty value if the structure does not exist or could not be read.
+   */
+  public static Optional<Template> loadFromManager(MinecraftServer server, final Identifier id) {
+    return server.getStructureManager().getStructure(id).map(structure -> fromNbt(structure.writeNbt(new NbtCompound())));
+  }
+
+  /**
+   * Reads the given structure file through {@link StructureStreamReader}.
+   *
+   * @param file The file to read.
+   * @return The template or an empty value if the file was saved by an older game version
+   * and its data needs to be updated first.
+   * @throws IOException If any I/O error occurs or the file is malformed.
+   */
+  public static Optional<Template> read(final Path file) throws IOException {
+    Builder builder = new Builder();
+    StructureStreamReader.read(file, builder);
+    if (builder.dataVersion < SharedConstants.getGameVersion().getWorldVersion()) {
+      return Optional.empty();
+    }
+    return Optional.of(builder.build());
+  }
+
+  /**
+   * Creates a template from structure data that has already been loaded and updated.
+   */
+  public static Template fromNbt(final NbtCompound nbt) {
+    Builder builder = new Builder();
+    StructureStreamReader.read(nbt, builder);
+    return builder.build();
+  }
+
+  /**
+   * The size of the structure, as stored in its file. It is not affected by transformations,
+   * use {@link #getBounds()} to get the actual extent of a transformed template.
+   */
+  public Vec3i getSize() {
+    return this.size;
+  }
+
+  /**
+   * The box containing all positions of this template, relative to its origin.
+   * Coordinates may be negative if the template was transformed.
+   */
+  public BlockBox getBounds() {
+    return this.bounds;
+  }
+
+  /**
+   * Returns the box containing all positions of this template when placed at the given position.
+   */
+  public BlockBox getBoundingBox(final BlockPos origin) {
+    return new BlockBox(
+        this.bounds.getMinX() + origin.getX(), this.bounds.getMinY() + origin.getY(), this.bounds.getMinZ() + origin.getZ(),
+        this.bounds.getMaxX() + origin.getX(), this.bounds.getMaxY() + origin.getY(), this.bounds.getMaxZ() + origin.getZ()
+    );
+  }
+
+  /**
+   * The number of blocks in this template.
+   */
+  public int getBlocksNb() {
+    return this.positions.length;
+  }
+
+  /**
+   * Returns the packed position of the block at the given index, relative to the template’s origin.
+   *
+   * @see BlockPos#fromLong(long)
+   */
+  public long getPackedPos(int index) {
+    return this.transform.apply(this.positions[index]);
+  }
+
+  /**
+   * Returns the state of the block at the given index.
+   * Invalid palette indices resolve to air, as in vanilla.
+   */
+  public BlockState getState(int index) {
+    int stateIndex = this.states[index];
+    return stateIndex >= 0 && stateIndex < this.palette.size() ? this.palette.get(stateIndex) : Blocks.AIR.getDefaultState();
+  }
+
+  /**
+   * Returns the block entity data of the block at the given index.
+   * The returned data must not be modified.
+   *
+   * @return The data or null if the block has none.
+   */
+  @Nullable
+  public NbtCompound getBlockEntityNbt(int index) {
+    return this.blockEntities.get(index);
+  }
+
+  /**
+   * Returns a view of this template transformed as vanilla would when placing it with the given mirror and rotation,
+   * around its origin. Block states are transformed once per palette entry, positions are transformed on access
+   * with integer arithmetic. The view thus costs the size of the palette, whatever the number of blocks.
+   *
+   * @param mirror   The mirror to apply.
+   * @param rotation The rotation to apply after mirroring.
+   * @return The transformed template. Blocks and block entity data are shared with this template.
+   */
+  public Template transform(BlockMirror mirror, BlockRotation rotation) {
+    if (mirror == BlockMirror.NONE && rotation == BlockRotation.NONE) {
+      return this;
+    }
+    BlockTransform step = BlockTransform.of(mirror, rotation);
+    List<BlockState> palette = this.palette.stream().map(state -> state.mirror(mirror).rotate(rotation)).toList();
+    int minX = this.bounds.getMinX();
+    int minZ = this.bounds.getMinZ();
+    int maxX = this.bounds.getMaxX();
+    int maxZ = this.bounds.getMaxZ();
+    BlockBox bounds = BlockBox.create(
+        new BlockPos(step.applyX(minX, minZ), this.bounds.getMinY(), step.applyZ(minX, minZ)),
+        new BlockPos(step.applyX(maxX, maxZ), this.bounds.getMaxY(), step.applyZ(maxX, maxZ))
+    );
+    return new Template(this.size, bounds, palette, this.transform.then(step), this.positions, this.states, this.blockEntities);
+  }
+
+  /**
+   * Collects the data handed by a {@link StructureStreamReader} into a template.
+   */
+  private static class Builder implements StructureStreamReader.Visitor {
+    // Vanilla assumes this version for files without one
+    private int dataVersion = 500;
+    private Vec3i size = Vec3i.ZERO;
+    private List<BlockState> palette = List.of();
+    private final LongArrayList positions = new LongArrayList();
+    private final IntArrayList states = new IntArrayList();
+    private final Int2ObjectMap<NbtCompound> blockEntities = new Int2ObjectOpenHashMap<>();
+
+    @Override
+    public void visitDataVersion(int dataVersion) {
+      this.dataVersion = dataVersion;
+    }
+
+    @Override
+    public void visitSize(Vec3i size) {
+      this.size = size;
+    }
+
+    @Override
+    public void visitPalette(List<BlockState> palette) {
+      this.palette = List.copyOf(palette);
+    }
+
+    @Override
+    public void visitBlock(BlockPos pos, int stateIndex, @Nullable NbtCompound nbt) {
+      if (nbt != null) {
+        this.blockEntities.put(this.positions.size(), nbt);
+      }
+      this.positions.add(pos.asLong());
+      this.states.add(stateIndex);
+    }
+
+    Template build() {
+      BlockBox bounds = new BlockBox(0, 0, 0,
+          Math.max(0, this.size.getX() - 1), Math.max(0, this.size.getY() - 1), Math.max(0, this.size.getZ() - 1));
+      return new Template(this.size, bounds, this.palette, BlockTransform.IDENTITY, this.positions.toLongArray(),
+          this.states.toIntArray(), Int2ObjectMaps.unmodifiable(this.blockEntities));
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package net.darmo_creations.build_utils.structures;
+
+import net.darmo_creations.build_utils.BuildUtils;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * A bounded cache of loaded {@link Template}s and of their mirrored/rotated variants.
+ * <p>
+ * Entries are keyed by structure ID and are reloaded whenever the modification time of their file changes.
+ * Structures that have to go through the server’s structure manager may only be loaded from the server thread,
+ * other threads use {@link #getFromFile(MinecraftServer, Identifier, BlockMirror, BlockRotation)}.
+ * Templates are loaded outside the cache’s lock, concurrent requests for the same structure share a single load.
+ * Each entry weighs the number of blocks of its template. Variants share the blocks of their template
+ * and are not weighed.
+ * Least recently used entries are evicted once the total weight exceeds {@link #MAX_WEIGHT}.
+ * <p>
+ * The cache is cleared when data packs are reloaded and when the server stops.
+ */
+public final class TemplateCache {
+  /**
+   * Maximum total weight of cached templates, in blocks. The most recently used entry is always kept.
+   */
+  public static final long MAX_WEIGHT = 4_000_000;
+
+  private static final int ROTATIONS_NB = BlockRotation.values().length;
+  private static final Map<Identifier, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * Templates that are being loaded, outside the cache’s lock.
+   */
+  private static final Map<Identifier, CompletableFuture<Entry>> LOADING = new ConcurrentHashMap<>();
+  private static long totalWeight;
+
+  /**
+   * Registers the server lifecycle handlers. Called from {@link BuildUtils#onInitialize()}.
+   */
+  public static void init() {
+    ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> clear());
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> clear());
+  }
+
+  /**
+   * Returns the template of the structure with the given ID, loading it if needed.
+   * Must be called from the server thread.
+   *
+   * @param server The server.
+   * @param id     Structure’s ID.
+   * @return The template or an empty value if the structure does not exist or could not be read.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   */
+  public static Optional<Template> get(MinecraftServer server, final Identifier id) {
+    return get(server, id, BlockMirror.NONE, BlockRotation.NONE);
+  }
+
+  /**
+   * Returns the template of the structure with the given ID, transformed with the given mirror and rotation.
+   * The structure is loaded if needed, the variant is computed on first use then kept along with the template.
+   * Must be called from the server thread.
+   *
+   * @param server   The server.
+   * @param id       Structure’s ID.
+   * @param mirror   The mirror to apply.
+   * @param rotation The rotation to apply after mirroring.
+   * @return The transformed template or an empty value if the structure does not exist or could not be read.
+   * @throws InvalidIdentifierException If the ID does not designate a valid path.
+   * @see Template#load(MinecraftServer, Identifier)
+   */
+  public static Optional<Template> get(MinecraftServer server, final Identifier id, BlockMirror mirror, BlockRotation rotation) {
+    return get(server, id, mirror, rotation, Template::load);
+  }
+
+  /**
+   * Same as {@link #get(MinecraftServer, Identifier, BlockMirror, BlockRotation)}, but structures that are not cached
+   * are only loaded from the world’s "generated" directory. May be called from any thread.
+   *
+   * @return The transformed template or an empty value if the structure is not cached and its file does not exist,
+   * could not be read or has to be loaded through the structure manager.
+   * @see Template#loadFile(MinecraftServer, Identifier)
+   */
+  public static Optional<Template> getFromFile(MinecraftServer server, final Identifier id, BlockMirror mirror, BlockRotation rotation) {
+    return get(server, id, mirror, rotation, Template::loadFile);
+  }
+
+  /**
+   * Same as {@link #get(MinecraftServer, Identifier, BlockMirror, BlockRotation)}, but structures that are not cached
+   * are only loaded through the server’s structure manager. Must be called from the server thread.
+   *
+   * @see Template#loadFromManager(MinecraftServer, Identifier)
+   */
+  public static Optional<Template> getFromManager(MinecraftServer server, final Identifier id, BlockMirror mirror, BlockRotation rotation) {
+    return get(server, id, mirror, rotation, Template::loadFromManager);
+  }
+
+  private static Optional<Template> get(
+      MinecraftServer server,
+      final Identifier id,
+      BlockMirror mirror,
+      BlockRotation rotation,
+      final BiFunction<MinecraftServer, Identifier, Optional<Template>> loader
+  ) {
+    long modificationTime = getModificationTime(StructureFiles.getStructurePath(server, id));
+    Entry entry = getEntry(id, modificationTime);
+    if (entry == null) {
+      entry = load(server, id, modificationTime, loader);
+      if (entry == null) {
+        return Optional.empty();
+      }
+    }
+
+    int variantIndex = mirror.ordinal() * ROTATIONS_NB + rotation.ordinal();
+    Template variant = entry.getVariant(variantIndex);
+    if (variant == null) {
+      // Concurrent callers may compute the same variant, only the first one is kept
+      variant = entry.putVariant(variantIndex, entry.template.transform(mirror, rotation));
+    }
+    return Optional.of(variant);
+  }
+
+  /**
+   * Returns the cached entry for the given ID if it is up-to-date, and marks it as the most recently used.
+   */
+  private static synchronized Entry getEntry(final Identifier id, long modificationTime) {
+    Entry entry = ENTRIES.get(id);
+    return entry != null && entry.modificationTime == modificationTime ? entry : null;
+  }
+
+  /**
+   * Loads the template with the given ID outside the cache’s lock then caches it.
+   * If another thread is already loading it, waits for that thread instead.
+   *
+   * @return The new entry or null if the template could not be loaded.
+   */
+  private static Entry load(
+      MinecraftServer server,
+      final Identifier id,
+      long modificationTime,
+      final BiFunction<MinecraftServer, Identifier, Optional<Template>> loader
+  ) {
+    CompletableFuture<Entry> future = new CompletableFuture<>();
+    CompletableFuture<Entry> pending = LOADING.putIfAbsent(id, future);
+    if (pending != null) {
+      Entry entry = pending.join();
+      // The other thread may have used a loader that cannot find this structure
+      if (entry != null && entry.modificationTime == modificationTime) {
+        return entry;
+      }
+      return loader.apply(server, id).map(template -> put(id, new Entry(modificationTime, template))).orElse(null);
+    }
+    try {
+      Entry entry = loader.apply(server, id).map(template -> put(id, new Entry(modificationTime, template))).orElse(null);
+      future.complete(entry);
+      return entry;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      LOADING.remove(id, future);
+    }
+  }
+
+  /**
+   * Caches the given entry, replacing any previous one, then evicts entries if needed.
+   *
+   * @return The entry.
+   */
+  private static synchronized Entry put(final Identifier id, final Entry entry) {
+    invalidate(id);
+    ENTRIES.put(id, entry);
+    totalWeight += entry.weight;
+    evict();
+    return entry;
+  }
+
+  /**
+   * Removes the template with the given ID from the cache.
+   * Should be called whenever the structure’s file is written.
+   */
+  public static synchronized void invalidate(final Identifier id) {
+    Entry entry = ENTRIES.remove(id);
+    if (entry != null) {
+      totalWeight -= entry.weight;
+    }
+  }
+
+  /**
+   * Removes all templates from the cache.
+   */
+  public static synchronized void clear() {
+    ENTRIES.clear();
+    totalWeight = 0;
+  }
+
+  /**
+   * Evicts least recently used entries until the total weight fits, keeping at least the most recent one.
+   */
+  private static void evict() {
+    Iterator<Entry> iterator = ENTRIES.values().iterator();
+    while (totalWeight > MAX_WEIGHT && ENTRIES.size() > 1) {
+      totalWeight -= iterator.next().weight;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns the modification time of the given file, or -1 if it does not exist.
+   * Structures that are only available from data packs thus always have the same time.
+   */
+  private static long getModificationTime(final Path path) {
+    try {
+      return Files.getLastModifiedTime(path).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * A cached template along with its computed variants.
+   */
+  private static class Entry {
+    final long modificationTime;
+    final Template template;
+    final long weight;
+    private final Template[] variants = new Template[BlockMirror.values().length * ROTATIONS_NB];
+
+    Entry(long modificationTime, final Template template) {
+      this.modificationTime = modificationTime;
+      this.template = template;
+      this.weight = template.getBlocksNb();
+    }
+
+    synchronized Template getVariant(int index) {
+      return this.variants[index];
+    }
+
+    /**
+     * Stores the given variant unless one was already computed.
+     *
+     * @return The stored variant.
+     */
+    synchronized Template putVariant(int index, final Template variant) {
+      if (this.variants[index] == null) {
+        this.variants[index] = variant;
+      }
+      return this.variants[index];
+    }
+  }
+
+  private TemplateCache() {
+  }
+}